@@ -18,36 +18,82 @@
 
 package sicsim.config;
 
+import sicsim.types.NodeId;
 import sicsim.utils.FileIO;
 import sicsim.utils.PatternMatching;
 
 /**
- * The global configuration setting of simulator.
+ * The configuration setting of a simulation. Each simulation has its own instance, which is kept
+ * by its SimulationContext. The constants that do not depend on the configuration file are static.
+ * @see SimulationContext
  */
 public class SicsimConfig {
 	//----------------------------------------------------------------------------------
 	/**
 	 * The simulator configuration file.
 	 */
-	private static String CONF_FILE = new String("sicsim.conf");
+	public static String CONF_FILE = new String("sicsim.conf");
 	
 	//----------------------------------------------------------------------------------
 	// sicsim setting
 	/**
 	 * Defines the maximum time of simulation.
 	 */
-	public static int SIM_TIME;
+	public int SIM_TIME;
 	/**
 	 * Defines the ID space or maximum number of peers in the system.
 	 */
-	public static int MAX_NODE;
+	public int MAX_NODE;
+	/**
+	 * Defines the implementation of the future event list. It can be 'heap', which is the
+	 * default, 'calendar', 'radix' or 'wheel'.
+	 */
+	public String FEL_TYPE = new String("heap");
+	/**
+	 * Defines the number of slots of each level of the timing wheel, from the lowest one, as a comma
+	 * separated list. The slots of the lowest level hold one time unit each, and the events beyond
+	 * the last level are kept in a heap.
+	 */
+	public int[] WHEEL_SIZES = {256, 64, 64};
+	/**
+	 * Defines the execution engine. It can be 'sequential', which is the default, 'conservative',
+	 * which runs the peers in parallel logical processes synchronized by time windows, 'timewarp',
+	 * which runs them optimistically and undoes their events when a message arrives in their past,
+	 * 'timestep', which runs the events of the same time in parallel, grouped by destination, or
+	 * 'batched', which runs sequentially the events of each time sorted by destination, so that each
+	 * peer receives its messages of a time together.
+	 */
+	public String ENGINE = new String("sequential");
+	/**
+	 * Defines the number of logical processes of the parallel engine. The peers are split between
+	 * them by ranges of node id. For the same seed, the result depends on this number but not on
+	 * the number of threads.
+	 */
+	public int NUM_OF_LPS = 64;
+	/**
+	 * Defines the number of threads of the parallel engine. If it is 0, one thread is used per processor.
+	 */
+	public int NUM_OF_THREADS = 0;
+	/**
+	 * Defines the number of events that each logical process of the time warp engine executes
+	 * optimistically in a round, before the messages are exchanged.
+	 */
+	public int OPTIMISTIC_BATCH = 64;
+	/**
+	 * Makes the sequential and the batched engines run in the canonical order of the parallel engines:
+	 * the events with the same time are ordered by the peer that has added them, each peer draws from
+	 * its own random generator, SYNC_UPDATE and the monitor run once per time, and the snapshots are
+	 * taken at the multiples of SNAPSHOT_PERIOD. Then the sequential engine gives the same result as
+	 * the parallel engines, but not the same as without it. The parallel engines always run in this order.
+	 */
+	public boolean CANONICAL_ORDER = false;
 
 	//----------------------------------------------------------------------------------
 	// scenario setting
 	/**
 	 * Defines the name of scenario file.
 	 */
-	public static String SCENARIO_FILE;
+	public String SCENARIO_FILE;
 	
 	//----------------------------------------------------------------------------------
 	// enable/disable layers
@@ -56,11 +102,11 @@ public class SicsimConfig {
 	 * If this variable is true the simulator calls the syncMethod
 	 * of all peers in system at each time unit.
 	 */
-	public static boolean SYNC_UPDATE;
+	public boolean SYNC_UPDATE;
 	/**
 	 * Enabling/Disabling the Monitor is controlled by this variable.
 	 */
-	public static boolean MONITOR;
+	public boolean MONITOR;
 	
 	//----------------------------------------------------------------------------------
 	// distributions used in simulator
@@ -68,18 +114,18 @@ public class SicsimConfig {
   	 * The peer IDs in ID space can be distributed uniformly or it can be skewed. 
   	 * If this variable is true then the distribution of IDs are skewed.
 	 */
-	public static boolean SKEWED;
+	public boolean SKEWED;
 	/**
 	 * In case of having skewed ID distribution, this variable shows the number of 
 	 * clusters in ID space.
 	 */
-	public static int NUM_OF_CLUSTER;
+	public int NUM_OF_CLUSTER;
 	/**
 	 * Defines the percentage of peers that are places in clusters. 
 	 * For example if NUM OF CLUSTER is 4 and PROB OF CLUSTER is 0.7, means there 
 	 * are 4 clusters in ID space and 70% of whole peers are placed in these clusters.
 	 */
-	public static double PROB_OF_CLUSTER;
+	public double PROB_OF_CLUSTER;
 
 	//----------------------------------------------------------------------------------
 	// network latency setting
@@ -87,17 +133,17 @@ public class SicsimConfig {
 	 * Each message from one peer to other peers passes through the core network.
 	 * This variable defines the mean latency in the core network.
 	 */
-	public static int NETWORK_LATENCY;
+	public int NETWORK_LATENCY;
 	/**
 	 * To have a realistic model of latency, SICSIM assumes the latency between each
 	 * two peers in not fixed and changes in time. This variable shows the maximum 
 	 * latency drift that each connection has.
 	 */
-	public static int NETWORK_LATENCY_DRIFT;
+	public int NETWORK_LATENCY_DRIFT;
 	/**
 	 * Defines the maximum link latency of links in the system.
 	 */
-	public static int LINK_LATENCY;
+	public int LINK_LATENCY;
 
 	//----------------------------------------------------------------------------------
 	// sicssim timing setting
@@ -105,35 +151,35 @@ public class SicsimConfig {
 	 * In case of failing a peer, the peers who registered for this peer, will receive 
 	 * the failure notification of failed peer in maximum FAILURE DETECTOR LATENCY time unit.
 	 */
-	public static int FAILURE_DETECTOR_LATENCY;
+	public int FAILURE_DETECTOR_LATENCY;
 	public static int FAILURE_DETECTOR_MAX_TIME = 1000;
 	/**
 	 * Defines the period of getting snapshot from peers, by calling the snapshot method of Monitor.
 	 */
-	public static int SNAPSHOT_PERIOD;
+	public int SNAPSHOT_PERIOD;
 
 	//----------------------------------------------------------------------------------
 	// seed setting
 	/**
 	 * This is the seed used in simulator.
 	 */
-	public static long SEED;
+	public long SEED;
 	/**
 	 * This is the seed used for failure detector.
 	 */
-	public static long FAILURE_DETECTION_SEED;
+	public long FAILURE_DETECTION_SEED;
 	/**
 	 * This is the seed used for networking.
 	 */
-	public static long NETWORK_SEED;
+	public long NETWORK_SEED;
 	/**
 	 * This is the seed used for bandwidth settings.
 	 */
-	public static long BANDWIDTH_SEED;
+	public long BANDWIDTH_SEED;
 	/**
 	 * This is the seed used for link latencies.
 	 */
-	public static long LATENCY_SEED;
+	public long LATENCY_SEED;
 
 	//----------------------------------------------------------------------------------
 	// overlay log setting
@@ -164,7 +210,7 @@ public class SicsimConfig {
 	/**
 	 * Printing out the debugging information of simulator core is enabled/disabled by this variable.
 	 */
-	public static boolean LOG_SIM;
+	public boolean LOG_SIM;
 	/**
 	 * Defines the level of printing debugging information. 0 means disable, 1 means error, 
 	 * 2 means warning, 3 means notice, 4 means info and 5 means debug. 
@@ -172,38 +218,38 @@ public class SicsimConfig {
 	 * sets to 3, only notice messages are printed, and setting it to 0, disable the 
 	 * printing debug information.
 	 */
-	public static int LOG_LEVEL;
+	public int LOG_LEVEL;
 
 	//----------------------------------------------------------------------------------
 	// log file setting
 	/**
 	 * Defines the name of file used to restore the size of network in time units.
 	 */
-	public static String NET_SIZE_FILE;
+	public String NET_SIZE_FILE;
 	/**
 	 * Defines the file to save the bandwidth status of peers.
 	 */
-	public static String BW_FILE;
+	public String BW_FILE;
 	/**
 	 * Defines the name of file that stores the information of peers in overlay network.
 	 */
-	public static String NETWORK_FILE;
+	public String NETWORK_FILE;
 	/**
 	 * Defines the name file to store future event list status.
 	 */
-	public static String FEL_FILE;
+	public String FEL_FILE;
 	/**
 	 * Defines the name file to store the time system.
 	 */
-	public static String TIME_FILE;
+	public String TIME_FILE;
 	/**
 	 * Defines the name file to store the overlay information.
 	 */
-	public static String OVERLAY_FILE;
+	public String OVERLAY_FILE;
 	/**
 	 * Defines the file to store the status of failure detector.
 	*/
-	public static String FAILURE_DETECTOR_FILE;
+	public String FAILURE_DETECTOR_FILE;
 	
 	//----------------------------------------------------------------------------------
 	// streaming setting
@@ -212,7 +258,7 @@ public class SicsimConfig {
 	 * In case of using BandwidthPeer, the peers can send and receive real data to each other. 
 	 * This variable defines the size of buffer in each peer that used to buffer received data.
 	 */
-	public static int BUFFER_SIZE;
+	public int BUFFER_SIZE;
 
 	//----------------------------------------------------------------------------------
 	// predefined node id
@@ -220,6 +266,10 @@ public class SicsimConfig {
 	 * Defines the node id that is used internally for the simualtor.
 	 */
 	public static String SICSSIM_NODE = new String("-7@-7");
+	/**
+	 * The node id of the simulator as a NodeId, which is shared by all the events that are sent by or to the simulator.
+	 */
+	public static NodeId SICSSIM_NODE_ID = NodeId.valueOf(SicsimConfig.SICSSIM_NODE);
 
 	//----------------------------------------------------------------------------------
 	// bw setting
@@ -227,71 +277,133 @@ public class SicsimConfig {
 	 * In case of using SICSIM for simulating media streaming systems, and in case of 
 	 * splitting the media stream into a number of stripes, this variable defines the number of stripes.
 	 */
-	public static int NUM_OF_STRIPES;
+	public int NUM_OF_STRIPES;
 	/**
 	 * Defines the rate of each stripe.
 	 */
-	public static int STRIPE_RATE;
+	public int STRIPE_RATE;
 	
 //----------------------------------------------------------------------------------
-	public static void loadConfig() {
+	/**
+	 * Loads the configuration from the default configuration file, 'sicsim.conf'.
+	 * @throws IllegalArgumentException If the file can not be read or parsed.
+	 */
+	public void loadConfig() {
+		this.loadConfig(SicsimConfig.CONF_FILE);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Loads the configuration from a file.
+	 * @param fileName The name of the configuration file.
+	 * @throws IllegalArgumentException If the file can not be read or parsed.
+	 */
+	public void loadConfig(String fileName) {
+		this.parseConfig(FileIO.read(fileName), fileName);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Loads the configuration from the content of a configuration file.
+	 * @param rawStr The content of the configuration file.
+	 * @throws IllegalArgumentException If the content can not be parsed.
+	 */
+	public void parseConfig(String rawStr) {
+		this.parseConfig(rawStr, "configuration");
+	}
+
+//----------------------------------------------------------------------------------
+	private void parseConfig(String rawStr, String fileName) {
 		try {
-			String rawStr = FileIO.read(SicsimConfig.CONF_FILE);
 			String str = PatternMatching.removeComments(rawStr);
 			
-			SicsimConfig.SIM_TIME = PatternMatching.getIntValue(str, "SIM_TIME:");
-			SicsimConfig.MAX_NODE = PatternMatching.getIntValue(str, "MAX_NODE:");
+			this.SIM_TIME = PatternMatching.getIntValue(str, "SIM_TIME:");
+			this.MAX_NODE = PatternMatching.getIntValue(str, "MAX_NODE:");
+			if (PatternMatching.getStrValue(str, "FEL_TYPE:") != null)
+				this.FEL_TYPE = PatternMatching.getStrValue(str, "FEL_TYPE:");
+			if (PatternMatching.getStrValue(str, "WHEEL_SIZES:") != null) {
+				String[] sizes = PatternMatching.getStrValue(str, "WHEEL_SIZES:").split(",");
+				this.WHEEL_SIZES = new int[sizes.length];
+				for (int i = 0; i < sizes.length; i++)
+					this.WHEEL_SIZES[i] = Integer.parseInt(sizes[i].trim());
+			}
+			if (PatternMatching.getStrValue(str, "ENGINE:") != null)
+				this.ENGINE = PatternMatching.getStrValue(str, "ENGINE:");
+			if (PatternMatching.getStrValue(str, "NUM_OF_LPS:") != null)
+				this.NUM_OF_LPS = PatternMatching.getIntValue(str, "NUM_OF_LPS:");
+			if (PatternMatching.getStrValue(str, "NUM_OF_THREADS:") != null)
+				this.NUM_OF_THREADS = PatternMatching.getIntValue(str, "NUM_OF_THREADS:");
+			if (PatternMatching.getStrValue(str, "OPTIMISTIC_BATCH:") != null)
+				this.OPTIMISTIC_BATCH = PatternMatching.getIntValue(str, "OPTIMISTIC_BATCH:");
+			if (PatternMatching.getStrValue(str, "CANONICAL_ORDER:") != null)
+				this.CANONICAL_ORDER = PatternMatching.getStrValue(str, "CANONICAL_ORDER:").equalsIgnoreCase("true");
 			if (PatternMatching.getStrValue(str, "SYNC_UPDATE:").equalsIgnoreCase("true"))
-				SicsimConfig.SYNC_UPDATE = true;
+				this.SYNC_UPDATE = true;
 			else
-				SicsimConfig.SYNC_UPDATE = false;
+				this.SYNC_UPDATE = false;
 
 			if (PatternMatching.getStrValue(str, "MONITOR:").equalsIgnoreCase("true"))
-				SicsimConfig.MONITOR = true;
+				this.MONITOR = true;
 			else
-				SicsimConfig.MONITOR = false;
+				this.MONITOR = false;
 			
-			SicsimConfig.SCENARIO_FILE = PatternMatching.getStrValue(str, "SCENARIO_FILE:");
-			SicsimConfig.NETWORK_LATENCY = PatternMatching.getIntValue(str, "NETWORK_LATENCY:");
-			SicsimConfig.NETWORK_LATENCY_DRIFT = PatternMatching.getIntValue(str, "NETWORK_LATENCY_DRIFT:");
-			SicsimConfig.LINK_LATENCY = PatternMatching.getIntValue(str, "LINK_LATENCY:");
-			SicsimConfig.FAILURE_DETECTOR_LATENCY = PatternMatching.getIntValue(str, "FAILURE_DETECTOR_LATENCY:");
-			SicsimConfig.SNAPSHOT_PERIOD = PatternMatching.getIntValue(str, "SNAPSHOT_PERIOD:");
+			this.SCENARIO_FILE = PatternMatching.getStrValue(str, "SCENARIO_FILE:");
+			this.NETWORK_LATENCY = PatternMatching.getIntValue(str, "NETWORK_LATENCY:");
+			this.NETWORK_LATENCY_DRIFT = PatternMatching.getIntValue(str, "NETWORK_LATENCY_DRIFT:");
+			this.LINK_LATENCY = PatternMatching.getIntValue(str, "LINK_LATENCY:");
+			this.FAILURE_DETECTOR_LATENCY = PatternMatching.getIntValue(str, "FAILURE_DETECTOR_LATENCY:");
+			this.SNAPSHOT_PERIOD = PatternMatching.getIntValue(str, "SNAPSHOT_PERIOD:");
 
 			if (PatternMatching.getStrValue(str, "SKEWED:").equalsIgnoreCase("true"))
-				SicsimConfig.SKEWED = true;
+				this.SKEWED = true;
 			else
-				SicsimConfig.SKEWED = false;
-			SicsimConfig.NUM_OF_CLUSTER = PatternMatching.getIntValue(str, "NUM_OF_CLUSTER:");
-			SicsimConfig.PROB_OF_CLUSTER = PatternMatching.getDoubleValue(str, "PROB_OF_CLUSTER:");			
+				this.SKEWED = false;
+			this.NUM_OF_CLUSTER = PatternMatching.getIntValue(str, "NUM_OF_CLUSTER:");
+			this.PROB_OF_CLUSTER = PatternMatching.getDoubleValue(str, "PROB_OF_CLUSTER:");			
 
-			SicsimConfig.SEED = PatternMatching.getIntValue(str, "SEED:");
-			SicsimConfig.FAILURE_DETECTION_SEED = SicsimConfig.SEED * 5;
-			SicsimConfig.NETWORK_SEED = SicsimConfig.SEED * 7;
-			SicsimConfig.BANDWIDTH_SEED = SicsimConfig.SEED * 2;
-			SicsimConfig.LATENCY_SEED = SicsimConfig.SEED * 8;
+			this.setSeed(PatternMatching.getIntValue(str, "SEED:"));
 
 			if (PatternMatching.getStrValue(str, "LOG_SIM:").equalsIgnoreCase("true"))
-				SicsimConfig.LOG_SIM = true;
+				this.LOG_SIM = true;
 			else
-				SicsimConfig.LOG_SIM = false;
+				this.LOG_SIM = false;
 
-			SicsimConfig.LOG_LEVEL = PatternMatching.getIntValue(str, "LOG_LEVEL:");
-			SicsimConfig.NET_SIZE_FILE = PatternMatching.getStrValue(str, "NET_SIZE_FILE:");
-			SicsimConfig.BW_FILE = PatternMatching.getStrValue(str, "BW_FILE:");
-			SicsimConfig.NETWORK_FILE = PatternMatching.getStrValue(str, "NETWORK_FILE:");
-			SicsimConfig.FEL_FILE = PatternMatching.getStrValue(str, "FEL_FILE:");
-			SicsimConfig.TIME_FILE = PatternMatching.getStrValue(str, "TIME_FILE:");
-			SicsimConfig.OVERLAY_FILE = PatternMatching.getStrValue(str, "OVERLAY_FILE:");
-			SicsimConfig.FAILURE_DETECTOR_FILE = PatternMatching.getStrValue(str, "FAILURE_DETECTOR_FILE:");
+			this.LOG_LEVEL = PatternMatching.getIntValue(str, "LOG_LEVEL:");
+			this.NET_SIZE_FILE = PatternMatching.getStrValue(str, "NET_SIZE_FILE:");
+			this.BW_FILE = PatternMatching.getStrValue(str, "BW_FILE:");
+			this.NETWORK_FILE = PatternMatching.getStrValue(str, "NETWORK_FILE:");
+			this.FEL_FILE = PatternMatching.getStrValue(str, "FEL_FILE:");
+			this.TIME_FILE = PatternMatching.getStrValue(str, "TIME_FILE:");
+			this.OVERLAY_FILE = PatternMatching.getStrValue(str, "OVERLAY_FILE:");
+			this.FAILURE_DETECTOR_FILE = PatternMatching.getStrValue(str, "FAILURE_DETECTOR_FILE:");
 
-			SicsimConfig.BUFFER_SIZE = PatternMatching.getIntValue(str, "BUFFER_SIZE:");
-			SicsimConfig.NUM_OF_STRIPES = PatternMatching.getIntValue(str, "NUM_OF_STRIPES:");
-			SicsimConfig.STRIPE_RATE = PatternMatching.getIntValue(str, "STRIPE_RATE:");
+			this.BUFFER_SIZE = PatternMatching.getIntValue(str, "BUFFER_SIZE:");
+			this.NUM_OF_STRIPES = PatternMatching.getIntValue(str, "NUM_OF_STRIPES:");
+			this.STRIPE_RATE = PatternMatching.getIntValue(str, "STRIPE_RATE:");
 		} catch (Exception e) {
-			System.err.println("error on opening/parsing sicsim.conf file.");
-			System.exit(1);			
+			throw new IllegalArgumentException("error on opening/parsing " + fileName + " file.", e);
 		}
 	}
 
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the simulation runs in the canonical order, i.e. CANONICAL_ORDER is set or the engine is parallel.
+	 * @return 'true' if the simulation runs in the canonical order.
+	 */
+	public boolean isCanonicalOrder() {
+		return (this.CANONICAL_ORDER || this.ENGINE.equalsIgnoreCase("conservative") || this.ENGINE.equalsIgnoreCase("timewarp") || this.ENGINE.equalsIgnoreCase("timestep"));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Sets the seed of the simulator, and the seeds that are derived from it.
+	 * @param seed The seed.
+	 */
+	public void setSeed(long seed) {
+		this.SEED = seed;
+		this.FAILURE_DETECTION_SEED = seed * 5;
+		this.NETWORK_SEED = seed * 7;
+		this.BANDWIDTH_SEED = seed * 2;
+		this.LATENCY_SEED = seed * 8;
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.config;
+
+import java.io.File;
+
+import sicsim.utils.Distribution;
+
+/**
+ * The context of one simulation. It owns everything that the simulation does not share with the
+ * other simulations in the same JVM: the configuration, the random generators and the directory
+ * of the output files. The context is created before the simulator, and is given to all the parts
+ * of the simulator and to the peers.
+ * @see SicsimConfig
+ * @see Distribution
+ */
+public class SimulationContext {
+	private SicsimConfig config;
+	private Distribution distribution;
+	private SimulationInputs inputs;
+	private String outputDir;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates a context whose output files are written in the current directory.
+	 * @param config The configuration of the simulation. It must be loaded before the context is created.
+	 */
+	public SimulationContext(SicsimConfig config) {
+		this(config, null);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates a context.
+	 * @param config The configuration of the simulation. It must be loaded before the context is created.
+	 * @param outputDir The directory of the output files, or null for the current directory.
+	 */
+	public SimulationContext(SicsimConfig config, String outputDir) {
+		this(config, outputDir, new SimulationInputs(config));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates a context that shares the inputs of other simulations, e.g. another replication of the same configuration.
+	 * @param config The configuration of the simulation. It must be loaded before the context is created.
+	 * @param outputDir The directory of the output files, or null for the current directory.
+	 * @param inputs The inputs of the simulation. They must have been created from a configuration that
+	 * differs from 'config' at most in the seeds.
+	 */
+	public SimulationContext(SicsimConfig config, String outputDir, SimulationInputs inputs) {
+		this.config = config;
+		this.distribution = new Distribution(config);
+		this.inputs = inputs;
+		this.outputDir = outputDir;
+
+		if (outputDir != null)
+			new File(outputDir).mkdirs();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the configuration of the simulation.
+	 * @return The configuration.
+	 */
+	public SicsimConfig getConfig() {
+		return this.config;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the random generators of the simulation.
+	 * @return The random generators.
+	 */
+	public Distribution getDistribution() {
+		return this.distribution;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the inputs of the simulation that do not depend on its seed.
+	 * @return The inputs.
+	 */
+	public SimulationInputs getInputs() {
+		return this.inputs;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the directory of the output files.
+	 * @return The directory, or null for the current directory.
+	 */
+	public String getOutputDir() {
+		return this.outputDir;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the path of an output file of the simulation, e.g. SicsimConfig.NET_SIZE_FILE.
+	 * @param fileName The name of the file.
+	 * @return The path of the file in the output directory.
+	 */
+	public String getPath(String fileName) {
+		if (this.outputDir == null)
+			return fileName;
+
+		return new File(this.outputDir, fileName).getPath();
+	}
+}
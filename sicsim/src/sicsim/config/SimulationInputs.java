@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.config;
+
+import sicsim.utils.Distribution;
+import sicsim.utils.FileIO;
+import sicsim.utils.PatternMatching;
+
+/**
+ * The inputs of a simulation that do not depend on its seed: the parts of the scenario file and
+ * the table of the base latencies of the core network. The replications of a configuration share
+ * one instance, so the scenario file is parsed and the latencies are computed only once. The
+ * inputs are never changed after they are created, so they can be used by several simulations
+ * running at the same time.
+ * @see SimulationContext
+ */
+public class SimulationInputs {
+	private String[] scenario;
+	private int[] netLatencies;
+	private int minNetLatency;
+	private int meanNetLatency;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Reads the scenario file and computes the latency table of a configuration.
+	 * @param config The configuration. Only the settings that do not depend on the seed are used.
+	 * @throws IllegalArgumentException If the scenario file can not be read or parsed.
+	 */
+	public SimulationInputs(SicsimConfig config) {
+		this(config, FileIO.read(config.SCENARIO_FILE));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Parses a scenario and computes the latency table of a configuration.
+	 * @param config The configuration. Only the settings that do not depend on the seed are used.
+	 * @param rawScenario The content of the scenario file.
+	 * @throws IllegalArgumentException If the scenario can not be parsed.
+	 */
+	public SimulationInputs(SicsimConfig config, String rawScenario) {
+		try {
+			String str = PatternMatching.removeComments(rawScenario);
+			this.scenario = str.split(PatternMatching.scenarioSplitter);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("error on opening/parsing scenario file.", e);
+		}
+
+		// the base latency between two peers only depends on the sum of their ids
+		this.meanNetLatency = config.NETWORK_LATENCY;
+		this.netLatencies = new int[Math.max(2 * config.MAX_NODE - 1, 0)];
+		this.minNetLatency = 0;
+		for (int i = 0; i < this.netLatencies.length; i++) {
+			this.netLatencies[i] = Distribution.normal(this.meanNetLatency, 0.5, i);
+			if (i == 0 || this.netLatencies[i] < this.minNetLatency)
+				this.minNetLatency = this.netLatencies[i];
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the parts of the scenario file, one per scenario event, without the comments.
+	 * The returned array must not be changed.
+	 * @return The parts of the scenario file.
+	 */
+	public String[] getScenario() {
+		return this.scenario;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the base latency of the core network between two peers, without the drift.
+	 * @param idSum The sum of the ids of the two peers.
+	 * @return The base latency.
+	 */
+	public int getNetLatency(int idSum) {
+		if (idSum >= 0 && idSum < this.netLatencies.length)
+			return this.netLatencies[idSum];
+
+		return Distribution.normal(this.meanNetLatency, 0.5, idSum);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the smallest base latency of the core network between two peers.
+	 * @return The smallest base latency.
+	 */
+	public int getMinNetLatency() {
+		return this.minNetLatency;
+	}
+}
@@ -20,7 +20,7 @@ package sicsim.core.scenario;
 
 import java.util.*;
 
-import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.core.scenario.events.MonitorEvent;
 import sicsim.core.scenario.events.DelayEvent;
 import sicsim.core.scenario.events.LoadOverlayEvent;
@@ -29,20 +29,20 @@ import sicsim.core.scenario.events.SaveOverlayEvent;
 import sicsim.core.scenario.events.ScenarioEvent;
 import sicsim.core.scenario.events.SignalEvent;
 import sicsim.core.scenario.events.ScenarioEvent.Event;
-import sicsim.utils.FileIO;
 import sicsim.utils.PatternMatching;
 
 /**
  * Class to implement the scenario of behaving the simulator. 
  */
 public class Scenario {
-
+	private SimulationContext context;
 	private Vector<ScenarioEvent> scenarioList = new Vector<ScenarioEvent>();
 	private Iterator<ScenarioEvent> scenariosIter;
 	private ScenarioEvent currentScenario = null;
 	
 //----------------------------------------------------------------------------------
-	public Scenario() {
+	public Scenario(SimulationContext context) {
+		this.context = context;
 		this.loadScenario();
 		scenariosIter = scenarioList.iterator();
 	}
@@ -77,6 +77,15 @@ public class Scenario {
 		return this.currentScenario.nextEvent();
 	}
 	
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the number of the scenario in the scenario file that has given the last event.
+	 * @return The number of the scenario, from 1.
+	 */
+	public int getCurrentNumber() {
+		return this.scenarioList.indexOf(this.currentScenario) + 1;
+	}
+	
 //----------------------------------------------------------------------------------
 	/**
 	 * Push back the event.
@@ -100,9 +109,7 @@ public class Scenario {
 		int signal;
 		
 		try {
-			String rawStr = FileIO.read(SicsimConfig.SCENARIO_FILE);
-			String str = PatternMatching.removeComments(rawStr);
-			String[] parts = str.split(PatternMatching.scenarioSplitter);
+			String[] parts = this.context.getInputs().getScenario();
 
 			for (int i = 0; i < parts.length; i++) {
 				eventType = PatternMatching.getStrValue(parts[i], "type:");
@@ -114,7 +121,7 @@ public class Scenario {
 					numJoins = PatternMatching.getIntValue(parts[i], "join:");
 					numLeaves = PatternMatching.getIntValue(parts[i], "leave:");
 					numFailures = PatternMatching.getIntValue(parts[i], "failure:");
-					this.scenarioList.add(i, new LotteryEvent(count, deltaTime, numJoins, numLeaves, numFailures, Class.forName(nodeType), Class.forName(linkType)));
+					this.scenarioList.add(i, new LotteryEvent(this.context, count, deltaTime, numJoins, numLeaves, numFailures, Class.forName(nodeType), Class.forName(linkType)));
 				} else if (eventType.equalsIgnoreCase("delay")) {
 					delay = PatternMatching.getIntValue(parts[i], "delay:");
 					this.scenarioList.add(i, new DelayEvent(delay));					
@@ -125,7 +132,7 @@ public class Scenario {
 					count = PatternMatching.getIntValue(parts[i], "count:");				
 					deltaTime = PatternMatching.getIntValue(parts[i], "interval:");
 					signal = PatternMatching.getIntValue(parts[i], "signal:");
-					this.scenarioList.add(i, new SignalEvent(count, deltaTime, signal));					
+					this.scenarioList.add(i, new SignalEvent(this.context, count, deltaTime, signal));					
 				} else if (eventType.equalsIgnoreCase("save")) {
 					this.scenarioList.add(i, new SaveOverlayEvent());					
 				} else if (eventType.equalsIgnoreCase("load")) {
@@ -133,8 +140,7 @@ public class Scenario {
 				}
 			}			
 		} catch (Exception e) {
-			System.err.println("error on opening/parsing scenario file.");
-			System.exit(1);
+			throw new IllegalArgumentException("error on opening/parsing scenario file.", e);
 		}
 	}
 }
@@ -20,7 +20,7 @@ package sicsim.core.scenario.events;
 
 import java.util.*;
 
-import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.utils.Distribution;
 
 public class LotteryEvent extends ScenarioEvent {
@@ -34,19 +34,21 @@ public class LotteryEvent extends ScenarioEvent {
 	private Class<?> nodeType;
 	private Class<?> linkType;
 	
-	private Random rand = new Random(SicsimConfig.NETWORK_SEED);
+	private Distribution distribution;
+	private Random rand;
 	private long eventCount = 0;
 	
 //----------------------------------------------------------------------------------
 	/**
 	 * Generate a new lottery event
+	 * @param context the context of the simulation
 	 * @param count total number of events u want to generate
 	 * @param time time between two events
 	 * @param joins ratio of # of joins u want out of the total lottery events(given as 'count')
 	 * @param leaves ratio of # of leaves u want out of the total lottery events(given as 'count')
 	 * @param failures ratio of # of leaves u want out of the total lottery events(given as 'count')
 	 */
-	public LotteryEvent(long count, int time, int joins, int leaves, int failures, Class<?> nodeType, Class<?> linkType) {
+	public LotteryEvent(SimulationContext context, long count, int time, int joins, int leaves, int failures, Class<?> nodeType, Class<?> linkType) {
 		this.count = count;
 		this.deltaTime = time;
 		this.numJoins = joins;
@@ -54,6 +56,8 @@ public class LotteryEvent extends ScenarioEvent {
 		this.numFailures = failures;
 		this.nodeType = nodeType;
 		this.linkType = linkType;
+		this.distribution = context.getDistribution();
+		this.rand = new Random(context.getConfig().NETWORK_SEED);
 	}
 	
 //----------------------------------------------------------------------------------
@@ -64,7 +68,7 @@ public class LotteryEvent extends ScenarioEvent {
 //----------------------------------------------------------------------------------
 	public Event nextEvent() {
 		String eventType;
-		int time = Distribution.exp(this.deltaTime);
+		int time = this.distribution.exp(this.deltaTime);
 		int randResult = this.rand.nextInt(this.numJoins + this.numLeaves + this.numFailures);
 		
 		if (randResult < this.numJoins)
@@ -18,6 +18,7 @@
 
 package sicsim.core.scenario.events;
 
+import sicsim.config.SimulationContext;
 import sicsim.utils.Distribution;
 
 public class SignalEvent extends ScenarioEvent {
@@ -25,12 +26,14 @@ public class SignalEvent extends ScenarioEvent {
 	private int deltaTime;
 	private int signal;
 	private int eventCount = 0;
+	private Distribution distribution;
 	
 //----------------------------------------------------------------------------------
-	public SignalEvent(long count, int deltaTime, int signal) {
+	public SignalEvent(SimulationContext context, long count, int deltaTime, int signal) {
 		this.count = count;
 		this.deltaTime = deltaTime;
 		this.signal = signal;
+		this.distribution = context.getDistribution();
 	}
 	
 //----------------------------------------------------------------------------------
@@ -41,7 +44,7 @@ public class SignalEvent extends ScenarioEvent {
 //----------------------------------------------------------------------------------
 	public Event nextEvent() {
 		this.eventCount++;
-		int time = Distribution.exp(this.deltaTime);
+		int time = this.distribution.exp(this.deltaTime);
 		return new Event(new String("SIGNAL"), time, this.signal);
 	}
 	
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+import java.util.Iterator;
+import java.util.Vector;
+
+import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
+import sicsim.types.Message;
+import sicsim.utils.FileIO;
+import sicsim.utils.PatternMatching;
+
+/**
+ * Base class of the future event list implementations. It implements the lazy deletion of the
+ * cancelled events, and saving and loading the state of the list, which are the same for all
+ * implementations.
+ */
+public abstract class AbstractFEL implements FEL {
+	private static int MIN_COMPACT_SIZE = 1024;
+
+	private int deletedEvents = 0;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes and returns the event with the smallest time, even if it is cancelled.
+	 * @return The event with the smallest time, or null if the list is empty.
+	 */
+	protected abstract FutureEvent pollFirst();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the event with the smallest time without removing it, even if it is cancelled.
+	 * @return The event with the smallest time, or null if the list is empty.
+	 */
+	protected abstract FutureEvent peekFirst();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes all the cancelled events from the list.
+	 */
+	protected abstract void removeDeletedEvents();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns all the events that are currently in the future event list, in no specific order.
+	 * @return List of the events in the future event list.
+	 */
+	protected abstract Vector<FutureEvent> getEvents();
+
+//----------------------------------------------------------------------------------
+	public boolean hasEvent() {
+		if (this.deletedEvents == 0)
+			return (this.size() > 0);
+
+		return (this.peekEvent() != null);
+	}
+
+//----------------------------------------------------------------------------------
+	public FutureEvent getLastEvent() {
+		this.skipDeletedEvents();
+		return this.pollFirst();
+	}
+
+//----------------------------------------------------------------------------------
+	public FutureEvent peekEvent() {
+		this.skipDeletedEvents();
+		return this.peekFirst();
+	}
+
+//----------------------------------------------------------------------------------
+	public void cancelEvent(FutureEvent event) {
+		if (event.deleted)
+			return;
+
+		event.deleted = true;
+		this.deletedEvents++;
+		this.compact();
+	}
+
+//----------------------------------------------------------------------------------
+	public int cancelEvents(EventFilter filter) {
+		int count = 0;
+
+		Iterator<FutureEvent> felIter = this.getEvents().iterator();
+		while (felIter.hasNext()) {
+			FutureEvent event = felIter.next();
+			if (!event.isCancelled() && filter.accept(event)) {
+				event.deleted = true;
+				count++;
+			}
+		}
+
+		this.deletedEvents += count;
+		this.compact();
+
+		return count;
+	}
+
+//----------------------------------------------------------------------------------
+	private void compact() {
+		// the whole list is scanned only when the cancelled events are the majority
+		if (this.size() >= AbstractFEL.MIN_COMPACT_SIZE && 2 * this.deletedEvents > this.size()) {
+			this.removeDeletedEvents();
+			this.deletedEvents = 0;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	private void skipDeletedEvents() {
+		if (this.deletedEvents == 0)
+			return;
+
+		FutureEvent event;
+		while ((event = this.peekFirst()) != null && event.deleted) {
+			this.pollFirst();
+			this.deletedEvents--;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	public String toString() {
+		String str = new String();
+
+		Iterator<FutureEvent> felIter = this.getEvents().iterator();
+		while(felIter.hasNext()) {
+			FutureEvent event = felIter.next();
+			if (event.isCancelled())
+				continue;
+
+			str += event.toString();
+			str += PatternMatching.splitter + "\n";
+		}
+
+		str += "\n";
+
+		return str;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Saves the status of the future event list.
+	 */
+	public void saveState(SimulationContext context) {
+		FileIO.write(this.toString(), context.getPath(context.getConfig().FEL_FILE));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Loads the status of the future event list.
+	 */
+	public void loadState(SimulationContext context) {
+		SicsimConfig config = context.getConfig();
+		String str = FileIO.read(context.getPath(config.FEL_FILE));
+		String[] parts = str.split(PatternMatching.splitter);
+
+		for (int i = 0; i < parts.length - 1; i++) {
+			FutureEvent event = new FutureEvent();
+
+			event.type = EventType.parse(PatternMatching.getStrValue(parts[i], "type:"));
+			event.time = PatternMatching.getIntValue(parts[i], "time:");
+			event.srcId = PatternMatching.getNodeValue(parts[i], "src:");
+			event.destId = PatternMatching.getNodeValue(parts[i], "dest:");
+			event.data = Message.restore(PatternMatching.getStrValue(parts[i], "data:"));
+			if (config.isCanonicalOrder()) {
+				event.order = event.isSimEvent() ? 0 : FutureEvent.PEER_EVENT;
+				event.sequence = i;
+			}
+			this.addEvent(event);
+		}
+
+		if (config.LOG_SIM && config.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
+			System.out.println("FEL => " + this.getEvents());
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+import java.util.Vector;
+
+/**
+ * Future event list implemented by a calendar queue (R. Brown, 1988). Events are kept in an
+ * array of buckets, each one a sorted list of the events that fall into a time slot of 'width'
+ * time units, so that adding and removing an event takes O(1) amortized time. The number of
+ * buckets follows the size of the list, and the width of buckets is recomputed from the spread
+ * of the earliest events whenever the calendar is resized. Events with the same time are
+ * returned in the order of FutureEvent.compareTo.
+ */
+public class CalendarFEL extends AbstractFEL {
+	private static int MIN_BUCKETS = 2;
+	private static int SAMPLE_SIZE = 25;
+
+	private FutureEvent[] buckets;
+	private FutureEvent[] tails;
+	private int mask;
+	private long width = 1;
+	private int size = 0;
+
+	private int lastBucket = 0;
+	private long lastTime = 0;
+	private long bucketTop;
+	private boolean resizeEnabled = true;
+
+//----------------------------------------------------------------------------------
+	public CalendarFEL() {
+		this.allocate(CalendarFEL.MIN_BUCKETS, 1);
+	}
+
+//----------------------------------------------------------------------------------
+	public void addEvent(FutureEvent event) {
+		this.insert(event);
+		this.size++;
+
+		if (this.resizeEnabled && this.size > 2 * this.buckets.length)
+			this.resize(2 * this.buckets.length);
+	}
+
+//----------------------------------------------------------------------------------
+	public int size() {
+		return this.size;
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent pollFirst() {
+		if (this.size == 0)
+			return null;
+
+		int i = this.lastBucket;
+		for (int n = 0; n < this.buckets.length; n++) {
+			FutureEvent event = this.buckets[i];
+			if (event != null && event.time < this.bucketTop)
+				return this.removeFirst(i);
+
+			i = (i + 1) & this.mask;
+			this.bucketTop += this.width;
+		}
+
+		// there is no event in the coming year, so jump directly to the smallest one
+		int minBucket = -1;
+		for (i = 0; i < this.buckets.length; i++) {
+			if (this.buckets[i] != null && (minBucket == -1 || this.buckets[i].time < this.buckets[minBucket].time))
+				minBucket = i;
+		}
+
+		this.setCurrent(this.buckets[minBucket].time);
+
+		return this.removeFirst(minBucket);
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent peekFirst() {
+		if (this.size == 0)
+			return null;
+
+		int i = this.lastBucket;
+		long top = this.bucketTop;
+		for (int n = 0; n < this.buckets.length; n++) {
+			FutureEvent event = this.buckets[i];
+			if (event != null && event.time < top)
+				return event;
+
+			i = (i + 1) & this.mask;
+			top += this.width;
+		}
+
+		FutureEvent min = null;
+		for (i = 0; i < this.buckets.length; i++) {
+			if (this.buckets[i] != null && (min == null || this.buckets[i].time < min.time))
+				min = this.buckets[i];
+		}
+
+		return min;
+	}
+
+//----------------------------------------------------------------------------------
+	protected void removeDeletedEvents() {
+		for (int i = 0; i < this.buckets.length; i++) {
+			FutureEvent prev = null;
+			FutureEvent event = this.buckets[i];
+			while (event != null) {
+				FutureEvent next = event.next;
+				if (event.deleted) {
+					if (prev == null)
+						this.buckets[i] = next;
+					else
+						prev.next = next;
+					event.next = null;
+					this.size--;
+				} else
+					prev = event;
+				event = next;
+			}
+
+			this.tails[i] = prev;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	protected Vector<FutureEvent> getEvents() {
+		Vector<FutureEvent> events = new Vector<FutureEvent>();
+
+		for (int i = 0; i < this.buckets.length; i++) {
+			for (FutureEvent event = this.buckets[i]; event != null; event = event.next)
+				events.add(event);
+		}
+
+		return events;
+	}
+
+//----------------------------------------------------------------------------------
+	private int bucketOf(long time) {
+		return (int)((time / this.width) & this.mask);
+	}
+
+//----------------------------------------------------------------------------------
+	private void setCurrent(long time) {
+		this.lastTime = time;
+		this.lastBucket = this.bucketOf(time);
+		this.bucketTop = (time / this.width + 1) * this.width;
+	}
+
+//----------------------------------------------------------------------------------
+	private void insert(FutureEvent event) {
+		int i = this.bucketOf(event.time);
+		FutureEvent tail = this.tails[i];
+
+		if (tail == null) {
+			event.next = null;
+			this.buckets[i] = event;
+			this.tails[i] = event;
+		} else if (tail.compareTo(event) <= 0) {
+			event.next = null;
+			tail.next = event;
+			this.tails[i] = event;
+		} else {
+			FutureEvent prev = null;
+			FutureEvent current = this.buckets[i];
+			while (current.compareTo(event) <= 0) {
+				prev = current;
+				current = current.next;
+			}
+
+			event.next = current;
+			if (prev == null)
+				this.buckets[i] = event;
+			else
+				prev.next = event;
+		}
+
+		if (event.time < this.lastTime)
+			this.setCurrent(event.time);
+	}
+
+//----------------------------------------------------------------------------------
+	private FutureEvent removeFirst(int i) {
+		FutureEvent event = this.buckets[i];
+
+		this.buckets[i] = event.next;
+		if (event.next == null)
+			this.tails[i] = null;
+		event.next = null;
+
+		this.lastBucket = i;
+		this.lastTime = event.time;
+		this.size--;
+
+		if (this.resizeEnabled && this.size < this.buckets.length / 2 && this.buckets.length > CalendarFEL.MIN_BUCKETS)
+			this.resize(this.buckets.length / 2);
+
+		return event;
+	}
+
+//----------------------------------------------------------------------------------
+	private void allocate(int numOfBuckets, long width) {
+		this.buckets = new FutureEvent[numOfBuckets];
+		this.tails = new FutureEvent[numOfBuckets];
+		this.mask = numOfBuckets - 1;
+		this.width = width;
+		this.setCurrent(this.lastTime);
+	}
+
+//----------------------------------------------------------------------------------
+	private void resize(int numOfBuckets) {
+		FutureEvent[] oldBuckets = this.buckets;
+		long oldLastTime = this.lastTime;
+		int oldSize = this.size;
+
+		// the earliest events are taken out to estimate the new bucket width
+		this.resizeEnabled = false;
+		int sampleSize = Math.min(this.size, CalendarFEL.SAMPLE_SIZE);
+		FutureEvent[] sample = new FutureEvent[sampleSize];
+		for (int i = 0; i < sampleSize; i++)
+			sample[i] = this.pollFirst();
+
+		this.lastTime = oldLastTime;
+		this.allocate(numOfBuckets, this.newWidth(sample));
+
+		// the sample goes in first, so most of the other events are appended to the tails of the buckets
+		for (int i = 0; i < sampleSize; i++)
+			this.insert(sample[i]);
+
+		for (int i = 0; i < oldBuckets.length; i++) {
+			FutureEvent event = oldBuckets[i];
+			while (event != null) {
+				FutureEvent next = event.next;
+				this.insert(event);
+				event = next;
+			}
+		}
+
+		this.size = oldSize;
+		this.resizeEnabled = true;
+	}
+
+//----------------------------------------------------------------------------------
+	private long newWidth(FutureEvent[] sample) {
+		if (sample.length < 2)
+			return this.width;
+
+		double average = (double)(sample[sample.length - 1].time - sample[0].time) / (sample.length - 1);
+
+		// separations much bigger than the average are not taken into account
+		long total = 0;
+		int count = 0;
+		for (int i = 1; i < sample.length; i++) {
+			long separation = sample[i].time - sample[i - 1].time;
+			if (separation <= 2 * average) {
+				total += separation;
+				count++;
+			}
+		}
+
+		long newWidth = (count > 0) ? (3 * total) / count : this.width;
+
+		return Math.max(1, newWidth);
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.io.PrintStream;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+
+import sicsim.config.SicsimConfig;
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+
+/**
+ * Conservative parallel engine of the simulator. A message sent at time t can not arrive before t
+ * plus the smallest latency of the network (lookahead), so the logical processes execute the events
+ * of a window [T, T + lookahead) in parallel, and exchange the messages between them at the end of
+ * the window. The events of the simulator are executed on the main thread between the windows,
+ * and a window does not run past the next event of the simulator or the next snapshot. If
+ * SicsimConfig.SYNC_UPDATE is set, each window is one time unit, since the peers are synchronized
+ * before every time.
+ * 
+ * For the same seed the result is the same as the sequential simulator, as explained in
+ * ParallelEngine, except for the messages to the simulator, which are executed at the end of
+ * the window in which they are sent.
+ * @see ParallelEngine
+ * @see SicsimConfig
+ */
+public class ConservativeEngine extends ParallelEngine {
+	private Vector<Callable<Object>> windowTasks = new Vector<Callable<Object>>();
+	private Vector<Callable<Object>> deliveryTasks = new Vector<Callable<Object>>();
+
+	private long lookahead;
+	private long windowEnd;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the engine.
+	 * @param sim The simulator.
+	 * @param scheduler The scheduler of the simulator.
+	 * @param futureEventList The future event list of the scheduler, which keeps the events of the simulator.
+	 * @param eventPool The event pool of the main thread.
+	 */
+	public ConservativeEngine(SicSim sim, Scheduler scheduler, FEL futureEventList, FutureEventPool eventPool) {
+		super(sim, scheduler, futureEventList, eventPool);
+
+		int numOfProcesses = this.getNumOfProcesses();
+		this.processes = new LogicalProcess[numOfProcesses];
+		for (int i = 0; i < numOfProcesses; i++) {
+			final LogicalProcess process = new LogicalProcess(i, numOfProcesses, this.config);
+			this.processes[i] = process;
+
+			this.windowTasks.add(new Callable<Object>() {
+				public Object call() {
+					runWindow(process);
+					return null;
+				}
+			});
+
+			this.deliveryTasks.add(new Callable<Object>() {
+				public Object call() {
+					deliver(process);
+					return null;
+				}
+			});
+		}
+
+		// the link latencies are drawn from [0, LINK_LATENCY), so they add nothing to the lookahead
+		this.lookahead = this.config.SYNC_UPDATE ? 1 : sim.getCoreNet().getMinNetLatency();
+
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_INFO)
+			System.out.println("SICSSIM => conservative engine, " + numOfProcesses + " logical processes, " + this.pool.getParallelism() + " threads, lookahead " + this.lookahead);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs the simulation window by window until the clock reaches 'till'.
+	 * @param till The maximum time of simulation.
+	 */
+	public void runTill(long till) {
+		PrintStream out = this.redirectOutput();
+
+		try {
+			this.scheduler.start();
+
+			while (this.scheduler.getCurrentClock() < till) {
+				long time = this.nextTime();
+				if (time == Long.MAX_VALUE)
+					break;
+
+				if (time > this.config.SIM_TIME) {
+					if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+						System.out.println("SICSSIM => Simulation maximum time achieved!");
+					break;
+				}
+
+				this.scheduler.setCurrentClock(time);
+				this.sim.prepareStep();
+
+				if (!this.runSimEvents(time))
+					break;
+
+				this.windowEnd = time + this.lookahead;
+				FutureEvent next = this.futureEventList.peekEvent();
+				if (next != null && next.time < this.windowEnd)
+					this.windowEnd = next.time;
+				if (this.windowEnd > this.sim.getNextSnapshot())
+					this.windowEnd = this.sim.getNextSnapshot();
+				if (this.windowEnd > Math.min(till, (long)this.config.SIM_TIME) + 1)
+					this.windowEnd = Math.min(till, (long)this.config.SIM_TIME) + 1;
+
+				this.invoke(this.windowTasks);
+				this.invoke(this.deliveryTasks);
+
+				this.finishWindow(out);
+				this.scheduler.setCurrentClock(this.windowEnd - 1);
+			}
+		} finally {
+			this.restoreOutput(out);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Adds an event. Inside a window, the event is kept by the logical process of the caller if it
+	 * is for one of its own peers, otherwise it is sent at the end of the window. Outside a window,
+	 * the event is added directly to the future event list of its destination.
+	 * @param time Time, relative to the current clock, at which the event should occur.
+	 * @param srcId Source of the event.
+	 * @param destId Destination of the event.
+	 * @param type Type of the event.
+	 * @param msg Message attached with the event.
+	 * @return The added event.
+	 */
+	public FutureEvent addEvent(long time, NodeId srcId, NodeId destId, EventType type, Message msg) {
+		LogicalProcess process = this.currentProcess.get();
+
+		if (process == null) {
+			FutureEvent event = this.eventPool.get(this.scheduler.getCurrentClock() + time, srcId, destId, type, msg);
+			this.sim.order(event, null);
+			if (destId.equals(SicsimConfig.SICSSIM_NODE_ID))
+				this.futureEventList.addEvent(event);
+			else
+				this.processes[this.indexOf(destId)].futureEventList.addEvent(event);
+			return event;
+		}
+
+		FutureEvent event = process.eventPool.get(process.clock + time, srcId, destId, type, msg);
+		this.sim.order(event, process);
+
+		if (destId.equals(SicsimConfig.SICSSIM_NODE_ID)) {
+			process.sendSim(event);
+			return event;
+		}
+
+		int dest = this.indexOf(destId);
+		if (dest == process.index) {
+			process.futureEventList.addEvent(event);
+			return event;
+		}
+
+		if (event.time < this.windowEnd) {
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+				System.out.println("SICSSIM => Event from " + srcId + " to " + destId + " at " + event.time + " is shorter than the lookahead, delivered at " + this.windowEnd);
+			event.time = this.windowEnd;
+		}
+
+		process.send(event, dest);
+
+		return event;
+	}
+
+//----------------------------------------------------------------------------------
+	private long nextTime() {
+		long time = Long.MAX_VALUE;
+		FutureEvent event = this.futureEventList.peekEvent();
+
+		if (event != null)
+			time = event.time;
+
+		for (int i = 0; i < this.processes.length; i++) {
+			event = this.processes[i].futureEventList.peekEvent();
+			if (event != null && event.time < time)
+				time = event.time;
+		}
+
+		return time;
+	}
+
+//----------------------------------------------------------------------------------
+	private void runWindow(LogicalProcess process) {
+		this.enter(process);
+
+		try {
+			FutureEvent event;
+			while ((event = process.futureEventList.peekEvent()) != null && event.time < this.windowEnd) {
+				process.futureEventList.getLastEvent();
+				process.clock = event.time;
+				event.processed = true;
+				this.sim.doStep(event);
+				process.record(event);
+				process.eventPool.release(event);
+			}
+		} finally {
+			this.exit();
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	private void deliver(LogicalProcess process) {
+		for (int i = 0; i < this.processes.length; i++) {
+			LogicalProcess src = this.processes[i];
+			FutureEvent event = src.outboxHeads[process.index];
+
+			while (event != null) {
+				FutureEvent next = event.next;
+				event.next = null;
+				process.futureEventList.addEvent(event);
+				event = next;
+			}
+
+			src.outboxHeads[process.index] = null;
+			src.outboxTails[process.index] = null;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Merges what the logical processes have kept during the window.
+	 */
+	private void finishWindow(PrintStream out) {
+		this.merge(out);
+
+		for (int i = 0; i < this.processes.length; i++) {
+			LogicalProcess process = this.processes[i];
+
+			FutureEvent event = process.simHead;
+			while (event != null) {
+				FutureEvent next = event.next;
+				event.next = null;
+				if (event.time < this.windowEnd - 1)
+					event.time = this.windowEnd - 1;
+				this.futureEventList.addEvent(event);
+				event = next;
+			}
+			process.simHead = null;
+			process.simTail = null;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+/**
+ * Selects the events that are cancelled together from a future event list.
+ * @see FEL#cancelEvents(EventFilter)
+ */
+public interface EventFilter {
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if an event is selected.
+	 * @param event The event.
+	 * @return 'true' if the event is selected.
+	 */
+	public boolean accept(FutureEvent event);
+}
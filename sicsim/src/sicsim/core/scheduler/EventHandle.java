@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import sicsim.types.NodeId;
+
+/**
+ * A handle of an event in the future event list, which is returned when the event is added and
+ * can be used to cancel it. The handle is not valid anymore once the event is executed or
+ * cancelled, even if the simulator recycles the event for another message.
+ * @see SicSim#cancelEvent(EventHandle)
+ */
+public class EventHandle {
+	private FutureEvent event;
+	private int generation;
+
+//----------------------------------------------------------------------------------
+	EventHandle(FutureEvent event) {
+		this.event = event;
+		this.generation = event.generation;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the event of the handle, if it has not been recycled for another message.
+	 * @return The event, or null if it is executed and recycled.
+	 */
+	FutureEvent getEvent() {
+		if (this.event.generation != this.generation)
+			return null;
+
+		return this.event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the destination of the event of the handle.
+	 * @return The destination, or null if the event is executed and recycled.
+	 */
+	public NodeId getDestId() {
+		FutureEvent event = this.getEvent();
+
+		if (event == null)
+			return null;
+
+		return event.destId;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the event of the handle is still waiting in the future event list.
+	 * @return 'true' if the event is neither executed nor cancelled.
+	 */
+	public boolean isPending() {
+		FutureEvent event = this.getEvent();
+
+		return (event != null && !event.processed && !event.isCancelled());
+	}
+}
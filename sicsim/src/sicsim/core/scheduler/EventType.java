@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+/**
+ * Types of the events in the future event list. The name of each type is the string that
+ * is written in the saved state of the future event list.
+ */
+public enum EventType {
+	/**
+	 * A message from one peer to another peer, or from a peer to itself.
+	 */
+	MSG(false),
+	/**
+	 * A message from a peer to the simulator.
+	 */
+	SIM_MSG(false),
+	/**
+	 * A periodic event.
+	 */
+	PERIODIC(false),
+	/**
+	 * Notification of the failure of a peer to a peer who registered for it in the failure detector.
+	 */
+	FAILURE_DETECTION(false),
+	/**
+	 * Join of a new peer.
+	 */
+	JOIN(true),
+	/**
+	 * Leave of a random peer.
+	 */
+	LEAVE(true),
+	/**
+	 * Failure of a random peer.
+	 */
+	FAILURE(true),
+	/**
+	 * A delay in the scenario.
+	 */
+	DELAY(true),
+	/**
+	 * Saving the state of the simulator.
+	 */
+	SAVE_OVERLAY(true),
+	/**
+	 * Loading the saved state of the simulator.
+	 */
+	LOAD_OVERLAY(true),
+	/**
+	 * Loading the monitor.
+	 */
+	MONITOR_OVERLAY(true),
+	/**
+	 * A signal to a random peer.
+	 */
+	SIGNAL(true);
+
+	private final boolean scenarioEvent;
+
+//----------------------------------------------------------------------------------
+	private EventType(boolean scenarioEvent) {
+		this.scenarioEvent = scenarioEvent;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if events of this type are generated by the scenario. When such an event is
+	 * fetched from the future event list, the scheduler reads the next event of the scenario.
+	 * @return 'true' if the events of this type come from the scenario, otherwise returns 'false'.
+	 */
+	public boolean isScenarioEvent() {
+		return this.scenarioEvent;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the event type with the specified name, ignoring the case.
+	 * @param str The name of the event type, as it appears in the scenario or in the saved state.
+	 * @return The event type, or null if there is no type with this name.
+	 */
+	public static EventType parse(String str) {
+		if (str == null)
+			return null;
+
+		try {
+			return EventType.valueOf(str.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
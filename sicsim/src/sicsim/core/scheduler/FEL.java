@@ -18,103 +18,81 @@
 
 package sicsim.core.scheduler;
 
-import java.util.Iterator;
-import java.util.PriorityQueue;
-import java.util.Queue;
-
-import sicsim.config.SicsimConfig;
-import sicsim.types.Message;
-import sicsim.types.NodeId;
-import sicsim.utils.FileIO;
-import sicsim.utils.PatternMatching;
+import sicsim.config.SimulationContext;
 
 /**
- * Class to implement future event list. 
+ * Interface of the future event list. The implementation used by the simulator
+ * is selected by SicsimConfig.FEL_TYPE.
+ * @see HeapFEL
+ * @see CalendarFEL
+ * @see RadixFEL
+ * @see WheelFEL
  */
-public class FEL {
-	private Queue<FutureEvent> futureEventList = new PriorityQueue<FutureEvent>();	
+public interface FEL {
 
 //----------------------------------------------------------------------------------
 	/**
 	 * Adds an event to the future event list.
 	 * @param event The event to be added to the future event list.
 	 */
-	public void addEvent(FutureEvent event) {
-		this.futureEventList.add(event);
-	}
+	public void addEvent(FutureEvent event);
 
 //----------------------------------------------------------------------------------
 	/**
-	 * Returns the size of the future event list.
+	 * Returns the size of the future event list, including the cancelled events that are not removed yet.
 	 * @return The size of the future event list.
 	 */
-	public int size() {
-		return this.futureEventList.size();
-	}
+	public int size();
 
 //----------------------------------------------------------------------------------
 	/**
 	 * Does the future event list has more events.
 	 * @return 'true' if it has more events, otherwise returns 'false'.
 	 */
-	public boolean hasEvent() {
-		return !(this.futureEventList.isEmpty());
-	}
-	
+	public boolean hasEvent();
+
 //----------------------------------------------------------------------------------
 	/**
-	 * Returns the last event from the future event list.
-	 * @return The last event in the future event list.
+	 * Removes and returns the event with the smallest time from the future event list.
+	 * @return The last event in the future event list, or null if the list is empty.
 	 */
-	public FutureEvent getLastEvent() {
-		return this.futureEventList.poll();
-	}
-		
-//----------------------------------------------------------------------------------
-	public String toString() {
-		String str = new String();
-		
-		Iterator<FutureEvent> felIter = this.futureEventList.iterator();
-		while(felIter.hasNext()) {
-			str += felIter.next().toString();
-			str += PatternMatching.splitter + "\n";
-		}
-		
-		str += "\n";
-		
-		return str;
-	}
-	
+	public FutureEvent getLastEvent();
+
 //----------------------------------------------------------------------------------
 	/**
-	 * Saves the status of the future event list.
+	 * Returns the event with the smallest time without removing it from the future event list.
+	 * @return The last event in the future event list, or null if the list is empty.
 	 */
-	public void saveState(long currentTime) {
-		FileIO.write(this.toString(), SicsimConfig.FEL_FILE);
-	}
-	
+	public FutureEvent peekEvent();
+
 //----------------------------------------------------------------------------------
 	/**
-	 * Loads the status of the future event list.
+	 * Cancels an event of the future event list. The event is deleted lazily: it is only marked, and
+	 * it is removed when it reaches the head of the list, or together with the other cancelled events
+	 * when they make up most of the list. A cancelled event is never returned by the list.
+	 * @param event The event to be cancelled.
 	 */
-	public void loadState() {
-		String str = FileIO.read(SicsimConfig.FEL_FILE);
-		String[] parts = str.split(PatternMatching.splitter);
+	public void cancelEvent(FutureEvent event);
 
-		for (int i = 0; i < parts.length - 1; i++) {
-			FutureEvent event = new FutureEvent();
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels all the events of the future event list that are selected by a filter, in one pass over the list.
+	 * @param filter The filter.
+	 * @return The number of cancelled events.
+	 */
+	public int cancelEvents(EventFilter filter);
 
-			event.type = PatternMatching.getStrValue(parts[i], "type:");
-			event.time = PatternMatching.getIntValue(parts[i], "time:");
-			if (PatternMatching.getNodeValue(parts[i], "src:") != null)
-				event.srcId = new NodeId(PatternMatching.getNodeValue(parts[i], "src:"));
-			if (PatternMatching.getNodeValue(parts[i], "dest:") != null)
-				event.destId = new NodeId(PatternMatching.getNodeValue(parts[i], "dest:"));
-			event.data = Message.restore(PatternMatching.getStrValue(parts[i], "data:"));
-			this.futureEventList.add(event);
-		}
+//----------------------------------------------------------------------------------
+	/**
+	 * Saves the status of the future event list in SicsimConfig.FEL_FILE.
+	 * @param context The context of the simulation.
+	 */
+	public void saveState(SimulationContext context);
 
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
-			System.out.println("FEL => " + this.futureEventList);
-	}
+//----------------------------------------------------------------------------------
+	/**
+	 * Loads the status of the future event list from SicsimConfig.FEL_FILE.
+	 * @param context The context of the simulation.
+	 */
+	public void loadState(SimulationContext context);
 }
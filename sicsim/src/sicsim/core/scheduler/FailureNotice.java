@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.util.Arrays;
+
+import sicsim.config.SicsimConfig;
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+import sicsim.utils.PatternMatching;
+
+/**
+ * The failure notifications that are delivered at the same time. They share one event of the simulator,
+ * which keeps the peers to be notified and the failed peers as packed node ids.
+ * @see NodeId#toLong()
+ */
+class FailureNotice {
+	private static int INITIAL_CAPACITY = 16;
+
+	long time;
+	long[] nodeIds = new long[FailureNotice.INITIAL_CAPACITY];
+	long[] failedIds = new long[FailureNotice.INITIAL_CAPACITY];
+	int size = 0;
+
+//----------------------------------------------------------------------------------
+	FailureNotice(long time) {
+		this.time = time;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Adds a notification.
+	 * @param nodeId The packed node id of the peer to be notified.
+	 * @param failedId The packed node id of the failed peer.
+	 */
+	void add(long nodeId, long failedId) {
+		if (this.size == this.nodeIds.length) {
+			this.nodeIds = Arrays.copyOf(this.nodeIds, 2 * this.size);
+			this.failedIds = Arrays.copyOf(this.failedIds, 2 * this.size);
+		}
+
+		this.nodeIds[this.size] = nodeId;
+		this.failedIds[this.size] = failedId;
+		this.size++;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the notifications in the format of the saved future event list, as one event per
+	 * notification, so they are loaded back as separate events.
+	 */
+	public String toString() {
+		String str = new String();
+
+		for (int i = 0; i < this.size; i++) {
+			if (i > 0)
+				str += PatternMatching.splitter + "\n";
+
+			Message msg = new Message(new String("NULL"), NodeId.valueOf(this.failedIds[i]).toString());
+			str += new FutureEvent(this.time, SicsimConfig.SICSSIM_NODE_ID, NodeId.valueOf(this.nodeIds[i]), EventType.FAILURE_DETECTION, msg).toString();
+		}
+
+		return str;
+	}
+}
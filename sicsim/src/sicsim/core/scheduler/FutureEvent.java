@@ -18,15 +18,20 @@
 
 package sicsim.core.scheduler;
 
+import sicsim.config.SicsimConfig;
 import sicsim.types.Message;
 import sicsim.types.NodeId;
 
 public class FutureEvent implements Comparable<FutureEvent> {
+	/**
+	 * Marks the order of the events that are sent to the peers, so that the events of the simulator come first among the events with the same time.
+	 */
+	static long PEER_EVENT = 1L << 62;
 
 	public NodeId srcId;
 	public NodeId destId;
 	public long time; 
-	public String type;
+	public EventType type;
 	public Message data;
 	public int signal;
 	
@@ -34,6 +39,57 @@ public class FutureEvent implements Comparable<FutureEvent> {
 	public Class<?> linkType;
 	public Class<?> monitorOverlay;	
 
+	/**
+	 * Orders the events with the same time: the events of the simulator come first, then the events are ordered by the
+	 * number of the peer whose code has added them, zero for the simulator, and by the sequence of the events that this
+	 * code has added. So every engine executes the events in the same order, whatever the future event list and the
+	 * logical processes are.
+	 */
+	long order;
+	long sequence;
+
+	/**
+	 * Links the events that are kept in the same bucket of a bucket based future event list.
+	 */
+	FutureEvent next;
+
+	/**
+	 * Tells the time warp engine that the event has been executed optimistically and may be undone.
+	 */
+	boolean processed;
+
+	/**
+	 * Tells the time warp engine that the event has been cancelled by an anti-message and must be skipped.
+	 */
+	boolean cancelled;
+
+	/**
+	 * Tells the future event list that the event has been cancelled through its handle and must be skipped.
+	 */
+	boolean deleted;
+
+	/**
+	 * Tells the parallel engines that the event has been cancelled through its handle by a logical process,
+	 * before its future event list knows it. The time warp engine executes it as an empty event, since the
+	 * cancellation may still be undone.
+	 */
+	boolean withdrawn;
+
+	/**
+	 * Counts how many times the event has been recycled, so that the handles of its earlier uses are not valid anymore.
+	 */
+	int generation;
+
+	/**
+	 * The cohort of periodic timers that is served by the event, if it is a periodic event of the simulator.
+	 */
+	PeriodicCohort cohort;
+
+	/**
+	 * The failure notifications that are delivered by the event, if it is a failure detection event of the simulator.
+	 */
+	FailureNotice notice;
+
 //----------------------------------------------------------------------------------
 	FutureEvent() {
 	}
@@ -48,7 +104,7 @@ public class FutureEvent implements Comparable<FutureEvent> {
 	 * @param type the event type
 	 * @param data the event data
 	 */
-	FutureEvent(long time, NodeId srcId, NodeId destId, String type, Message data) {
+	FutureEvent(long time, NodeId srcId, NodeId destId, EventType type, Message data) {
 		this.time = time;
 		this.srcId = srcId;
 		this.destId = destId;
@@ -66,7 +122,7 @@ public class FutureEvent implements Comparable<FutureEvent> {
 	 * @param type the event type
 	 * @param data the event data
 	 */
-	FutureEvent(long time, NodeId srcId, NodeId destId, String type, Message data, Class<?> nodeType, Class<?> linkType) {
+	FutureEvent(long time, NodeId srcId, NodeId destId, EventType type, Message data, Class<?> nodeType, Class<?> linkType) {
 		this.time = time;
 		this.srcId = srcId;
 		this.destId = destId;
@@ -77,36 +133,59 @@ public class FutureEvent implements Comparable<FutureEvent> {
 	}
 	
 //----------------------------------------------------------------------------------
-	FutureEvent(String type, Class<?> auxOverlay) {
+	FutureEvent(EventType type, Class<?> auxOverlay) {
 		this.type = type;
 		this.monitorOverlay = auxOverlay;
 	}
 	
 //----------------------------------------------------------------------------------
-	FutureEvent(String type, long time) {
+	FutureEvent(EventType type, long time) {
 		this.type = type;
 		this.time = time;
 	}
 
 //----------------------------------------------------------------------------------
-	FutureEvent(String type, long time, int signal) {
+	FutureEvent(EventType type, long time, int signal) {
 		this.type = type;
 		this.time = time;
 		this.signal = signal;
 	}
 	
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the event has been cancelled in any way, so it must not be executed.
+	 * @return 'true' if the event is cancelled.
+	 */
+	boolean isCancelled() {
+		return (this.cancelled || this.deleted || this.withdrawn);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the event is executed by the simulator, instead of a peer.
+	 * @return 'true' if the event is sent to the simulator or comes from the scenario.
+	 */
+	boolean isSimEvent() {
+		return (this.destId == null || this.destId.equals(SicsimConfig.SICSSIM_NODE_ID) || this.type.isScenarioEvent());
+	}
+
 //----------------------------------------------------------------------------------
 	public int compareTo(FutureEvent event) {
-		if (this.time < event.time)
-			return -1;
-		else if (this.time > event.time)
-			return 1;
+		if (this.time != event.time)
+			return (this.time < event.time) ? -1 : 1;
+		else if (this.order != event.order)
+			return (this.order < event.order) ? -1 : 1;
+		else if (this.sequence != event.sequence)
+			return (this.sequence < event.sequence) ? -1 : 1;
 		else 
 			return 0;
 	}
 	
 //----------------------------------------------------------------------------------
 	public String toString() {
+		if (this.notice != null)
+			return this.notice.toString();
+
 		String str = new String();
 
 		str += "type: " + ((this.type != null) ? this.type : "") + "\n";
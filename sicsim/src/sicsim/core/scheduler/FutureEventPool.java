@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+
+/**
+ * Class to recycle the events of the future event list. The simulator returns each event
+ * to the pool after executing it, and takes the events of new messages from the pool, so
+ * that delivering messages does not create garbage in the steady state.
+ */
+public class FutureEventPool {
+	private static int MAX_SIZE = 1 << 16;
+
+	private FutureEvent free = null;
+	private int size = 0;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns an event from the pool, or a new event if the pool is empty.
+	 * @param time Time of the event.
+	 * @param srcId Source of the event.
+	 * @param destId Destination of the event.
+	 * @param type Type of the event.
+	 * @param data Message attached to the event.
+	 * @return The event.
+	 */
+	public FutureEvent get(long time, NodeId srcId, NodeId destId, EventType type, Message data) {
+		FutureEvent event = this.free;
+
+		if (event == null)
+			return new FutureEvent(time, srcId, destId, type, data);
+
+		this.free = event.next;
+		this.size--;
+
+		event.next = null;
+		event.time = time;
+		event.srcId = srcId;
+		event.destId = destId;
+		event.type = type;
+		event.data = data;
+
+		return event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns an executed event to the pool. The event must not be used after calling this method.
+	 * @param event The executed event.
+	 */
+	public void release(FutureEvent event) {
+		event.generation++;
+
+		if (this.size == FutureEventPool.MAX_SIZE)
+			return;
+
+		event.srcId = null;
+		event.destId = null;
+		event.type = null;
+		event.data = null;
+		event.signal = 0;
+		event.nodeType = null;
+		event.linkType = null;
+		event.monitorOverlay = null;
+		event.processed = false;
+		event.cancelled = false;
+		event.deleted = false;
+		event.withdrawn = false;
+		event.cohort = null;
+		event.notice = null;
+
+		event.next = this.free;
+		this.free = event;
+		this.size++;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the number of events in the pool.
+	 * @return The number of events in the pool.
+	 */
+	public int size() {
+		return this.size;
+	}
+}
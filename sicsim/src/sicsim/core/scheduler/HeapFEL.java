@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Vector;
+
+/**
+ * Future event list implemented by a binary heap. This is the default implementation.
+ */
+public class HeapFEL extends AbstractFEL {
+	private Queue<FutureEvent> futureEventList = new PriorityQueue<FutureEvent>();
+
+//----------------------------------------------------------------------------------
+	public void addEvent(FutureEvent event) {
+		this.futureEventList.add(event);
+	}
+
+//----------------------------------------------------------------------------------
+	public int size() {
+		return this.futureEventList.size();
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent pollFirst() {
+		return this.futureEventList.poll();
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent peekFirst() {
+		return this.futureEventList.peek();
+	}
+
+//----------------------------------------------------------------------------------
+	protected void removeDeletedEvents() {
+		Vector<FutureEvent> events = new Vector<FutureEvent>(this.futureEventList.size());
+
+		for (FutureEvent event : this.futureEventList) {
+			if (!event.deleted)
+				events.add(event);
+		}
+
+		this.futureEventList = new PriorityQueue<FutureEvent>(events);
+	}
+
+//----------------------------------------------------------------------------------
+	protected Vector<FutureEvent> getEvents() {
+		return new Vector<FutureEvent>(this.futureEventList);
+	}
+}
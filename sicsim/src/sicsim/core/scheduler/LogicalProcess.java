@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import sicsim.config.SicsimConfig;
+import sicsim.utils.SavableRandom;
+
+/**
+ * A logical process of the parallel engine. It owns the events of the peers whose node ids fall
+ * into its range, and keeps everything that its peers produce during a time window, i.e. the
+ * events for other logical processes, the messages to the simulator, the changes of the shared
+ * state and the printed output, until the engine merges them at the end of the window. The
+ * executed events that have printed something or changed the shared state are recorded with
+ * their order, so that the engine can merge the work of all the logical processes in the order
+ * of the events.
+ * @see ParallelEngine
+ */
+class LogicalProcess {
+	int index;
+	long clock = 0;
+	FEL futureEventList;
+	FutureEventPool eventPool = new FutureEventPool();
+
+	// the peer whose code is running, and the generator that it draws from
+	PeerStream stream;
+	SavableRandom random = new SavableRandom(0);
+
+	FutureEvent[] outboxHeads;
+	FutureEvent[] outboxTails;
+	FutureEvent simHead;
+	FutureEvent simTail;
+
+	Vector<Runnable> sharedActions = new Vector<Runnable>();
+	byte[] output = new byte[256];
+	int outputSize = 0;
+
+	// for each recorded event, its order and where its output and its actions end
+	long[] recordTimes = new long[64];
+	long[] recordOrders = new long[64];
+	long[] recordSequences = new long[64];
+	int[] recordOutputs = new int[64];
+	int[] recordActions = new int[64];
+	int records = 0;
+
+//----------------------------------------------------------------------------------
+	LogicalProcess(int index, int numOfProcesses, SicsimConfig config) {
+		this.index = index;
+		this.futureEventList = SicSim.createFutureEventList(config);
+		this.outboxHeads = new FutureEvent[numOfProcesses];
+		this.outboxTails = new FutureEvent[numOfProcesses];
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Keeps the bytes that are printed by the peers of this logical process.
+	 * @param b The bytes.
+	 * @param off The offset of the first byte.
+	 * @param len The number of bytes.
+	 */
+	void print(byte[] b, int off, int len) {
+		if (this.outputSize + len > this.output.length)
+			this.output = Arrays.copyOf(this.output, Math.max(2 * this.output.length, this.outputSize + len));
+
+		System.arraycopy(b, off, this.output, this.outputSize, len);
+		this.outputSize += len;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Keeps an event for another logical process until the end of the current window.
+	 * @param event The event.
+	 * @param dest The index of the destination logical process.
+	 */
+	void send(FutureEvent event, int dest) {
+		event.next = null;
+		if (this.outboxHeads[dest] == null)
+			this.outboxHeads[dest] = event;
+		else
+			this.outboxTails[dest].next = event;
+		this.outboxTails[dest] = event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Keeps an event for the simulator until the end of the current window.
+	 * @param event The event.
+	 */
+	void sendSim(FutureEvent event) {
+		event.next = null;
+		if (this.simHead == null)
+			this.simHead = event;
+		else
+			this.simTail.next = event;
+		this.simTail = event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Records an executed event, if it has printed something or kept an action on the shared state,
+	 * or if it is the first recorded event of its time, so that the monitor is updated before it.
+	 * @param event The executed event.
+	 */
+	void record(FutureEvent event) {
+		this.record(event, this.outputSize, this.sharedActions.size());
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Records an executed event whose output and actions end at the given positions.
+	 */
+	void record(FutureEvent event, int output, int actions) {
+		int n = this.records;
+		if (n > 0 && this.recordTimes[n - 1] == event.time && this.recordOutputs[n - 1] == output && this.recordActions[n - 1] == actions)
+			return;
+
+		if (n == this.recordTimes.length) {
+			this.recordTimes = Arrays.copyOf(this.recordTimes, 2 * n);
+			this.recordOrders = Arrays.copyOf(this.recordOrders, 2 * n);
+			this.recordSequences = Arrays.copyOf(this.recordSequences, 2 * n);
+			this.recordOutputs = Arrays.copyOf(this.recordOutputs, 2 * n);
+			this.recordActions = Arrays.copyOf(this.recordActions, 2 * n);
+		}
+
+		this.recordTimes[n] = event.time;
+		this.recordOrders[n] = event.order;
+		this.recordSequences[n] = event.sequence;
+		this.recordOutputs[n] = output;
+		this.recordActions[n] = actions;
+		this.records = n + 1;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Forgets the output and the shared actions of the recorded events, once they are merged.
+	 * @param output The end of the output of the recorded events.
+	 * @param actions The end of the actions of the recorded events.
+	 */
+	void discard(int output, int actions) {
+		System.arraycopy(this.output, output, this.output, 0, this.outputSize - output);
+		this.outputSize -= output;
+		this.sharedActions.subList(0, actions).clear();
+		this.records = 0;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the recorded event 'i' comes before the recorded event 'j' of another logical process.
+	 */
+	boolean isBefore(int i, LogicalProcess process, int j) {
+		if (this.recordTimes[i] != process.recordTimes[j])
+			return (this.recordTimes[i] < process.recordTimes[j]);
+		if (this.recordOrders[i] != process.recordOrders[j])
+			return (this.recordOrders[i] < process.recordOrders[j]);
+
+		return (this.recordSequences[i] < process.recordSequences[j]);
+	}
+}
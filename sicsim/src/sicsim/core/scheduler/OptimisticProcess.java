@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.util.Vector;
+
+import sicsim.config.SicsimConfig;
+import sicsim.network.peers.AbstractPeer;
+import sicsim.network.peers.Checkpointable;
+
+/**
+ * A logical process of the time warp engine. Besides what a logical process keeps during a window,
+ * it keeps one checkpoint for each event that it has executed optimistically, i.e. the state of the
+ * destination peer and of its streams before the event, and where the event has started
+ * in the logs of the sent events, the cancelled events, the shared actions, the messages to the
+ * simulator and the output.
+ * The checkpoints before the global virtual time are committed by the engine, and the others are
+ * used to undo the events if a straggler or an anti-message arrives.
+ * @see TimeWarpEngine
+ */
+class OptimisticProcess extends LogicalProcess {
+	/**
+	 * The state of a logical process before one of its events.
+	 */
+	static class Checkpoint {
+		FutureEvent event;
+		AbstractPeer peer;
+		Object state;
+		long sequence;
+		long randomState;
+		int sentStart;
+		int cancelStart;
+		int sharedStart;
+		int simStart;
+		int outputStart;
+		Checkpoint next;
+	}
+
+	Vector<Checkpoint> checkpoints = new Vector<Checkpoint>();
+	Vector<FutureEvent> sentLog = new Vector<FutureEvent>();
+	Vector<EventHandle> cancelLog = new Vector<EventHandle>();
+	Vector<FutureEvent> simLog = new Vector<FutureEvent>();
+	Vector<FutureEvent> antiMessages = new Vector<FutureEvent>();
+
+	private Checkpoint free;
+
+//----------------------------------------------------------------------------------
+	OptimisticProcess(int index, int numOfProcesses, SicsimConfig config) {
+		super(index, numOfProcesses, config);
+
+		// the events may be added again before the last removed event, which the radix heap and the timing wheel do not allow
+		if (this.futureEventList instanceof RadixFEL || this.futureEventList instanceof WheelFEL)
+			this.futureEventList = new HeapFEL();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Takes a checkpoint before executing an event.
+	 * @param event The event.
+	 * @param peer The destination peer of the event, or null if it is not in the network.
+	 * @param state The checkpoint of the peer.
+	 */
+	void save(FutureEvent event, AbstractPeer peer, Object state) {
+		Checkpoint checkpoint = this.free;
+
+		if (checkpoint == null)
+			checkpoint = new Checkpoint();
+		else
+			this.free = checkpoint.next;
+
+		checkpoint.event = event;
+		checkpoint.peer = peer;
+		checkpoint.state = state;
+		if (peer != null) {
+			checkpoint.sequence = peer.getStream().sequence;
+			checkpoint.randomState = peer.getStream().randomState;
+		}
+		checkpoint.sentStart = this.sentLog.size();
+		checkpoint.cancelStart = this.cancelLog.size();
+		checkpoint.sharedStart = this.sharedActions.size();
+		checkpoint.simStart = this.simLog.size();
+		checkpoint.outputStart = this.outputSize;
+		checkpoint.next = null;
+
+		this.checkpoints.add(checkpoint);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the time of the last executed event.
+	 * @return The time of the last executed event, or Long.MIN_VALUE if there is no checkpoint.
+	 */
+	long lastTime() {
+		if (this.checkpoints.isEmpty())
+			return Long.MIN_VALUE;
+
+		return this.checkpoints.lastElement().event.time;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the last executed event comes after 'event', so it has to be undone before 'event' is executed.
+	 * @param event The event.
+	 * @return 'true' if the last executed event comes after 'event'.
+	 */
+	boolean isAfter(FutureEvent event) {
+		return (!this.checkpoints.isEmpty() && this.checkpoints.lastElement().event.compareTo(event) > 0);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Undoes the last executed event. The events that it has sent to the peers of this logical
+	 * process are marked as cancelled, the events that it has sent to the other logical
+	 * processes are kept as anti-messages, and the events that it has cancelled are restored.
+	 * @param engine The engine, which gives the logical process of the destination of an event.
+	 * @return The undone event, which is not in the future event list anymore.
+	 */
+	FutureEvent undo(ParallelEngine engine) {
+		Checkpoint checkpoint = this.checkpoints.remove(this.checkpoints.size() - 1);
+
+		if (checkpoint.peer != null) {
+			((Checkpointable)checkpoint.peer).rollback(checkpoint.state);
+			checkpoint.peer.getStream().sequence = checkpoint.sequence;
+			checkpoint.peer.getStream().randomState = checkpoint.randomState;
+		}
+
+		for (int i = this.sentLog.size() - 1; i >= checkpoint.sentStart; i--) {
+			FutureEvent event = this.sentLog.remove(i);
+			if (engine.indexOf(event.destId) == this.index)
+				event.cancelled = true;
+			else
+				this.antiMessages.add(event);
+		}
+
+		for (int i = this.cancelLog.size() - 1; i >= checkpoint.cancelStart; i--) {
+			FutureEvent event = this.cancelLog.remove(i).getEvent();
+			if (event != null)
+				event.withdrawn = false;
+		}
+
+		for (int i = checkpoint.simStart; i < this.simLog.size(); i++)
+			this.eventPool.release(this.simLog.get(i));
+		this.simLog.setSize(checkpoint.simStart);
+
+		this.sharedActions.setSize(checkpoint.sharedStart);
+		this.outputSize = checkpoint.outputStart;
+
+		FutureEvent event = checkpoint.event;
+		event.processed = false;
+		this.recycle(checkpoint);
+
+		return event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Commits the events before 'time': gives their messages to the simulator, records them so that the
+	 * engine merges their shared actions and their output, and forgets their checkpoints.
+	 * @param time The time before which no event can be undone anymore.
+	 * @param simEventList The future event list of the simulator.
+	 * @param clock The clock of the simulator, which is the earliest time of a committed message to the simulator.
+	 * @return 'true' if at least one event is committed.
+	 */
+	boolean commit(long time, FEL simEventList, long clock) {
+		int count = 0;
+		while (count < this.checkpoints.size() && this.checkpoints.get(count).event.time < time)
+			count++;
+
+		if (count == 0)
+			return false;
+
+		int sent, cancel, sim;
+		if (count < this.checkpoints.size()) {
+			Checkpoint first = this.checkpoints.get(count);
+			sent = first.sentStart;
+			cancel = first.cancelStart;
+			sim = first.simStart;
+		} else {
+			sent = this.sentLog.size();
+			cancel = this.cancelLog.size();
+			sim = this.simLog.size();
+		}
+
+		for (int i = 0; i < sim; i++) {
+			FutureEvent event = this.simLog.get(i);
+			if (event.time < clock)
+				event.time = clock;
+			simEventList.addEvent(event);
+		}
+
+		for (int i = 0; i < count; i++) {
+			Checkpoint checkpoint = this.checkpoints.get(i);
+			Checkpoint next = (i + 1 < this.checkpoints.size()) ? this.checkpoints.get(i + 1) : null;
+			this.record(checkpoint.event, (next != null) ? next.outputStart : this.outputSize, (next != null) ? next.sharedStart : this.sharedActions.size());
+			this.eventPool.release(checkpoint.event);
+			this.recycle(checkpoint);
+		}
+		this.checkpoints.subList(0, count).clear();
+
+		this.sentLog.subList(0, sent).clear();
+		this.cancelLog.subList(0, cancel).clear();
+		this.simLog.subList(0, sim).clear();
+
+		for (int i = 0; i < this.checkpoints.size(); i++) {
+			Checkpoint checkpoint = this.checkpoints.get(i);
+			checkpoint.sentStart -= sent;
+			checkpoint.cancelStart -= cancel;
+			checkpoint.simStart -= sim;
+		}
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Forgets the output and the shared actions of the committed events, once they are merged.
+	 * The actions may have undone later events of this logical process, but never the committed ones.
+	 */
+	void discard(int output, int actions) {
+		super.discard(output, actions);
+
+		for (int i = 0; i < this.checkpoints.size(); i++) {
+			Checkpoint checkpoint = this.checkpoints.get(i);
+			checkpoint.sharedStart -= actions;
+			checkpoint.outputStart -= output;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	private void recycle(Checkpoint checkpoint) {
+		checkpoint.event = null;
+		checkpoint.peer = null;
+		checkpoint.state = null;
+		checkpoint.sequence = 0;
+		checkpoint.randomState = 0;
+		checkpoint.next = this.free;
+		this.free = checkpoint;
+	}
+}
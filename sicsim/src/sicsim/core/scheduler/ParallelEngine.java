@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.io.PrintStream;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+import sicsim.utils.Distribution;
+import sicsim.utils.FileIO;
+
+/**
+ * Base class of the parallel engines of the simulator. The peers are split by ranges of node id
+ * into logical processes, each one with its own future event list and output buffer, which are
+ * executed on a fork/join pool. The scenario events and the messages to the simulator stay in the
+ * future event list of the scheduler, and are executed on the main thread. The engine is selected
+ * by SicsimConfig.ENGINE.
+ * 
+ * The events with the same time are executed in the order of FutureEvent.compareTo, each peer draws
+ * from its own random generator, and what the logical processes print and change in the shared
+ * state is merged in the order of the events, so for the same seed the engines give the same result
+ * as the sequential simulator with SicsimConfig.CANONICAL_ORDER, whatever the number of logical processes and threads. The exceptions
+ * are the events that are sent to another logical process, or to the simulator, sooner than the
+ * engine can deliver them, and the code that reads the state of the peers or the shared state while
+ * the logical processes are running, e.g. a monitor that is updated inside a time window.
+ * @see ConservativeEngine
+ * @see TimeWarpEngine
+ * @see TimestepEngine
+ * @see LogicalProcess
+ */
+public abstract class ParallelEngine {
+	protected SicSim sim;
+	protected SimulationContext context;
+	protected SicsimConfig config;
+	protected Scheduler scheduler;
+	protected FEL futureEventList;
+	protected FutureEventPool eventPool;
+
+	protected LogicalProcess[] processes;
+	protected ForkJoinPool pool;
+	protected ThreadLocal<LogicalProcess> currentProcess = new ThreadLocal<LogicalProcess>();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the engine. The subclasses create the logical processes.
+	 * @param sim The simulator.
+	 * @param scheduler The scheduler of the simulator.
+	 * @param futureEventList The future event list of the scheduler, which keeps the events of the simulator.
+	 * @param eventPool The event pool of the main thread.
+	 */
+	public ParallelEngine(SicSim sim, Scheduler scheduler, FEL futureEventList, FutureEventPool eventPool) {
+		this.sim = sim;
+		this.context = sim.getContext();
+		this.config = this.context.getConfig();
+		this.scheduler = scheduler;
+		this.futureEventList = futureEventList;
+		this.eventPool = eventPool;
+
+		int numOfThreads = (this.config.NUM_OF_THREADS > 0) ? this.config.NUM_OF_THREADS : Runtime.getRuntime().availableProcessors();
+		this.pool = new ForkJoinPool(numOfThreads);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs the simulation until the clock reaches 'till'.
+	 * @param till The maximum time of simulation.
+	 */
+	public abstract void runTill(long till);
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Adds an event.
+	 * @param time Time, relative to the current clock, at which the event should occur.
+	 * @param srcId Source of the event.
+	 * @param destId Destination of the event.
+	 * @param type Type of the event.
+	 * @param msg Message attached with the event.
+	 * @return The added event.
+	 */
+	public abstract FutureEvent addEvent(long time, NodeId srcId, NodeId destId, EventType type, Message msg);
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels an event that is waiting in the future event list of the simulator or of a logical process.
+	 * A logical process can only cancel the events of its own peers.
+	 * @param event The event, which is not cancelled yet.
+	 * @return 'true' if the event is cancelled, or 'false' if it is executed or the caller can not cancel it.
+	 */
+	public boolean cancelEvent(FutureEvent event) {
+		LogicalProcess process = this.currentProcess.get();
+
+		if (event.processed)
+			return false;
+
+		if (event.destId.equals(SicsimConfig.SICSSIM_NODE_ID)) {
+			if (process != null)
+				return false;
+
+			this.futureEventList.cancelEvent(event);
+			return true;
+		}
+
+		LogicalProcess dest = this.processes[this.indexOf(event.destId)];
+		if (process != null && process != dest)
+			return false;
+
+		dest.futureEventList.cancelEvent(event);
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels the events of the simulator and of all the logical processes that are selected by a
+	 * filter. It is called on the main thread, when the logical processes have merged their work.
+	 * @param filter The filter.
+	 * @return The number of cancelled events.
+	 */
+	public int cancelEvents(EventFilter filter) {
+		int count = this.futureEventList.cancelEvents(filter);
+
+		for (int i = 0; i < this.processes.length; i++)
+			count += this.processes[i].futureEventList.cancelEvents(filter);
+
+		return count;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Keeps an action on the shared state until the logical process of the caller merges its work.
+	 * @param action The action.
+	 * @return 'true' if the action is kept, or 'false' if the caller is not inside a logical process and should run the action itself.
+	 */
+	public boolean defer(Runnable action) {
+		LogicalProcess process = this.currentProcess.get();
+
+		if (process == null)
+			return false;
+
+		process.sharedActions.add(action);
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Checks that the engine can execute the events of a class of peers, before such a peer is in the network.
+	 * @param nodeType The class of the peer.
+	 * @throws IllegalArgumentException If the engine can not execute the events of the peer.
+	 */
+	public void checkPeer(Class<?> nodeType) {
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets the current clock of the caller, which is the time of the event that is executed by its
+	 * logical process, or the clock of the scheduler on the main thread.
+	 * @return The current clock.
+	 */
+	public long getCurrentClock() {
+		LogicalProcess process = this.currentProcess.get();
+
+		if (process == null)
+			return this.scheduler.getCurrentClock();
+
+		return process.clock;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Saves the events of the simulator and of all the logical processes in one file.
+	 */
+	public void saveState(long currentTime) {
+		String str = this.futureEventList.toString();
+
+		for (int i = 0; i < this.processes.length; i++)
+			str += this.processes[i].futureEventList.toString();
+
+		FileIO.write(str, this.context.getPath(this.config.FEL_FILE));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Loads the saved events and gives each of them to the logical process of its destination.
+	 */
+	public void loadState() {
+		FEL loaded = new HeapFEL();
+		loaded.loadState(this.context);
+
+		FutureEvent event;
+		while ((event = loaded.getLastEvent()) != null) {
+			if (event.isSimEvent())
+				this.futureEventList.addEvent(event);
+			else
+				this.processes[this.indexOf(event.destId)].futureEventList.addEvent(event);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the number of logical processes, which is given by SicsimConfig.NUM_OF_LPS.
+	 * @return The number of logical processes.
+	 */
+	protected int getNumOfProcesses() {
+		return Math.max(1, this.config.NUM_OF_LPS);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the index of the logical process of a peer.
+	 * @param nodeId The node id of the peer.
+	 * @return The index of the logical process.
+	 */
+	protected int indexOf(NodeId nodeId) {
+		long index = ((long)nodeId.id * this.processes.length) / Math.max(1, this.config.MAX_NODE);
+
+		if (index < 0)
+			return 0;
+		if (index >= this.processes.length)
+			return this.processes.length - 1;
+
+		return (int)index;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Makes 'process' the logical process of the current thread.
+	 * @param process The logical process.
+	 */
+	protected void enter(LogicalProcess process) {
+		this.currentProcess.set(process);
+		Distribution.setThreadRandom(process.random);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Detaches the current thread from its logical process.
+	 */
+	protected void exit() {
+		Distribution.setThreadRandom(null);
+		this.currentProcess.remove();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Sends what the peers print to the buffers of their logical processes.
+	 * @return The original output stream, which should be given to 'restoreOutput' at the end.
+	 */
+	protected PrintStream redirectOutput() {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ProcessOutput(out, this.currentProcess), true));
+
+		return out;
+	}
+
+//----------------------------------------------------------------------------------
+	protected void restoreOutput(PrintStream out) {
+		System.out.flush();
+		System.setOut(out);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Executes the events of the simulator up to 'time' on the main thread.
+	 * @param time The current time.
+	 * @return 'false' if the simulation should stop.
+	 */
+	protected boolean runSimEvents(long time) {
+		FutureEvent event;
+
+		while ((event = this.futureEventList.peekEvent()) != null && event.time <= time) {
+			event = this.scheduler.nextStep();
+			if (event == null)
+				return false;
+
+			event.processed = true;
+			this.sim.doStep(event);
+			this.eventPool.release(event);
+		}
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Merges what the logical processes have printed and the actions that they have kept on the shared
+	 * state, in the order of the events that have done it, as if the events were executed one by one.
+	 * The monitor is updated before the first event of each time, and each action is run with the clock
+	 * of its event. It is called on the main thread, when the logical processes are stopped.
+	 * @param out The output stream of the simulation.
+	 */
+	protected void merge(PrintStream out) {
+		int[] positions = new int[this.processes.length];
+
+		while (true) {
+			LogicalProcess first = null;
+			for (int i = 0; i < this.processes.length; i++) {
+				LogicalProcess process = this.processes[i];
+				if (positions[i] < process.records && (first == null || process.isBefore(positions[i], first, positions[first.index])))
+					first = process;
+			}
+
+			if (first == null)
+				break;
+
+			int j = positions[first.index]++;
+			this.scheduler.setCurrentClock(first.recordTimes[j]);
+			this.sim.updateMonitor();
+
+			int outputStart = (j > 0) ? first.recordOutputs[j - 1] : 0;
+			if (first.recordOutputs[j] > outputStart)
+				out.write(first.output, outputStart, first.recordOutputs[j] - outputStart);
+
+			for (int k = (j > 0) ? first.recordActions[j - 1] : 0; k < first.recordActions[j]; k++)
+				first.sharedActions.get(k).run();
+		}
+
+		for (int i = 0; i < this.processes.length; i++) {
+			LogicalProcess process = this.processes[i];
+			if (process.records > 0)
+				process.discard(process.recordOutputs[process.records - 1], process.recordActions[process.records - 1]);
+		}
+
+		out.flush();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs the tasks on the fork/join pool and waits for all of them.
+	 * @param tasks The tasks.
+	 */
+	protected void invoke(Vector<Callable<Object>> tasks) {
+		for (Future<Object> future : this.pool.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+/**
+ * The streams of a peer that the simulator keeps, so that what a peer does does not depend on the
+ * other peers or on the engine: its number and the sequence of the events that it has added, which
+ * order its events among the events with the same time, and the state of its own random generator.
+ * @see FutureEvent
+ */
+public final class PeerStream {
+	long number = 0;
+	long sequence = 0;
+	long randomState = 0;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.util.Vector;
+
+/**
+ * The periodic timers with the same period and phase. They share one event of the simulator, which
+ * is added again at every tick as long as the cohort has timers.
+ * @see PeriodicTimer
+ */
+class PeriodicCohort {
+	String key;
+	long period;
+	Vector<PeriodicTimer> timers = new Vector<PeriodicTimer>();
+
+//----------------------------------------------------------------------------------
+	PeriodicCohort(String key, long period) {
+		this.key = key;
+		this.period = period;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the key of the cohort of the timers with a period and a first tick.
+	 * @param period The period.
+	 * @param start The time of the first tick.
+	 * @return The key of the cohort.
+	 */
+	static String key(long period, long start) {
+		return period + ":" + (start % period);
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import sicsim.network.peers.AbstractPeer;
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+
+/**
+ * A periodic timer of a peer, which is returned when the timer is started and can be used to stop
+ * it. The peer receives the same message from itself at every tick of the timer.
+ * @see SicSim#schedulePeriodic(NodeId, long, Message)
+ */
+public class PeriodicTimer {
+	NodeId nodeId;
+	AbstractPeer peer;
+	Message msg;
+	long period;
+	long start;
+	boolean stopped = false;
+
+//----------------------------------------------------------------------------------
+	PeriodicTimer(NodeId nodeId, long period, long start, Message msg) {
+		this.nodeId = nodeId;
+		this.period = period;
+		this.start = start;
+		this.msg = msg;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the node id of the peer of the timer.
+	 * @return The node id of the peer.
+	 */
+	public NodeId getNodeId() {
+		return this.nodeId;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the period of the timer.
+	 * @return The period of the timer.
+	 */
+	public long getPeriod() {
+		return this.period;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the timer is stopped.
+	 * @return 'true' if the timer is stopped.
+	 */
+	public boolean isStopped() {
+		return this.stopped;
+	}
+}
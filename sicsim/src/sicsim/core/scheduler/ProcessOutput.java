@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Output stream that keeps what the peers print inside a logical process in the buffer of the
+ * logical process, and passes the output of the main thread to the real output stream.
+ * @see ParallelEngine
+ */
+class ProcessOutput extends OutputStream {
+	private PrintStream out;
+	private ThreadLocal<LogicalProcess> currentProcess;
+
+//----------------------------------------------------------------------------------
+	ProcessOutput(PrintStream out, ThreadLocal<LogicalProcess> currentProcess) {
+		this.out = out;
+		this.currentProcess = currentProcess;
+	}
+
+//----------------------------------------------------------------------------------
+	public void write(int b) throws IOException {
+		this.write(new byte[] {(byte)b}, 0, 1);
+	}
+
+//----------------------------------------------------------------------------------
+	public void write(byte[] b, int off, int len) throws IOException {
+		LogicalProcess process = this.currentProcess.get();
+
+		if (process != null)
+			process.print(b, off, len);
+		else
+			this.out.write(b, off, len);
+	}
+
+//----------------------------------------------------------------------------------
+	public void flush() throws IOException {
+		if (this.currentProcess.get() == null)
+			this.out.flush();
+	}
+}
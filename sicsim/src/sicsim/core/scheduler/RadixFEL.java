@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package sicsim.core.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Vector;
+
+/**
+ * Future event list implemented by a monotone radix heap. It relies on the fact that the
+ * simulation time never goes backward: an event is kept in the bucket given by the highest
+ * bit in which its time differs from the time of the last removed event, so bucket 0 holds
+ * the events of the current time and the events a few time units ahead stay in the low buckets.
+ * The times are kept as primitive keys next to the events, so the events are compared only when
+ * they reach the current time, and each event moves down at most once per bit of its distance
+ * from the clock. Bucket 0 returns the events with the same time in the order they have reached
+ * it, or, in the canonical order, it is a small heap, which returns them in the order of
+ * FutureEvent.compareTo. An event that is added with a time before the last removed event is
+ * returned as if it had the time of the last removed event.
+ * @see SicsimConfig#CANONICAL_ORDER
+ */
+public class RadixFEL extends AbstractFEL {
+	private static int NUM_OF_BUCKETS = 64;
+	private static int INITIAL_CAPACITY = 16;
+
+	private FutureEvent[][] events = new FutureEvent[RadixFEL.NUM_OF_BUCKETS][];
+	private long[][] keys = new long[RadixFEL.NUM_OF_BUCKETS][];
+	private int[] counts = new int[RadixFEL.NUM_OF_BUCKETS];
+	private boolean canonical;
+	private Queue<FutureEvent> current;
+	private long occupied = 0;
+	private long last = 0;
+	private int size = 0;
+
+//----------------------------------------------------------------------------------
+	public RadixFEL() {
+		this(false);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the radix heap.
+	 * @param canonical Specifies if the events with the same time are returned in the order of FutureEvent.compareTo.
+	 */
+	public RadixFEL(boolean canonical) {
+		this.canonical = canonical;
+		this.current = canonical ? new PriorityQueue<FutureEvent>() : new ArrayDeque<FutureEvent>();
+		for (int i = 0; i < RadixFEL.NUM_OF_BUCKETS; i++) {
+			this.events[i] = new FutureEvent[RadixFEL.INITIAL_CAPACITY];
+			this.keys[i] = new long[RadixFEL.INITIAL_CAPACITY];
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	public void addEvent(FutureEvent event) {
+		long key = (event.time > this.last) ? event.time : this.last;
+		this.place(key, event);
+		this.size++;
+	}
+
+//----------------------------------------------------------------------------------
+	public int size() {
+		return this.size;
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent pollFirst() {
+		if (this.size == 0)
+			return null;
+
+		if (this.current.isEmpty())
+			this.redistribute();
+
+		this.size--;
+
+		return this.current.poll();
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent peekFirst() {
+		if (this.size == 0)
+			return null;
+
+		if (!this.current.isEmpty())
+			return this.current.peek();
+
+		// the clock of the heap is not moved here, since events before the smallest time may still be added
+		int i = Long.numberOfTrailingZeros(this.occupied);
+		FutureEvent[] bucketEvents = this.events[i];
+		long[] bucketKeys = this.keys[i];
+		int min = 0;
+		for (int j = 1; j < this.counts[i]; j++) {
+			if (bucketKeys[j] < bucketKeys[min] || (this.canonical && bucketKeys[j] == bucketKeys[min] && bucketEvents[j].compareTo(bucketEvents[min]) < 0))
+				min = j;
+		}
+
+		return bucketEvents[min];
+	}
+
+//----------------------------------------------------------------------------------
+	protected void removeDeletedEvents() {
+		Vector<FutureEvent> current = new Vector<FutureEvent>(this.current.size());
+		for (FutureEvent event : this.current) {
+			if (!event.deleted)
+				current.add(event);
+		}
+		this.size -= this.current.size() - current.size();
+		this.current.clear();
+		this.current.addAll(current);
+
+		for (int i = 1; i < RadixFEL.NUM_OF_BUCKETS; i++) {
+			int count = 0;
+
+			for (int j = 0; j < this.counts[i]; j++) {
+				if (!this.events[i][j].deleted) {
+					this.events[i][count] = this.events[i][j];
+					this.keys[i][count] = this.keys[i][j];
+					count++;
+				}
+			}
+
+			Arrays.fill(this.events[i], count, this.counts[i], null);
+			this.size -= this.counts[i] - count;
+			this.counts[i] = count;
+			if (count == 0)
+				this.occupied &= ~(1L << i);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	protected Vector<FutureEvent> getEvents() {
+		Vector<FutureEvent> events = new Vector<FutureEvent>(this.current);
+
+		for (int i = 1; i < RadixFEL.NUM_OF_BUCKETS; i++) {
+			for (int j = 0; j < this.counts[i]; j++)
+				events.add(this.events[i][j]);
+		}
+
+		return events;
+	}
+
+//----------------------------------------------------------------------------------
+	private int bucketOf(long key) {
+		return 64 - Long.numberOfLeadingZeros(key ^ this.last);
+	}
+
+//----------------------------------------------------------------------------------
+	private void place(long key, FutureEvent event) {
+		if (key == this.last)
+			this.current.add(event);
+		else
+			this.append(this.bucketOf(key), key, event);
+	}
+
+//----------------------------------------------------------------------------------
+	private void append(int i, long key, FutureEvent event) {
+		int count = this.counts[i];
+
+		if (count == this.keys[i].length) {
+			this.events[i] = Arrays.copyOf(this.events[i], 2 * count);
+			this.keys[i] = Arrays.copyOf(this.keys[i], 2 * count);
+		}
+
+		this.events[i][count] = event;
+		this.keys[i][count] = key;
+		this.counts[i] = count + 1;
+		this.occupied |= (1L << i);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Moves the clock of the heap to the smallest time in the first non-empty bucket, and
+	 * spreads the events of that bucket over the lower buckets.
+	 */
+	private void redistribute() {
+		int i = Long.numberOfTrailingZeros(this.occupied);
+		FutureEvent[] bucketEvents = this.events[i];
+		long[] bucketKeys = this.keys[i];
+		int count = this.counts[i];
+
+		long min = bucketKeys[0];
+		for (int j = 1; j < count; j++) {
+			if (bucketKeys[j] < min)
+				min = bucketKeys[j];
+		}
+
+		this.counts[i] = 0;
+		this.occupied &= ~(1L << i);
+		this.last = min;
+
+		for (int j = 0; j < count; j++) {
+			this.place(bucketKeys[j], bucketEvents[j]);
+			bucketEvents[j] = null;
+		}
+	}
+}
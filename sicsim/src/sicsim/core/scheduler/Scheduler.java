@@ -19,9 +19,9 @@
 package sicsim.core.scheduler;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.core.scenario.Scenario;
 import sicsim.core.scenario.events.ScenarioEvent.Event;
-import sicsim.types.NodeId;
 import sicsim.utils.FileIO;
 import sicsim.utils.PatternMatching;
 
@@ -32,13 +32,18 @@ import sicsim.utils.PatternMatching;
  * @see SicSim 
  */
 public class Scheduler {
+	private SimulationContext context;
+	private SicsimConfig config;
 	private Scenario scenario;
 	private FEL futureEventList;
 	private long clock = 0;
+	private long sequence = 0;
 	private boolean initialized = false;
 	
 //----------------------------------------------------------------------------------
-	public Scheduler(Scenario scenario, FEL futureEventList) {
+	public Scheduler(SimulationContext context, Scenario scenario, FEL futureEventList) {
+		this.context = context;
+		this.config = context.getConfig();
 		this.scenario = scenario;
 		this.futureEventList = futureEventList;
 	}
@@ -47,18 +52,34 @@ public class Scheduler {
 	/**
 	 * Generates the next event according to the scenario.
 	 * @return 'false' if there is no other events in scenario, otherwise it returns 'true'. 
+	 * @throws IllegalArgumentException If the type of the event is unknown.
 	 */
 	private boolean generateScenarioEvent() {
 		if (this.scenario.hasNextEvent()) {
 			Event event = this.scenario.nextEvent();
-			if (event.type.equalsIgnoreCase("MONITOR_OVERLAY"))
-				this.futureEventList.addEvent(new FutureEvent(event.type, event.monitor));
-			else if (event.type.equalsIgnoreCase("SIGNAL"))
-				this.futureEventList.addEvent(new FutureEvent(event.type, this.clock + event.time, event.signal));
-			else if (event.type.equalsIgnoreCase("DELAY") || event.type.equals("LOAD_OVERLAY") || event.type.equalsIgnoreCase("SAVE_OVERLAY"))
-				this.futureEventList.addEvent(new FutureEvent(event.type, this.clock + event.time));
-			else
-				this.futureEventList.addEvent(new FutureEvent(this.clock + event.time, new NodeId(SicsimConfig.SICSSIM_NODE), new NodeId(SicsimConfig.SICSSIM_NODE), event.type, null, event.nodeType, event.linkType));
+			EventType type = EventType.parse(event.type);
+			if (type == null)
+				throw new IllegalArgumentException("unknown event type '" + event.type + "' in scenario " + this.scenario.getCurrentNumber());
+
+			FutureEvent futureEvent;
+			switch (type) {
+			case MONITOR_OVERLAY:
+				futureEvent = new FutureEvent(type, event.monitor);
+				break;
+			case SIGNAL:
+				futureEvent = new FutureEvent(type, this.clock + event.time, event.signal);
+				break;
+			case DELAY:
+			case LOAD_OVERLAY:
+			case SAVE_OVERLAY:
+				futureEvent = new FutureEvent(type, this.clock + event.time);
+				break;
+			default:
+				futureEvent = new FutureEvent(this.clock + event.time, SicsimConfig.SICSSIM_NODE_ID, SicsimConfig.SICSSIM_NODE_ID, type, null, event.nodeType, event.linkType);
+			}
+			if (this.config.isCanonicalOrder())
+				futureEvent.sequence = this.nextSequence();
+			this.futureEventList.addEvent(futureEvent);
 			return true;
 		}
 		
@@ -67,14 +88,22 @@ public class Scheduler {
 
 //----------------------------------------------------------------------------------
 	/**
-	 * Fetches the last event from the future event list and returns it.
-	 * @return The last event. 
+	 * Adds the first event of the scenario into the future event list, if it is not added yet.
 	 */
-	public FutureEvent nextStep() {
+	void start() {
 		if (!this.initialized) {
 			this.generateScenarioEvent();
 			this.initialized = true;
 		}				
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Fetches the last event from the future event list and returns it.
+	 * @return The last event. 
+	 */
+	public FutureEvent nextStep() {
+		this.start();
 
 		if (this.futureEventList.hasEvent()) {
 			FutureEvent currentEvent = this.futureEventList.getLastEvent();
@@ -83,18 +112,11 @@ public class Scheduler {
 			if (this.clock != eventTime) 
 				this.clock = eventTime;
 
-			if (currentEvent.type.equalsIgnoreCase("JOIN") || 
-				currentEvent.type.equalsIgnoreCase("LEAVE") || 
-				currentEvent.type.equalsIgnoreCase("FAILURE") || 
-				currentEvent.type.equalsIgnoreCase("DELAY") || 
-				currentEvent.type.equalsIgnoreCase("SAVE_OVERLAY") || 
-				currentEvent.type.equalsIgnoreCase("LOAD_OVERLAY") || 
-				currentEvent.type.equalsIgnoreCase("MONITOR_OVERLAY") ||
-				currentEvent.type.equalsIgnoreCase("SIGNAL"))
+			if (currentEvent.type.isScenarioEvent())
 				this.generateScenarioEvent();
 		
-			if (eventTime > SicsimConfig.SIM_TIME) {
-				if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+			if (eventTime > this.config.SIM_TIME) {
+				if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
 					System.out.println("SICSSIM => Simulation maximum time achieved!");
 				return null;
 			}
@@ -105,10 +127,30 @@ public class Scheduler {
 			return null;
 	}
 
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the sequence of the next event that is added by the simulator. The events that are added by the
+	 * simulator at the same time are executed in the order of their sequence.
+	 * @return The sequence of the next event of the simulator.
+	 */
+	long nextSequence() {
+		return this.sequence++;
+	}
+
 //----------------------------------------------------------------------------------
 	public long getCurrentClock() {
 		return this.clock;
 	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Sets the current clock of simulator. It is used by the parallel engine, which executes
+	 * most of the events without passing them through the scheduler.
+	 * @param clock The current clock of simulator.
+	 */
+	void setCurrentClock(long clock) {
+		this.clock = clock;
+	}
 	
 //----------------------------------------------------------------------------------
 	/**
@@ -124,7 +166,7 @@ public class Scheduler {
 	 * Saves the status of the scheduler.
 	 */
 	public void saveState(long currentTime) {
-		FileIO.write(this.toString(), SicsimConfig.TIME_FILE);
+		FileIO.write(this.toString(), this.context.getPath(this.config.TIME_FILE));
 	}
 	
 //----------------------------------------------------------------------------------
@@ -132,10 +174,10 @@ public class Scheduler {
 	 * Load the status of the scheduler.
 	 */
 	public void loadState() {
-		String str = FileIO.read(SicsimConfig.FEL_FILE);
+		String str = FileIO.read(this.context.getPath(this.config.FEL_FILE));
 		this.clock = PatternMatching.getLongValue(str, "time:");
 		
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
 			System.out.println("SCHEDULER => time: " + this.clock);
 	}
 }
@@ -18,11 +18,14 @@
 
 package sicsim.core.scheduler;
 
-import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Random;
 import java.util.Vector;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.core.scenario.Scenario;
 import sicsim.network.core.*;
 import sicsim.network.links.AbstractLink;
@@ -31,70 +34,215 @@ import sicsim.types.Message;
 import sicsim.types.NodeId;
 import sicsim.utils.Distribution;
 import sicsim.utils.FileIO;
+import sicsim.utils.SavableRandom;
 
 /**
  * Class to implement the core module of simulator. It creates the main objects of the system.
  * @see Scheduler
  * @see Scenario
  * @see FEL   
+ * @see ParallelEngine
  */
 public class SicSim {
+	private static int PURGE_RATIO = 16;
 	
-	private Bandwidth bandwidth = new Bandwidth();
-	private CoreNet coreNet = new CoreNet();
-	private Network network = new Network(this, this.bandwidth, this.coreNet);
-	private OverlayNetwork overlay = new OverlayNetwork(this.network);
-	private FailureDetector failureDetector = new FailureDetector(this, this.network);
-	private Scenario scenario = new Scenario();
-	private FEL futureEventList = new FEL();
-	private Scheduler scheduler = new Scheduler(this.scenario, this.futureEventList);
+	private SimulationContext context;
+	private SicsimConfig config;
+	private Bandwidth bandwidth;
+	private CoreNet coreNet;
+	private Network network;
+	private OverlayNetwork overlay;
+	private FailureDetector failureDetector;
+	private Scenario scenario;
+	private FEL futureEventList;
+	private FutureEventPool eventPool = new FutureEventPool();
+	private Scheduler scheduler;
 	private Monitor monitor;
+	private ParallelEngine engine;
 	
 	private long overlayLastUpdate = -1;
+	private boolean canonical;
 	private long localTime = 0;
+	private long lastStep = -1;
+	private long nextSnapshot;
 	private long currentTime = 0;
 	private long lastNetSize = 0;
 	
-	private Random failureRandomTime = new Random(SicsimConfig.FAILURE_DETECTION_SEED);
+	private Random failureRandomTime;
+
+	// the peer whose code runs on the main thread, or null for the simulator, and the generator that it draws from
+	private PeerStream stream = null;
+	private SavableRandom peerRandom = new SavableRandom(0);
+	private long numOfPeers = 0;
+
+	private HashMap<String, PeriodicCohort> cohorts = new HashMap<String, PeriodicCohort>();
+	private HashMap<Long, Vector<PeriodicTimer>> peerTimers = new HashMap<Long, Vector<PeriodicTimer>>();
+	private HashMap<Long, FailureNotice> notices = new HashMap<Long, FailureNotice>();
+
+	private FutureEvent[] tickEvents = new FutureEvent[1024];
+	private long[] tickKeys = new long[1024];
+	private NodeId[] batchSrcIds = new NodeId[16];
+	private Message[] batchMsgs = new Message[16];
+
+	private Vector<NodeId> removedNodes = new Vector<NodeId>();
+	private long droppedEvents = 0;
+	private long purgedEvents = 0;
+	private Runnable dropCounter = new Runnable() {
+		public void run() {
+			droppedEvents++;
+		}
+	};
 	
 //----------------------------------------------------------------------------------
-	public SicSim() {
+	/**
+	 * Creates the simulator.
+	 * @param context The context of the simulation, which gives its configuration, random generators and output directory.
+	 */
+	public SicSim(SimulationContext context) {
+		this.context = context;
+		this.config = context.getConfig();
+		this.bandwidth = new Bandwidth(context);
+		this.coreNet = new CoreNet(context);
+		this.network = new Network(this, this.bandwidth, this.coreNet);
+		this.overlay = new OverlayNetwork(this, this.network);
+		this.failureDetector = new FailureDetector(this, this.network);
+		this.scenario = new Scenario(context);
+		this.futureEventList = SicSim.createFutureEventList(this.config);
+		this.scheduler = new Scheduler(context, this.scenario, this.futureEventList);
+		this.failureRandomTime = new Random(this.config.FAILURE_DETECTION_SEED);
+		this.nextSnapshot = this.config.SNAPSHOT_PERIOD;
+		this.canonical = this.config.isCanonicalOrder();
 	}
 	
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the future event list specified by SicsimConfig.FEL_TYPE.
+	 * @param config The configuration of the simulation.
+	 * @return The future event list.
+	 * @see SicsimConfig
+	 */
+	static FEL createFutureEventList(SicsimConfig config) {
+		if (config.FEL_TYPE.equalsIgnoreCase("calendar"))
+			return new CalendarFEL();
+		else if (config.FEL_TYPE.equalsIgnoreCase("radix"))
+			return new RadixFEL(config.isCanonicalOrder());
+		else if (config.FEL_TYPE.equalsIgnoreCase("wheel"))
+			return new WheelFEL(config.WHEEL_SIZES, config.isCanonicalOrder());
+		else if (!config.FEL_TYPE.equalsIgnoreCase("heap") && config.LOG_SIM && config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+			System.out.println("SICSSIM => Unknown FEL type " + config.FEL_TYPE + ", using heap instead");
+
+		return new HeapFEL();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the parallel engine specified by SicsimConfig.ENGINE.
+	 * @return The engine, or null if the simulation is sequential.
+	 * @see SicsimConfig
+	 */
+	private ParallelEngine createEngine() {
+		if (this.config.ENGINE.equalsIgnoreCase("conservative"))
+			return new ConservativeEngine(this, this.scheduler, this.futureEventList, this.eventPool);
+		else if (this.config.ENGINE.equalsIgnoreCase("timewarp"))
+			return new TimeWarpEngine(this, this.scheduler, this.futureEventList, this.eventPool);
+		else if (this.config.ENGINE.equalsIgnoreCase("timestep"))
+			return new TimestepEngine(this, this.scheduler, this.futureEventList, this.eventPool);
+
+		return null;
+	}
+
 //----------------------------------------------------------------------------------
 	/**
 	 * Specifies the duration of running the simulation.
 	 * @param till The maximum time of simulation.   
 	 */
 	public void runTill(long till) {
-		while (this.scheduler.getCurrentClock() < till) {
-			if (!this.singleStep())
-				break;
-			this.snapshot();
+		if (this.engine == null) {
+			this.engine = this.createEngine();
+
+			Iterator<AbstractPeer> peers = this.network.getPeers();
+			while (this.engine != null && peers.hasNext())
+				this.engine.checkPeer(peers.next().getClass());
+		}
+
+		if (this.engine != null) {
+			this.engine.runTill(till);
+		} else if (this.config.ENGINE.equalsIgnoreCase("batched")) {
+			if (this.canonical) {
+				boolean running = true;
+				while (running)
+					running = this.tickStep(till);
+			} else {
+				while (this.scheduler.getCurrentClock() < till) {
+					if (!this.tickStep(Long.MAX_VALUE))
+						break;
+					this.snapshot();
+				}
+			}
+		} else {
+			if (!this.config.ENGINE.equalsIgnoreCase("sequential") && this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+				System.out.println("SICSSIM => Unknown engine " + this.config.ENGINE + ", using sequential instead");
+
+			if (this.canonical) {
+				boolean running = true;
+				while (running)
+					running = this.singleStep(till);
+			} else {
+				while (this.scheduler.getCurrentClock() < till) {
+					if (!this.singleStep(Long.MAX_VALUE))
+						break;
+					this.snapshot();
+				}
+			}
 		}
 	
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_INFO)
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_INFO) {
 			System.out.println("SICSSIM => finish ---> time: " + this.currentTime);
+			System.out.println("SICSSIM => dropped events: " + this.droppedEvents + ", purged events: " + this.purgedEvents);
+		}
 		
 		if (this.monitor != null)
 			this.monitor.verify(this.scheduler.getCurrentClock());
 	}
 
 //----------------------------------------------------------------------------------
-	private boolean singleStep() {
-		if (SicsimConfig.SYNC_UPDATE)
-			this.network.updateNetwork(this.scheduler.getCurrentClock());
-		
-		if (SicsimConfig.MONITOR) {
-			if (this.monitor != null && this.overlayLastUpdate < this.scheduler.getCurrentClock()) {
-				this.monitor.update(this.scheduler.getCurrentClock());
-				this.overlayLastUpdate = this.scheduler.getCurrentClock();
-			}
+	/**
+	 * Executes the next event, if its time is not after 'till'.
+	 * @return 'false' if the simulation should stop.
+	 */
+	private boolean singleStep(long till) {
+		if (!this.canonical)
+			return this.runStep();
+
+		this.scheduler.start();
+
+		FutureEvent next = this.futureEventList.peekEvent();
+		if (next == null || next.time > till)
+			return false;
+
+		if (next.time != this.lastStep && next.time <= this.config.SIM_TIME) {
+			this.scheduler.setCurrentClock(next.time);
+			this.prepareStep();
 		}
-		
+
+		return this.runStep();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Executes the next event. Without the canonical order the network and the monitor are updated
+	 * before every event, with the time of the previous event.
+	 * @return 'false' if the simulation should stop.
+	 */
+	private boolean runStep() {
+		if (!this.canonical)
+			this.prepareStep();
+
 		FutureEvent currentEvent = this.scheduler.nextStep();
 		if (currentEvent != null) {
+			currentEvent.processed = true;
 			this.doStep(currentEvent);
+			this.eventPool.release(currentEvent);
 			return true;
 		}
 		
@@ -102,55 +250,261 @@ public class SicSim {
 	}
 
 //----------------------------------------------------------------------------------
-	private void doStep(FutureEvent currentEvent) {
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
+	/**
+	 * Executes all the events of the next time. The events of the simulator are executed first, in the
+	 * order of the future event list, and then the events of the peers are sorted by their destination,
+	 * so that the events of each peer are executed back to back, in the order of the future event list.
+	 * The consecutive messages of a peer are given to it together by receiveBatch. The events at the
+	 * same time that are added during the step are executed in the next step.
+	 * @return 'false' if the simulation should stop, or the next time is after 'till'.
+	 */
+	private boolean tickStep(long till) {
+		this.scheduler.start();
+
+		FutureEvent event = this.futureEventList.peekEvent();
+		if (event == null || event.time > till)
+			return false;
+
+		long time = event.time;
+		if (time > this.config.SIM_TIME) {
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+				System.out.println("SICSSIM => Simulation maximum time achieved!");
+			return false;
+		}
+
+		this.scheduler.setCurrentClock(time);
+		this.prepareStep();
+
+		int size = 0;
+		while ((event = this.futureEventList.peekEvent()) != null && event.time == time) {
+			event = this.scheduler.nextStep();
+			event.processed = true;
+			if (event.isSimEvent()) {
+				this.doStep(event);
+				this.eventPool.release(event);
+			} else {
+				if (size == this.tickEvents.length) {
+					this.tickEvents = Arrays.copyOf(this.tickEvents, 2 * size);
+					this.tickKeys = Arrays.copyOf(this.tickKeys, 2 * size);
+				}
+
+				// the key is the id of the destination and the position of the event in the future event
+				// list, so after sorting the keys the events of one peer keep the order of the list
+				this.tickKeys[size] = (((long)event.destId.id) << 32) | size;
+				this.tickEvents[size++] = event;
+			}
+		}
+
+		Arrays.sort(this.tickKeys, 0, size);
+
+		int first = 0;
+		for (int i = 0; i < size; i++) {
+			event = this.tickEvents[(int)this.tickKeys[i]];
+			if (event.type != EventType.MSG) {
+				this.receiveBatch(first, i);
+				this.doStep(event);
+				this.eventPool.release(event);
+				first = i + 1;
+			} else if (i > first && ((this.tickKeys[i] ^ this.tickKeys[first]) >>> 32 != 0 || !event.destId.equals(this.tickEvents[(int)this.tickKeys[first]].destId))) {
+				this.receiveBatch(first, i);
+				first = i;
+			}
+		}
+		this.receiveBatch(first, size);
+		Arrays.fill(this.tickEvents, 0, size, null);
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Delivers the messages of the current time from position 'first' to 'last' in the sorted order,
+	 * which have the same destination.
+	 */
+	private void receiveBatch(int first, int last) {
+		if (first == last)
+			return;
+
+		AbstractPeer destNode = this.network.getNode(this.tickEvents[(int)this.tickKeys[first]].destId);
+		int count = last - first;
+		if (count > this.batchMsgs.length) {
+			this.batchSrcIds = new NodeId[Math.max(count, 2 * this.batchMsgs.length)];
+			this.batchMsgs = new Message[this.batchSrcIds.length];
+		}
+
+		for (int i = 0; i < count; i++) {
+			FutureEvent event = this.tickEvents[(int)this.tickKeys[first + i]];
+			if (destNode == null) {
+				this.runShared(this.dropCounter);
+			} else {
+				this.useDownloadBandwidth(event);
+				this.batchSrcIds[i] = event.srcId;
+				this.batchMsgs[i] = event.data;
+			}
+			this.eventPool.release(event);
+		}
+
+		if (destNode == null)
+			return;
+
+		PeerStream previous = this.switchTo(destNode.getStream());
+		destNode.receiveBatch(this.batchSrcIds, this.batchMsgs, count, this.getCurrentClock());
+		this.switchTo(previous);
+
+		Arrays.fill(this.batchSrcIds, 0, count, null);
+		Arrays.fill(this.batchMsgs, 0, count, null);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Takes the snapshot, updates the network and the monitor before executing the events of the current
+	 * time. Every engine calls it on the main thread before the first event of each time, or at least of
+	 * each time window. A snapshot is taken before the first event at or after each multiple of
+	 * SicsimConfig.SNAPSHOT_PERIOD, so it shows the state after all the events before that multiple.
+	 */
+	void prepareStep() {
+		if (!this.canonical) {
+			if (this.config.SYNC_UPDATE)
+				this.network.updateNetwork(this.scheduler.getCurrentClock());
+
+			this.updateMonitor();
+			return;
+		}
+
+		long time = this.scheduler.getCurrentClock();
+		if (time == this.lastStep)
+			return;
+		this.lastStep = time;
+		this.currentTime = time;
+
+		if (this.config.SNAPSHOT_PERIOD > 0 && time >= this.nextSnapshot) {
+			long snapshotTime = time - time % this.config.SNAPSHOT_PERIOD;
+			this.nextSnapshot = snapshotTime + this.config.SNAPSHOT_PERIOD;
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+				System.out.println("SICSSIM => snapshot ---> time: " + snapshotTime);
+			if (this.monitor != null)
+				this.monitor.snapshot(snapshotTime);
+		}
+
+		if (this.config.SYNC_UPDATE) {
+			Iterator<AbstractPeer> peers = this.network.getPeers();
+			while (peers.hasNext()) {
+				AbstractPeer peer = peers.next();
+				PeerStream previous = this.switchTo(peer.getStream());
+				peer.syncMethod(time);
+				this.switchTo(previous);
+			}
+		}
+		
+		this.updateMonitor();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Updates the monitor before executing the first event of the current time. The parallel engines call it
+	 * when they merge the work of the logical processes, for the times inside a time window.
+	 */
+	void updateMonitor() {
+		if (this.config.MONITOR) {
+			if (this.monitor != null && this.overlayLastUpdate < this.scheduler.getCurrentClock()) {
+				this.monitor.update(this.scheduler.getCurrentClock());
+				this.overlayLastUpdate = this.scheduler.getCurrentClock();
+			}
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the time of the next snapshot, which the parallel engines do not run past in one time window.
+	 * @return The time of the next snapshot, or Long.MAX_VALUE if no snapshot is taken.
+	 */
+	long getNextSnapshot() {
+		return (this.config.SNAPSHOT_PERIOD > 0) ? this.nextSnapshot : Long.MAX_VALUE;
+	}
+
+//----------------------------------------------------------------------------------
+	void doStep(FutureEvent currentEvent) {
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
 			System.out.println("SICSSIM => from " + currentEvent.srcId + " to " + currentEvent.destId + " event " + currentEvent.type + " data (" + currentEvent.data + ")");
 			
-		if (currentEvent.type.equalsIgnoreCase("MSG"))
+		switch (currentEvent.type) {
+		case MSG:
 			this.handleMsgEvent(currentEvent);
-		else if (currentEvent.type.equalsIgnoreCase("SIM_MSG"))
+			break;
+		case SIM_MSG:
 			this.handleSimMsgEvent(currentEvent);
-		else if (currentEvent.type.equalsIgnoreCase("PERIODIC"))
+			break;
+		case PERIODIC:
 			this.handlePeriodicEvent(currentEvent);
-		else if (currentEvent.type.equalsIgnoreCase("JOIN"))
+			break;
+		case JOIN:
 			this.handleJoinEvent(currentEvent.nodeType, currentEvent.linkType);
-		else if (currentEvent.type.equalsIgnoreCase("LEAVE"))
-			this.handleLeaveEvent();				
-		else if (currentEvent.type.equalsIgnoreCase("FAILURE"))
-			this.handleFailureEvent();				
-		else if (currentEvent.type.equalsIgnoreCase("DELAY"))
+			break;
+		case LEAVE:
+			this.handleLeaveEvent();
+			break;
+		case FAILURE:
+			this.handleFailureEvent();
+			break;
+		case DELAY:
 			this.handleDelayEvent();
-		else if (currentEvent.type.equalsIgnoreCase("FAILURE_DETECTION"))
+			break;
+		case FAILURE_DETECTION:
 			this.handleFailureDetectionEvent(currentEvent);
-		else if (currentEvent.type.equalsIgnoreCase("SAVE_OVERLAY"))
+			break;
+		case SAVE_OVERLAY:
 			this.handleSaveOverlayEvent();
-		else if (currentEvent.type.equalsIgnoreCase("LOAD_OVERLAY"))
+			break;
+		case LOAD_OVERLAY:
 			this.handleLoadOverlayEvent();
-		else if (currentEvent.type.equalsIgnoreCase("MONITOR_OVERLAY"))
+			break;
+		case MONITOR_OVERLAY:
 			this.handleLoadMonitorEvent(currentEvent.monitorOverlay);
-		else if (currentEvent.type.equalsIgnoreCase("SIGNAL"))
+			break;
+		case SIGNAL:
 			this.handleSignalEvent(currentEvent.signal);
+			break;
+		}
 	}
 
 //----------------------------------------------------------------------------------
 	private boolean handleMsgEvent(FutureEvent event) {
-		AbstractPeer srcNode = this.network.getNode(event.srcId);
 		AbstractPeer destNode = this.network.getNode(event.destId);
 
-		if (destNode == null)			
+		if (destNode == null) {
+			this.runShared(this.dropCounter);
 			return false;
+		}
 
-		if (event.data.type.equalsIgnoreCase("START_RECV_DATA")) {
-			if (srcNode != null)
-				this.bandwidth.useDownloadBandwidth(event.srcId, event.destId, SicsimConfig.STRIPE_RATE);
-		} else if (event.data.type.equalsIgnoreCase("STOP_RECV_DATA"))
-			if (srcNode != null)
-				this.bandwidth.releaseDownloadBandwidth(event.srcId, event.destId, SicsimConfig.STRIPE_RATE);
-
-		destNode.receive(event.srcId, event.data, this.scheduler.getCurrentClock());
+		this.useDownloadBandwidth(event);
+		PeerStream previous = this.switchTo(destNode.getStream());
+		destNode.receive(event.srcId, event.data, this.getCurrentClock());
+		this.switchTo(previous);
 		
 		return true;
 	}
+
+//----------------------------------------------------------------------------------
+	private void useDownloadBandwidth(FutureEvent event) {
+		final NodeId srcId = event.srcId;
+		final NodeId destId = event.destId;
+		if (event.data.is(Message.START_RECV_DATA)) {
+			if (this.network.getNode(srcId) != null) {
+				this.runShared(new Runnable() {
+					public void run() {
+						bandwidth.useDownloadBandwidth(srcId, destId, config.STRIPE_RATE);
+					}
+				});
+			}
+		} else if (event.data.is(Message.STOP_RECV_DATA))
+			if (this.network.getNode(srcId) != null) {
+				this.runShared(new Runnable() {
+					public void run() {
+						bandwidth.releaseDownloadBandwidth(srcId, destId, config.STRIPE_RATE);
+					}
+				});
+			}
+	}
 	
 //----------------------------------------------------------------------------------
 	private boolean handleSimMsgEvent(FutureEvent event) {
@@ -159,39 +513,87 @@ public class SicSim {
 		if (srcNode == null)
 			return false;
 			
-		if (event.data.type.equalsIgnoreCase("LEAVE_GRANTED")) {
-			this.network.remove(srcNode.getId());
-			this.overlay.remove(srcNode.getId());
-		}
+		if (event.data.is(Message.LEAVE_GRANTED))
+			this.removeNode(srcNode.getId());
 
 		return true;
 	}
 	
 //----------------------------------------------------------------------------------
+	/**
+	 * Delivers a tick to all the timers of a cohort, and adds the event of the next tick as long as
+	 * the cohort has timers. The stopped timers are removed from the cohort here.
+	 */
 	private boolean handlePeriodicEvent(FutureEvent event) {
+		PeriodicCohort cohort = event.cohort;
+		if (cohort == null)
+			return false;
+
+		long now = this.scheduler.getCurrentClock();
+		Vector<PeriodicTimer> timers = cohort.timers;
+		int count = 0;
+
+		// the size is read at every step, since the peers may start timers of the same cohort during the tick
+		for (int i = 0; i < timers.size(); i++) {
+			PeriodicTimer timer = timers.get(i);
+			if (timer.stopped)
+				continue;
+
+			if (timer.start <= now) {
+				if (timer.peer == null)
+					timer.peer = this.network.getNode(timer.nodeId);
+
+				if (timer.peer == null) {
+					this.stopTimer(timer);
+					continue;
+				}
+
+				PeerStream previous = this.switchTo(timer.peer.getStream());
+				timer.peer.receive(timer.nodeId, timer.msg, now);
+				this.switchTo(previous);
+			}
+
+			timers.set(count++, timer);
+		}
+		timers.setSize(count);
+
+		if (timers.size() > 0) {
+			FutureEvent next = this.scheduleEvent(cohort.period, SicsimConfig.SICSSIM_NODE_ID, SicsimConfig.SICSSIM_NODE_ID, EventType.PERIODIC, null);
+			next.cohort = cohort;
+		} else {
+			this.cohorts.remove(cohort.key);
+		}
+
 		return true;
 	}
 
 //----------------------------------------------------------------------------------
 	private boolean handleJoinEvent(Class<?> nodeType, Class<?> linkType) {
+		if (this.engine != null)
+			this.engine.checkPeer(nodeType);
+
 		try {
 			AbstractPeer node = (AbstractPeer)nodeType.newInstance();
 			AbstractLink link = (AbstractLink)linkType.newInstance();
 
-			int linkLatency = Distribution.uniform(SicsimConfig.LINK_LATENCY);
+			int linkLatency = this.context.getDistribution().uniform(this.config.LINK_LATENCY);
 			NodeId nodeId = this.network.generateUniqeNodeId();
 
-			node.init(nodeId, link, this.bandwidth, this.failureDetector, this.overlay, this.monitor);
+			node.init(this.context, nodeId, link, this.bandwidth, this.failureDetector, this.overlay, this.monitor);
 			link.init(node.getId(), linkLatency, this, this.network, this.coreNet);
+			this.initStream(node);
 
+			PeerStream previous = this.switchTo(node.getStream());
 			if (this.network.size() == 0)
 				node.create(this.scheduler.getCurrentClock());
 			else
 				node.join(this.scheduler.getCurrentClock());			
+			this.switchTo(previous);
 
 			this.network.add(node.getId(), node);
+			this.recordNetSize();
 			
-			if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
 				System.out.println("SICSSIM => " + node.getId() + " has joined ---> time: " + this.scheduler.getCurrentClock());
 		} catch (Exception e) {
 			System.err.println(e.getMessage());
@@ -204,7 +606,7 @@ public class SicSim {
 //----------------------------------------------------------------------------------
 	private boolean handleLeaveEvent() {
 		if (this.network.size() == 0) {
-			if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
 				System.out.println("SICSSIM => Trying to leave a node from an empty network ---> time: " + this.scheduler.getCurrentClock());
 			return false;
 		}
@@ -212,8 +614,10 @@ public class SicSim {
 		NodeId nodeId = this.network.getRandomNodeIdFromNetwork();
 		if (nodeId.id > 0 || nodeId.ip > 0) {		
 			AbstractPeer node = this.network.getNode(nodeId);
+			PeerStream previous = this.switchTo(node.getStream());
 			node.leave(this.scheduler.getCurrentClock());
-			if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+			this.switchTo(previous);
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
 				System.out.println("SICSSIM => " + nodeId + " wants to leave ---> time: " + this.scheduler.getCurrentClock());
 		}
 
@@ -223,7 +627,7 @@ public class SicSim {
 //----------------------------------------------------------------------------------
 	private boolean handleFailureEvent() {
 		if (this.network.size() == 0) {
-			if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
 				System.out.println("SICSSIM => Trying to fail a node from an empty network ---> time: " + this.scheduler.getCurrentClock());
 			return false;
 		}
@@ -231,19 +635,21 @@ public class SicSim {
 		NodeId failedId = this.network.getRandomNodeIdFromNetwork();
 		
 		if (failedId.id > 0 || failedId.ip > 0) {		
-			Vector<String> registerdNodes = this.failureDetector.gerRegisterdNodes(failedId);
+			long[] registerdNodes = this.failureDetector.getRegisteredNodeIds(failedId);
 			if (registerdNodes != null) {
-				Enumeration<String> nodeList = registerdNodes.elements();
-				while (nodeList.hasMoreElements()) {
-					NodeId registerNode = new NodeId(nodeList.nextElement());
-					this.addEvent(SicsimConfig.FAILURE_DETECTOR_LATENCY + this.failureRandomTime.nextInt(SicsimConfig.FAILURE_DETECTOR_LATENCY), new NodeId(SicsimConfig.SICSSIM_NODE), registerNode, new String("FAILURE_DETECTION"), new Message(new String("NULL"), failedId.toString()));
+				long failed = failedId.toLong();
+				for (int i = 0; i < registerdNodes.length; i++) {
+					int latency = this.config.FAILURE_DETECTOR_LATENCY + this.failureRandomTime.nextInt(this.config.FAILURE_DETECTOR_LATENCY);
+					if (registerdNodes[i] != failed && this.network.getNode(registerdNodes[i]) != null)
+						this.addFailureDetection(latency, registerdNodes[i], failed);
+					else
+						this.runShared(this.dropCounter);
 				}
 			}
 			
-			this.network.remove(failedId);
-			this.overlay.remove(failedId);
+			this.removeNode(failedId);
 			
-			if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
 				System.out.println("SICSSIM => " + failedId + " is failed ---> time: " + this.scheduler.getCurrentClock());
 		}
 		
@@ -256,17 +662,115 @@ public class SicSim {
 
 //----------------------------------------------------------------------------------
 	private void handleFailureDetectionEvent(FutureEvent currentEvent) {
+		if (currentEvent.notice != null) {
+			this.handleFailureNotice(currentEvent.notice);
+			return;
+		}
+
 		NodeId destId = currentEvent.destId;
-		NodeId failedId = new NodeId(currentEvent.data.data);
+		NodeId failedId = NodeId.valueOf(currentEvent.data.data);
 		
-		if (this.network.getNode(destId) != null)
-			this.network.getNode(destId).failure(failedId, this.scheduler.getCurrentClock());
+		AbstractPeer node = this.network.getNode(destId);
+		if (node != null) {
+			PeerStream previous = this.switchTo(node.getStream());
+			node.failure(failedId, this.getCurrentClock());
+			this.switchTo(previous);
+		} else
+			this.runShared(this.dropCounter);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Delivers the failure notifications that share an event to the peers that are still in the network.
+	 */
+	private void handleFailureNotice(FailureNotice notice) {
+		this.notices.remove(notice.time);
+
+		for (int i = 0; i < notice.size; i++) {
+			AbstractPeer node = this.network.getNode(notice.nodeIds[i]);
+			if (node != null) {
+				PeerStream previous = this.switchTo(node.getStream());
+				node.failure(NodeId.valueOf(notice.failedIds[i]), this.getCurrentClock());
+				this.switchTo(previous);
+			} else
+				this.runShared(this.dropCounter);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes a peer that has left or failed. The events for the removed peers are dropped anyway when
+	 * they are delivered, so they are purged from the future event lists in batches, once the removed
+	 * peers are a considerable part of the network.
+	 * @param nodeId The node id of the peer.
+	 */
+	private void removeNode(NodeId nodeId) {
+		this.network.remove(nodeId);
+		this.overlay.remove(nodeId);
+		this.failureDetector.remove(nodeId);
+
+		Vector<PeriodicTimer> timers = this.peerTimers.remove(nodeId.toLong());
+		if (timers != null) {
+			for (int i = 0; i < timers.size(); i++)
+				timers.get(i).stopped = true;
+		}
+
+		this.removedNodes.add(nodeId);
+		if (this.removedNodes.size() * SicSim.PURGE_RATIO >= this.network.size())
+			this.purgeEvents();
+
+		this.recordNetSize();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels the messages and the failure notifications for the removed peers, except for the peers
+	 * whose node id has joined the network again.
+	 */
+	private void purgeEvents() {
+		int count = 0;
+		long[] keys = new long[this.removedNodes.size()];
+
+		for (int i = 0; i < this.removedNodes.size(); i++) {
+			NodeId nodeId = this.removedNodes.get(i);
+			if (!this.network.contains(nodeId))
+				keys[count++] = nodeId.toLong();
+		}
+		this.removedNodes.clear();
+
+		if (count == 0)
+			return;
+
+		final long[] sortedKeys = Arrays.copyOf(keys, count);
+		Arrays.sort(sortedKeys);
+
+		EventFilter filter = new EventFilter() {
+			public boolean accept(FutureEvent event) {
+				if (event.type != EventType.MSG && event.type != EventType.FAILURE_DETECTION)
+					return false;
+
+				return (Arrays.binarySearch(sortedKeys, event.destId.toLong()) >= 0);
+			}
+		};
+
+		int purged;
+		if (this.engine != null)
+			purged = this.engine.cancelEvents(filter);
+		else
+			purged = this.futureEventList.cancelEvents(filter);
+		this.purgedEvents += purged;
+
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+			System.out.println("SICSSIM => " + purged + " events of " + count + " removed peers are purged ---> time: " + this.scheduler.getCurrentClock());
 	}
 
 //----------------------------------------------------------------------------------
 	private void handleSaveOverlayEvent() {
 		this.scheduler.saveState(currentTime);
-		this.futureEventList.saveState(this.currentTime);
+		if (this.engine != null)
+			this.engine.saveState(this.currentTime);
+		else
+			this.futureEventList.saveState(this.context);
 		this.bandwidth.saveState(this.currentTime);
 		this.failureDetector.saveState(this.currentTime);
 		this.overlay.saveState(this.currentTime);
@@ -276,18 +780,29 @@ public class SicSim {
 //----------------------------------------------------------------------------------
 	private void handleLoadOverlayEvent() {
 		this.scheduler.loadState();
-		this.futureEventList.loadState();
+		if (this.engine != null)
+			this.engine.loadState();
+		else
+			this.futureEventList.loadState(this.context);
 		this.bandwidth.loadState();
 		this.failureDetector.loadState();
 		this.overlay.loadState();
 		this.network.loadState(this.failureDetector, this.overlay, this.monitor);
+
+		Iterator<AbstractPeer> peers = this.network.getPeers();
+		while (peers.hasNext()) {
+			AbstractPeer peer = peers.next();
+			if (peer.getStream().number == 0)
+				this.initStream(peer);
+		}
+		this.recordNetSize();
 	}
 
 //----------------------------------------------------------------------------------
 	private void handleLoadMonitorEvent(Class<?> monitor) {
 		try {
 			this.monitor = (Monitor)monitor.newInstance();
-			this.monitor.init(this.network, this.overlay, this.bandwidth);
+			this.monitor.init(this.context, this.network, this.overlay, this.bandwidth);
 		} catch (InstantiationException e) {
 			e.printStackTrace();
 		} catch (IllegalAccessException e) {
@@ -298,7 +813,7 @@ public class SicSim {
 //----------------------------------------------------------------------------------
 	private boolean handleSignalEvent(int signal) {
 		if (this.network.size() == 0) {
-			if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+			if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
 				System.out.println("SICSSIM => Trying to send a signal to a node from an empty network ---> time: " + this.scheduler.getCurrentClock());
 			return false;
 		}
@@ -307,11 +822,13 @@ public class SicSim {
 		
 		if (nodeId.id > 0 || nodeId.ip > 0) {		
 			AbstractPeer node = this.network.getNode(nodeId);
+			PeerStream previous = this.switchTo(node.getStream());
 			node.signal(signal, this.scheduler.getCurrentClock());
+			this.switchTo(previous);
 		}
 		
 			
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
 			System.out.println("SICSSIM => send signal " + signal + " to " + nodeId + " ---> time: " + this.scheduler.getCurrentClock());
 		
 		return true;
@@ -326,26 +843,353 @@ public class SicSim {
 	 * @param type Type of the event.
 	 * @param msg Message attached with the event.
 	 */
-	public void addEvent(long time, NodeId srcId, NodeId destId, String type, Message msg) {
-		
-		if (!srcId.equals(SicsimConfig.SICSSIM_NODE) && !destId.equals(SicsimConfig.SICSSIM_NODE)) {
-			if (msg.type.equalsIgnoreCase("START_RECV_DATA"))
-				this.bandwidth.useUploadBandwidth(srcId, destId, SicsimConfig.STRIPE_RATE);
-			else if (msg.type.equalsIgnoreCase("STOP_RECV_DATA"))
-				this.bandwidth.releaseUploadBandwidth(srcId, destId, SicsimConfig.STRIPE_RATE);
+	public void addEvent(long time, NodeId srcId, NodeId destId, EventType type, Message msg) {
+		this.useBandwidth(srcId, destId, msg);
+		this.scheduleEvent(time, srcId, destId, type, msg);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Add an event that may be cancelled later. Only the events that can be cancelled get a handle, so that
+	 * sending a message does not allocate one.
+	 * @param time Time at which the event should occur.
+	 * @param srcId Source of the event.
+	 * @param destId Destination of the event.
+	 * @param type Type of the event.
+	 * @param msg Message attached with the event.
+	 * @return The handle of the event, which can be given to cancelEvent.
+	 */
+	public EventHandle addCancellableEvent(long time, NodeId srcId, NodeId destId, EventType type, Message msg) {
+		this.useBandwidth(srcId, destId, msg);
+
+		return new EventHandle(this.scheduleEvent(time, srcId, destId, type, msg));
+	}
+
+//----------------------------------------------------------------------------------
+	private FutureEvent scheduleEvent(long time, NodeId srcId, NodeId destId, EventType type, Message msg) {
+		if (this.engine != null)
+			return this.engine.addEvent(time, srcId, destId, type, msg);
+
+		FutureEvent event = this.eventPool.get(this.scheduler.getCurrentClock() + time, srcId, destId, type, msg);
+		this.order(event, null);
+		this.futureEventList.addEvent(event);
+
+		return event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gives a new event its place among the events with the same time, from the peer or the simulator
+	 * whose code is running on the calling thread.
+	 * @param event The new event.
+	 * @param process The logical process of the calling thread, or null for the main thread.
+	 * @see FutureEvent#compareTo
+	 */
+	void order(FutureEvent event, LogicalProcess process) {
+		if (!this.canonical)
+			return;
+
+		PeerStream stream = (process != null) ? process.stream : this.stream;
+
+		if (stream == null) {
+			event.order = 0;
+			event.sequence = this.scheduler.nextSequence();
+		} else {
+			event.order = stream.number;
+			event.sequence = stream.sequence++;
 		}
-		
-		this.futureEventList.addEvent(new FutureEvent(this.scheduler.getCurrentClock() + time, srcId, destId, type, msg));
+
+		if (!event.isSimEvent())
+			event.order |= FutureEvent.PEER_EVENT;
 	}
-	
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gives a new peer its number and its own random generator, which is seeded from the seed of the
+	 * network and its node id, so what the peer draws does not depend on the other peers.
+	 * @param node The new peer.
+	 */
+	private void initStream(AbstractPeer node) {
+		if (!this.canonical)
+			return;
+
+		PeerStream stream = node.getStream();
+		SavableRandom random = new SavableRandom(SicSim.mix(this.config.NETWORK_SEED ^ SicSim.mix(node.getId().toLong())));
+
+		stream.number = ++this.numOfPeers;
+		stream.sequence = 0;
+		stream.randomState = random.getState();
+	}
+
+//----------------------------------------------------------------------------------
+	private static long mix(long value) {
+		value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+		value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+
+		return value ^ (value >>> 33);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Makes the code of a peer, or the simulator if 'stream' is null, the code that runs on the calling
+	 * thread: the events that it adds are ordered by its streams, and inside its code the random numbers
+	 * of Distribution.getRandom come from its own generator.
+	 * @param stream The streams of the peer, or null for the simulator.
+	 * @return The streams of the code that was running before, which are given back to this method when the code of the peer returns.
+	 */
+	PeerStream switchTo(PeerStream stream) {
+		if (!this.canonical)
+			return null;
+
+		LogicalProcess process = (this.engine != null) ? this.engine.currentProcess.get() : null;
+		SavableRandom random = (process != null) ? process.random : this.peerRandom;
+		PeerStream previous;
+
+		if (process != null) {
+			previous = process.stream;
+			process.stream = stream;
+		} else {
+			previous = this.stream;
+			this.stream = stream;
+		}
+
+		if (previous != null)
+			previous.randomState = random.getState();
+		if (stream != null)
+			random.setState(stream.randomState);
+
+		// the logical processes keep their generator, but the simulator draws from the shared generators on the main thread
+		if (process == null)
+			Distribution.setThreadRandom((stream != null) ? random : null);
+
+		return previous;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Appends the size of the network to SicsimConfig.NET_SIZE_FILE, if it has changed, in the canonical order.
+	 */
+	private void recordNetSize() {
+		if (this.canonical && this.network.size() != this.lastNetSize) {
+			this.lastNetSize = this.network.size();
+			FileIO.append("(" + (this.scheduler.getCurrentClock() / 100) + ") " + this.network.size() + "\n", this.context.getPath(this.config.NET_SIZE_FILE));
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Notifies a peer of the failure of another peer after a delay. The notifications that are delivered
+	 * at the same time share one FAILURE_DETECTION event of the simulator, which keeps the node ids as
+	 * primitive values, so a mass failure adds one event per distinct delay instead of one per notification.
+	 * In the parallel engines the notifications are delivered on the main thread. This method changes the
+	 * state of the simulator, so it is called by the simulator or inside runShared.
+	 * @param delay The delay of the notification.
+	 * @param nodeId The node id of the peer to be notified.
+	 * @param failedId The node id of the failed peer.
+	 */
+	public void addFailureDetection(long delay, NodeId nodeId, NodeId failedId) {
+		this.addFailureDetection(delay, nodeId.toLong(), failedId.toLong());
+	}
+
+//----------------------------------------------------------------------------------
+	private void addFailureDetection(long delay, long nodeId, long failedId) {
+		long time = this.scheduler.getCurrentClock() + delay;
+		FailureNotice notice = this.notices.get(time);
+
+		if (notice == null) {
+			notice = new FailureNotice(time);
+			this.notices.put(time, notice);
+			FutureEvent event = this.scheduleEvent(delay, SicsimConfig.SICSSIM_NODE_ID, SicsimConfig.SICSSIM_NODE_ID, EventType.FAILURE_DETECTION, null);
+			event.notice = notice;
+		}
+
+		notice.add(nodeId, failedId);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Starts a periodic timer of a peer, which delivers the same message to the peer every 'period'
+	 * time units, starting 'period' time units from now, until it is stopped or the peer is removed.
+	 * The timers with the same period and phase form a cohort that is served by a single event of the
+	 * simulator, which is reused at every tick. The ticks are delivered by the simulator itself, so in
+	 * the parallel engines they are executed on the main thread between the time windows. A timer that
+	 * is started inside a logical process joins its cohort after the time window, and its first tick is
+	 * moved to the next multiple of its period if that time has already passed.
+	 * @param nodeId The node id of the peer.
+	 * @param period The period of the timer, at least one time unit.
+	 * @param msg The message that is delivered at every tick.
+	 * @return The timer, which can be given to cancelPeriodic.
+	 */
+	public PeriodicTimer schedulePeriodic(NodeId nodeId, long period, Message msg) {
+		period = Math.max(1, period);
+		final PeriodicTimer timer = new PeriodicTimer(nodeId, period, this.getCurrentClock() + period, msg);
+
+		this.runShared(new Runnable() {
+			public void run() {
+				startTimer(timer);
+			}
+		});
+
+		return timer;
+	}
+
+//----------------------------------------------------------------------------------
+	private void startTimer(PeriodicTimer timer) {
+		if (timer.stopped)
+			return;
+
+		long now = this.scheduler.getCurrentClock();
+		if (timer.start <= now)
+			timer.start += ((now - timer.start) / timer.period + 1) * timer.period;
+
+		Long peerKey = timer.nodeId.toLong();
+		Vector<PeriodicTimer> timers = this.peerTimers.get(peerKey);
+		if (timers == null) {
+			timers = new Vector<PeriodicTimer>();
+			this.peerTimers.put(peerKey, timers);
+		}
+		timers.add(timer);
+
+		String key = PeriodicCohort.key(timer.period, timer.start);
+		PeriodicCohort cohort = this.cohorts.get(key);
+		if (cohort == null) {
+			cohort = new PeriodicCohort(key, timer.period);
+			this.cohorts.put(key, cohort);
+			FutureEvent event = this.scheduleEvent(timer.start - now, SicsimConfig.SICSSIM_NODE_ID, SicsimConfig.SICSSIM_NODE_ID, EventType.PERIODIC, null);
+			event.cohort = cohort;
+		}
+		cohort.timers.add(timer);
+	}
+
 //----------------------------------------------------------------------------------
+	/**
+	 * Stops a periodic timer. The timer is removed from its cohort at the next tick.
+	 * @param timer The timer, which is returned by schedulePeriodic.
+	 * @return 'true' if the timer is stopped, or 'false' if it is already stopped.
+	 */
+	public boolean cancelPeriodic(final PeriodicTimer timer) {
+		if (timer.stopped)
+			return false;
+
+		this.runShared(new Runnable() {
+			public void run() {
+				stopTimer(timer);
+			}
+		});
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	private void stopTimer(PeriodicTimer timer) {
+		if (timer.stopped)
+			return;
+
+		timer.stopped = true;
+
+		Long peerKey = timer.nodeId.toLong();
+		Vector<PeriodicTimer> timers = this.peerTimers.get(peerKey);
+		if (timers != null) {
+			timers.remove(timer);
+			if (timers.size() == 0)
+				this.peerTimers.remove(peerKey);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Drops a message for a peer that is not in the network, instead of adding it as an event. The upload
+	 * bandwidth of the source is updated as if the message was sent.
+	 * @param srcId Source of the message.
+	 * @param destId Destination of the message.
+	 * @param msg The message.
+	 */
+	public void dropEvent(NodeId srcId, NodeId destId, Message msg) {
+		this.useBandwidth(srcId, destId, msg);
+		this.runShared(this.dropCounter);
+	}
+
+//----------------------------------------------------------------------------------
+	private void useBandwidth(final NodeId srcId, final NodeId destId, Message msg) {
+		if (!srcId.equals(SicsimConfig.SICSSIM_NODE_ID) && !destId.equals(SicsimConfig.SICSSIM_NODE_ID)) {
+			if (msg.is(Message.START_RECV_DATA)) {
+				this.runShared(new Runnable() {
+					public void run() {
+						bandwidth.useUploadBandwidth(srcId, destId, config.STRIPE_RATE);
+					}
+				});
+			} else if (msg.is(Message.STOP_RECV_DATA)) {
+				this.runShared(new Runnable() {
+					public void run() {
+						bandwidth.releaseUploadBandwidth(srcId, destId, config.STRIPE_RATE);
+					}
+				});
+			}
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels an event that has been added by addCancellableEvent. Inside a logical process of a parallel engine
+	 * only the events of the peers of the same logical process can be cancelled, e.g. the timers of the
+	 * caller itself.
+	 * @param handle The handle of the event.
+	 * @return 'true' if the event is cancelled, or 'false' if it is already executed or cancelled, or
+	 * the caller can not cancel it.
+	 */
+	public boolean cancelEvent(EventHandle handle) {
+		FutureEvent event = handle.getEvent();
+		if (event == null || event.isCancelled())
+			return false;
+
+		if (this.engine != null)
+			return this.engine.cancelEvent(event);
+
+		if (event.processed)
+			return false;
+
+		this.futureEventList.cancelEvent(event);
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs an action that changes the state shared by all the peers, e.g. the overlay network or the
+	 * failure detector. When a peer calls it inside a time window of the parallel engine, the action
+	 * is run after the window, or when the event is committed by the time warp engine, together with
+	 * the actions of the other peers in the order of their events and with the clock of their events,
+	 * so that the result does not depend on the number of logical processes or threads. Otherwise the
+	 * action is run immediately. The action is run as code of the simulator, i.e. the events that it
+	 * adds are ordered and its random numbers are drawn as for the simulator.
+	 * @param action The action to be run.
+	 */
+	public void runShared(Runnable action) {
+		if (this.engine != null && this.engine.defer(action))
+			return;
+
+		if (this.stream == null) {
+			action.run();
+			return;
+		}
+
+		PeerStream previous = this.switchTo(null);
+		action.run();
+		this.switchTo(previous);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Takes the snapshot after every SicsimConfig.SNAPSHOT_PERIOD distinct times and records the size of the
+	 * network, when the sequential engines do not use the canonical order.
+	 */
 	private void snapshot() {
 		if (this.scheduler.getCurrentClock() != this.currentTime) {
 			this.localTime++;
 			this.currentTime = this.scheduler.getCurrentClock();
-			if (this.localTime == SicsimConfig.SNAPSHOT_PERIOD) {
+			if (this.localTime == this.config.SNAPSHOT_PERIOD) {
 				this.localTime = 0;					
-				if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+				if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
 					System.out.println("SICSSIM => snapshot ---> time: " + this.scheduler.getCurrentClock());
 				if (this.monitor != null)
 					this.monitor.snapshot(this.scheduler.getCurrentClock());
@@ -353,17 +1197,86 @@ public class SicSim {
 			
 			if (this.network.size() != this.lastNetSize) {
 				this.lastNetSize = this.network.size();
-				FileIO.append("(" + (this.currentTime / 100) + ") " + this.network.size() + "\n", SicsimConfig.NET_SIZE_FILE);
+				FileIO.append("(" + (this.currentTime / 100) + ") " + this.network.size() + "\n", this.context.getPath(this.config.NET_SIZE_FILE));
 			}
 		}
 	}
 
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets the context of the simulation.
+	 * @return The context of the simulation.
+	 */
+	public SimulationContext getContext() {
+		return this.context;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets the number of peers in the network.
+	 * @return The number of peers in the network.
+	 */
+	public int getNetworkSize() {
+		return this.network.size();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets the number of peers in the overlay network.
+	 * @return The number of peers in the overlay network.
+	 */
+	public int getOverlaySize() {
+		return this.overlay.size();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets the number of events that are dropped because their destination is not in the network,
+	 * when they are added or when they are delivered.
+	 * @return The number of dropped events.
+	 */
+	public long getDroppedEvents() {
+		return this.droppedEvents;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets the number of events that are purged from the future event lists when their destination
+	 * leaves or fails.
+	 * @return The number of purged events.
+	 */
+	public long getPurgedEvents() {
+		return this.purgedEvents;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets the core network, which gives the latencies between the peers.
+	 * @return The core network.
+	 */
+	CoreNet getCoreNet() {
+		return this.coreNet;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gets a peer of the network.
+	 * @param nodeId The node id of the peer.
+	 * @return The peer, or null if it is not in the network.
+	 */
+	AbstractPeer getNode(NodeId nodeId) {
+		return this.network.getNode(nodeId);
+	}
+
 //----------------------------------------------------------------------------------
 	/**
 	 * Gets the current clock of simulator.
 	 * @return The current clock of simulator. 
 	 */
 	public long getCurrentClock() {
+		if (this.engine != null)
+			return this.engine.getCurrentClock();
+
 		return this.scheduler.getCurrentClock();
 	}
 
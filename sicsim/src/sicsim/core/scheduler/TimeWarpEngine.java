@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.io.PrintStream;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+
+import sicsim.config.SicsimConfig;
+import sicsim.network.peers.AbstractPeer;
+import sicsim.network.peers.Checkpointable;
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+
+/**
+ * Optimistic parallel engine of the simulator, based on time warp. The logical processes do not
+ * wait for each other: in each round, every logical process executes up to
+ * SicsimConfig.OPTIMISTIC_BATCH of its events, taking a checkpoint of the destination peer before
+ * each of them, and then receives the messages that the others have sent in the round. A message
+ * that arrives in the past of its logical process (a straggler) undoes the events after it, and the
+ * messages that were sent by the undone events are cancelled by anti-messages, which may undo more
+ * events in their turn. The smallest time of the events that are not executed yet is the global
+ * virtual time, and the events before it can not be undone anymore, so they are committed: their
+ * messages to the simulator are given to the scheduler, and their changes of the shared state and
+ * their output are merged in the order of the events.
+ * 
+ * The events of the simulator are executed on the main thread when all the events before them are
+ * committed, after undoing the events that are executed after them. An event undoes the events of
+ * its logical process that come after it in the order of FutureEvent.compareTo, even at the same
+ * time, so for the same seed the result is the same as the sequential simulator, as explained in
+ * ParallelEngine, except for the messages to the simulator, which are executed when they are committed.
+ * The peers have to implement Checkpointable, and the engine refuses to run a peer that does not.
+ * The logical processes do not run past the next snapshot, so the snapshots are taken at the same
+ * times as in the sequential simulator.
+ * @see ParallelEngine
+ * @see OptimisticProcess
+ * @see Checkpointable
+ * @see SicsimConfig
+ */
+public class TimeWarpEngine extends ParallelEngine {
+	private Vector<Callable<Object>> windowTasks = new Vector<Callable<Object>>();
+	private Vector<Callable<Object>> deliveryTasks = new Vector<Callable<Object>>();
+
+	private OptimisticProcess[] optimisticProcesses;
+	private int batch;
+	private long barrier;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the engine.
+	 * @param sim The simulator.
+	 * @param scheduler The scheduler of the simulator.
+	 * @param futureEventList The future event list of the scheduler, which keeps the events of the simulator.
+	 * @param eventPool The event pool of the main thread.
+	 */
+	public TimeWarpEngine(SicSim sim, Scheduler scheduler, FEL futureEventList, FutureEventPool eventPool) {
+		super(sim, scheduler, futureEventList, eventPool);
+
+		int numOfProcesses = this.getNumOfProcesses();
+		this.optimisticProcesses = new OptimisticProcess[numOfProcesses];
+		this.processes = this.optimisticProcesses;
+		for (int i = 0; i < numOfProcesses; i++) {
+			final OptimisticProcess process = new OptimisticProcess(i, numOfProcesses, this.config);
+			this.optimisticProcesses[i] = process;
+
+			this.windowTasks.add(new Callable<Object>() {
+				public Object call() {
+					runWindow(process);
+					return null;
+				}
+			});
+
+			this.deliveryTasks.add(new Callable<Object>() {
+				public Object call() {
+					deliver(process);
+					return null;
+				}
+			});
+		}
+
+		this.batch = Math.max(1, this.config.OPTIMISTIC_BATCH);
+
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_INFO)
+			System.out.println("SICSSIM => time warp engine, " + numOfProcesses + " logical processes, " + this.pool.getParallelism() + " threads, batch " + this.batch);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs the simulation round by round until the clock reaches 'till'.
+	 * @param till The maximum time of simulation.
+	 */
+	public void runTill(long till) {
+		PrintStream out = this.redirectOutput();
+
+		try {
+			this.scheduler.start();
+
+			while (this.scheduler.getCurrentClock() < till) {
+				FutureEvent next = this.futureEventList.peekEvent();
+				long time = (next == null) ? Long.MAX_VALUE : next.time;
+
+				long end = Math.min(till, (long)this.config.SIM_TIME) + 1;
+				this.barrier = Math.min(time, Math.min(this.sim.getNextSnapshot(), end));
+
+				if (this.computeGvt() < this.barrier) {
+					this.invoke(this.windowTasks);
+					this.invoke(this.deliveryTasks);
+					this.flushAntiMessages();
+
+					this.commit(Math.min(this.computeGvt(), this.barrier), out);
+					continue;
+				}
+
+				// the committed events may have sent new events before the barrier
+				if (this.commit(this.barrier, out))
+					continue;
+
+				// the logical processes wait at the next snapshot, which is taken before their first event after it
+				long gvt = this.computeGvt();
+				if (gvt < time && gvt < end) {
+					long clock = this.scheduler.getCurrentClock();
+					this.scheduler.setCurrentClock(gvt);
+					this.sim.prepareStep();
+					this.scheduler.setCurrentClock(clock);
+					continue;
+				}
+
+				if (time == Long.MAX_VALUE)
+					break;
+
+				if (time > this.config.SIM_TIME) {
+					if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+						System.out.println("SICSSIM => Simulation maximum time achieved!");
+					break;
+				}
+
+				this.rollbackAll(time);
+
+				this.scheduler.setCurrentClock(time);
+				this.sim.prepareStep();
+
+				if (!this.runSimEvents(time))
+					break;
+			}
+		} finally {
+			this.restoreOutput(out);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Refuses the peers that do not implement Checkpointable, since their events could not be undone.
+	 * @param nodeType The class of the peer.
+	 * @throws IllegalArgumentException If the peer does not implement Checkpointable.
+	 */
+	public void checkPeer(Class<?> nodeType) {
+		if (!Checkpointable.class.isAssignableFrom(nodeType))
+			throw new IllegalArgumentException("The time warp engine can not undo the events of " + nodeType.getName() + ", which does not implement Checkpointable; use another engine");
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Adds an event. Inside a round, the event is logged by the logical process of the caller, so
+	 * that it can be cancelled if the caller is undone. Outside a round, the event is given directly
+	 * to the logical process of its destination, which undoes its events after the event if needed.
+	 * @param time Time, relative to the current clock, at which the event should occur.
+	 * @param srcId Source of the event.
+	 * @param destId Destination of the event.
+	 * @param type Type of the event.
+	 * @param msg Message attached with the event.
+	 * @return The added event.
+	 */
+	public FutureEvent addEvent(long time, NodeId srcId, NodeId destId, EventType type, Message msg) {
+		OptimisticProcess process = (OptimisticProcess)this.currentProcess.get();
+
+		if (process == null) {
+			FutureEvent event = this.eventPool.get(this.scheduler.getCurrentClock() + time, srcId, destId, type, msg);
+			this.sim.order(event, null);
+			if (destId.equals(SicsimConfig.SICSSIM_NODE_ID))
+				this.futureEventList.addEvent(event);
+			else
+				this.receive(this.optimisticProcesses[this.indexOf(destId)], event);
+			return event;
+		}
+
+		FutureEvent event = process.eventPool.get(process.clock + time, srcId, destId, type, msg);
+		this.sim.order(event, process);
+
+		if (destId.equals(SicsimConfig.SICSSIM_NODE_ID)) {
+			process.simLog.add(event);
+			return event;
+		}
+
+		process.sentLog.add(event);
+
+		int dest = this.indexOf(destId);
+		if (dest == process.index)
+			process.futureEventList.addEvent(event);
+		else
+			process.send(event, dest);
+
+		return event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels an event. Inside a round, the cancellation is logged by the logical process of the caller,
+	 * so that it can be undone together with the caller, and the event is executed as an empty event.
+	 * Outside a round, the event is cancelled like by an anti-message, which undoes it if it is already
+	 * executed optimistically.
+	 * @param event The event, which is not cancelled yet.
+	 * @return 'true' if the event is cancelled, or 'false' if it is executed or the caller can not cancel it.
+	 */
+	public boolean cancelEvent(FutureEvent event) {
+		OptimisticProcess process = (OptimisticProcess)this.currentProcess.get();
+
+		if (event.destId.equals(SicsimConfig.SICSSIM_NODE_ID))
+			return super.cancelEvent(event);
+
+		if (process == null) {
+			this.cancel(this.optimisticProcesses[this.indexOf(event.destId)], event);
+			this.flushAntiMessages();
+			return true;
+		}
+
+		if (event.processed || this.indexOf(event.destId) != process.index)
+			return false;
+
+		event.withdrawn = true;
+		process.cancelLog.add(new EventHandle(event));
+
+		return true;
+	}
+
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Saves the events of the simulator and of all the logical processes, without the cancelled events.
+	 */
+	public void saveState(long currentTime) {
+		Vector<FutureEvent> events = new Vector<FutureEvent>();
+
+		for (int i = 0; i < this.optimisticProcesses.length; i++) {
+			OptimisticProcess process = this.optimisticProcesses[i];
+
+			FutureEvent event;
+			while ((event = process.futureEventList.getLastEvent()) != null) {
+				if (event.cancelled)
+					process.eventPool.release(event);
+				else
+					events.add(event);
+			}
+
+			for (int j = 0; j < events.size(); j++)
+				process.futureEventList.addEvent(events.get(j));
+			events.clear();
+		}
+
+		super.saveState(currentTime);
+	}
+
+//----------------------------------------------------------------------------------
+	private void runWindow(OptimisticProcess process) {
+		this.enter(process);
+
+		try {
+			int count = 0;
+			FutureEvent event;
+			while (count < this.batch && (event = process.futureEventList.peekEvent()) != null && event.time < this.barrier) {
+				process.futureEventList.getLastEvent();
+
+				if (event.cancelled) {
+					process.eventPool.release(event);
+					continue;
+				}
+
+				// the cancellation may still be undone, so the event is kept as an empty event
+				if (event.withdrawn) {
+					process.save(event, null, null);
+					process.clock = event.time;
+					event.processed = true;
+					count++;
+					continue;
+				}
+
+				AbstractPeer peer = this.sim.getNode(event.destId);
+				process.save(event, peer, (peer != null) ? ((Checkpointable)peer).checkpoint() : null);
+
+				process.clock = event.time;
+				event.processed = true;
+				this.sim.doStep(event);
+				count++;
+			}
+		} finally {
+			this.exit();
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	private void deliver(OptimisticProcess process) {
+		for (int i = 0; i < this.optimisticProcesses.length; i++) {
+			OptimisticProcess src = this.optimisticProcesses[i];
+			FutureEvent event = src.outboxHeads[process.index];
+
+			while (event != null) {
+				FutureEvent next = event.next;
+				event.next = null;
+				this.receive(process, event);
+				event = next;
+			}
+
+			src.outboxHeads[process.index] = null;
+			src.outboxTails[process.index] = null;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Gives an event to a logical process, and undoes the events of the logical process after it.
+	 */
+	private void receive(OptimisticProcess process, FutureEvent event) {
+		while (process.isAfter(event))
+			process.futureEventList.addEvent(process.undo(this));
+		process.futureEventList.addEvent(event);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels an event for which an anti-message has arrived. If the event is already executed, it
+	 * is undone together with the events that are executed after it.
+	 */
+	private void cancel(OptimisticProcess process, FutureEvent event) {
+		if (!event.processed) {
+			event.cancelled = true;
+			return;
+		}
+
+		FutureEvent undone;
+		while ((undone = process.undo(this)) != event)
+			process.futureEventList.addEvent(undone);
+
+		process.eventPool.release(event);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Delivers the anti-messages on the main thread, until no more events are undone.
+	 */
+	private void flushAntiMessages() {
+		boolean pending = true;
+
+		while (pending) {
+			pending = false;
+			for (int i = 0; i < this.optimisticProcesses.length; i++) {
+				Vector<FutureEvent> antiMessages = this.optimisticProcesses[i].antiMessages;
+				while (!antiMessages.isEmpty()) {
+					FutureEvent event = antiMessages.remove(antiMessages.size() - 1);
+					this.cancel(this.optimisticProcesses[this.indexOf(event.destId)], event);
+					pending = true;
+				}
+			}
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Undoes the events at or after 'time' in all the logical processes, before the events of the simulator at 'time' are executed.
+	 */
+	private void rollbackAll(long time) {
+		for (int i = 0; i < this.optimisticProcesses.length; i++) {
+			OptimisticProcess process = this.optimisticProcesses[i];
+			while (process.lastTime() >= time)
+				process.futureEventList.addEvent(process.undo(this));
+		}
+
+		this.flushAntiMessages();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Computes the global virtual time, which is the smallest time of the events that are not
+	 * executed yet. It is called when no message or anti-message is on its way.
+	 * @return The global virtual time, or Long.MAX_VALUE if there is no event.
+	 */
+	private long computeGvt() {
+		long gvt = Long.MAX_VALUE;
+
+		for (int i = 0; i < this.optimisticProcesses.length; i++) {
+			OptimisticProcess process = this.optimisticProcesses[i];
+
+			FutureEvent event;
+			while ((event = process.futureEventList.peekEvent()) != null && event.cancelled)
+				process.eventPool.release(process.futureEventList.getLastEvent());
+
+			if (event != null && event.time < gvt)
+				gvt = event.time;
+		}
+
+		return gvt;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Commits the events before 'time' of all the logical processes, and merges their work in the order of the events.
+	 * @return 'true' if at least one event is committed.
+	 */
+	private boolean commit(long time, PrintStream out) {
+		if (time - 1 > this.scheduler.getCurrentClock())
+			this.scheduler.setCurrentClock(time - 1);
+		long clock = this.scheduler.getCurrentClock();
+
+		boolean committed = false;
+		for (int i = 0; i < this.optimisticProcesses.length; i++) {
+			if (this.optimisticProcesses[i].commit(time, this.futureEventList, clock))
+				committed = true;
+		}
+
+		this.merge(out);
+		this.scheduler.setCurrentClock(clock);
+		this.flushAntiMessages();
+
+		return committed;
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.io.PrintStream;
+import java.util.PriorityQueue;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+
+import sicsim.config.SicsimConfig;
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+
+/**
+ * Parallel engine of the simulator that executes the events with the same time in parallel. All
+ * the events stay in the future event list of the scheduler. At each time, the engine takes all the
+ * events of that time, executes the events of the simulator on the main thread, and groups the
+ * events of the peers by their destination into the logical processes, which are executed in
+ * parallel. So all the events of a peer are executed by one logical process, in the order of the
+ * future event list. The new events of the same time for the same logical process are executed
+ * in the same step, and the other new events are added to the future event list at the end of the
+ * step. For the same seed the result is the same as the sequential simulator, as explained in
+ * ParallelEngine, except for the new events of the same time for the simulator or for another
+ * logical process, which are executed in the next step.
+ * @see ParallelEngine
+ * @see SicsimConfig
+ */
+public class TimestepEngine extends ParallelEngine {
+	private Vector<Callable<Object>> tasks = new Vector<Callable<Object>>();
+	private Vector<Callable<Object>> activeTasks = new Vector<Callable<Object>>();
+	private Vector<PriorityQueue<FutureEvent>> groups = new Vector<PriorityQueue<FutureEvent>>();
+	private Vector<Vector<FutureEvent>> sentEvents = new Vector<Vector<FutureEvent>>();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the engine.
+	 * @param sim The simulator.
+	 * @param scheduler The scheduler of the simulator.
+	 * @param futureEventList The future event list of the scheduler, which keeps all the events.
+	 * @param eventPool The event pool of the main thread.
+	 */
+	public TimestepEngine(SicSim sim, Scheduler scheduler, FEL futureEventList, FutureEventPool eventPool) {
+		super(sim, scheduler, futureEventList, eventPool);
+
+		int numOfProcesses = this.getNumOfProcesses();
+		this.processes = new LogicalProcess[numOfProcesses];
+		for (int i = 0; i < numOfProcesses; i++) {
+			final LogicalProcess process = new LogicalProcess(i, numOfProcesses, this.config);
+			this.processes[i] = process;
+			this.groups.add(new PriorityQueue<FutureEvent>());
+			this.sentEvents.add(new Vector<FutureEvent>());
+
+			this.tasks.add(new Callable<Object>() {
+				public Object call() {
+					runGroup(process);
+					return null;
+				}
+			});
+		}
+
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_INFO)
+			System.out.println("SICSSIM => timestep engine, " + numOfProcesses + " logical processes, " + this.pool.getParallelism() + " threads");
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs the simulation time by time until the clock reaches 'till'.
+	 * @param till The maximum time of simulation.
+	 */
+	public void runTill(long till) {
+		PrintStream out = this.redirectOutput();
+
+		try {
+			this.scheduler.start();
+
+			while (this.scheduler.getCurrentClock() < till) {
+				FutureEvent event = this.futureEventList.peekEvent();
+				if (event == null)
+					break;
+
+				long time = event.time;
+				if (time > till)
+					break;
+
+				if (time > this.config.SIM_TIME) {
+					if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+						System.out.println("SICSSIM => Simulation maximum time achieved!");
+					break;
+				}
+
+				this.scheduler.setCurrentClock(time);
+				this.sim.prepareStep();
+
+				// the events at 'time' that are sent during the step are taken in the next step
+				while ((event = this.futureEventList.peekEvent()) != null && event.time == time) {
+					event = this.scheduler.nextStep();
+					event.processed = true;
+					if (event.isSimEvent()) {
+						this.sim.doStep(event);
+						this.eventPool.release(event);
+					} else {
+						this.groups.get(this.indexOf(event.destId)).add(event);
+					}
+				}
+
+				this.runStep(out);
+			}
+		} finally {
+			this.restoreOutput(out);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Adds an event. Inside a step, an event of the current time for a peer of the same logical process
+	 * is executed in the same step, and the other events are kept by the logical process of the caller
+	 * until the end of the step. Outside a step, the event is added directly to the future event list.
+	 * @param time Time, relative to the current clock, at which the event should occur.
+	 * @param srcId Source of the event.
+	 * @param destId Destination of the event.
+	 * @param type Type of the event.
+	 * @param msg Message attached with the event.
+	 * @return The added event.
+	 */
+	public FutureEvent addEvent(long time, NodeId srcId, NodeId destId, EventType type, Message msg) {
+		LogicalProcess process = this.currentProcess.get();
+
+		if (process == null) {
+			FutureEvent event = this.eventPool.get(this.scheduler.getCurrentClock() + time, srcId, destId, type, msg);
+			this.sim.order(event, null);
+			this.futureEventList.addEvent(event);
+			return event;
+		}
+
+		FutureEvent event = process.eventPool.get(process.clock + time, srcId, destId, type, msg);
+		this.sim.order(event, process);
+		if (event.time == process.clock && !event.isSimEvent() && this.indexOf(destId) == process.index)
+			this.groups.get(process.index).add(event);
+		else
+			this.sentEvents.get(process.index).add(event);
+
+		return event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels an event. The events of the current time are already given to the logical processes,
+	 * so they can not be cancelled anymore, except the new ones, which are skipped by their logical
+	 * process. Inside a step, the other events are marked as cancelled at once, but they are removed
+	 * from the future event list at the end of the step, since they may be among the events that are
+	 * sent in the step.
+	 * @param event The event, which is not cancelled yet.
+	 * @return 'true' if the event is cancelled, or 'false' if it is executed or the caller can not cancel it.
+	 */
+	public boolean cancelEvent(final FutureEvent event) {
+		LogicalProcess process = this.currentProcess.get();
+
+		if (event.processed)
+			return false;
+
+		if (process == null) {
+			this.futureEventList.cancelEvent(event);
+			return true;
+		}
+
+		if (event.destId.equals(SicsimConfig.SICSSIM_NODE_ID) || this.indexOf(event.destId) != process.index)
+			return false;
+
+		event.withdrawn = true;
+		if (event.time == process.clock)
+			return true;
+
+		process.sharedActions.add(new Runnable() {
+			public void run() {
+				futureEventList.cancelEvent(event);
+			}
+		});
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Loads the saved events in the future event list of the scheduler.
+	 */
+	public void loadState() {
+		this.futureEventList.loadState(this.context);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Executes the groups of events of the current time in parallel, and merges what the logical
+	 * processes have kept during the step.
+	 */
+	private void runStep(PrintStream out) {
+		int last = -1;
+		this.activeTasks.clear();
+		for (int i = 0; i < this.processes.length; i++) {
+			if (!this.groups.get(i).isEmpty()) {
+				this.activeTasks.add(this.tasks.get(i));
+				last = i;
+			}
+		}
+
+		if (this.activeTasks.isEmpty())
+			return;
+
+		// a single group is not worth a round trip to the pool
+		if (this.activeTasks.size() == 1)
+			this.runGroup(this.processes[last]);
+		else
+			this.invoke(this.activeTasks);
+
+		for (int i = 0; i < this.processes.length; i++) {
+			Vector<FutureEvent> events = this.sentEvents.get(i);
+			for (int j = 0; j < events.size(); j++)
+				this.futureEventList.addEvent(events.get(j));
+			events.clear();
+		}
+
+		long time = this.scheduler.getCurrentClock();
+		this.merge(out);
+		this.scheduler.setCurrentClock(time);
+	}
+
+//----------------------------------------------------------------------------------
+	private void runGroup(LogicalProcess process) {
+		PriorityQueue<FutureEvent> group = this.groups.get(process.index);
+
+		this.enter(process);
+
+		try {
+			process.clock = this.scheduler.getCurrentClock();
+			FutureEvent event;
+			while ((event = group.poll()) != null) {
+				if (!event.withdrawn) {
+					event.processed = true;
+					this.sim.doStep(event);
+					process.record(event);
+				}
+				process.eventPool.release(event);
+			}
+		} finally {
+			group.clear();
+			this.exit();
+		}
+	}
+}
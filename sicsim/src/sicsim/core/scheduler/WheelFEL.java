@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.core.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Vector;
+
+/**
+ * Future event list implemented by a hierarchical timing wheel in front of a binary heap. The wheel
+ * has a few levels of slots: a slot of the first level holds the events of one time unit, and a slot
+ * of each next level covers a whole turn of the level below it. An event is kept in the lowest level
+ * whose slots can tell its time apart from the clock of the wheel, so adding an event takes constant
+ * time, and an event moves down at most once per level before it is removed. Only the events that
+ * are beyond the last level, i.e. in a later turn of the whole wheel, are kept in the heap, and they
+ * are moved to the wheel when the clock reaches their turn.
+ * 
+ * The events of the current time are moved to a queue, which returns them in the order they have
+ * reached it, or, in the canonical order, to a small heap, which returns them in the order of
+ * FutureEvent.compareTo. Like the radix heap, an event that is added with a time before the last
+ * removed event is returned as if it had the time of the last removed event.
+ * @see SicsimConfig#WHEEL_SIZES
+ * @see SicsimConfig#CANONICAL_ORDER
+ */
+public class WheelFEL extends AbstractFEL {
+	private static int MAX_BITS = 62;
+
+	private FutureEvent[][] heads;
+	private FutureEvent[][] tails;
+	private long[][] occupied;
+	private int[] shifts;
+	private int[] masks;
+	private int levels;
+	private int bits;
+
+	private Queue<FutureEvent> overflow = new PriorityQueue<FutureEvent>();
+	private Queue<FutureEvent> current;
+	private boolean canonical;
+	private long now = 0;
+	private int size = 0;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the wheel.
+	 * @param sizes The number of slots of each level, from the lowest one. Each size is rounded up to a power of two.
+	 */
+	public WheelFEL(int[] sizes) {
+		this(sizes, false);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the wheel.
+	 * @param sizes The number of slots of each level, from the lowest one. Each size is rounded up to a power of two.
+	 * @param canonical Specifies if the events with the same time are returned in the order of FutureEvent.compareTo.
+	 */
+	public WheelFEL(int[] sizes, boolean canonical) {
+		this.canonical = canonical;
+		this.current = this.createCurrent(new Vector<FutureEvent>());
+		this.levels = Math.max(1, sizes.length);
+		this.heads = new FutureEvent[this.levels][];
+		this.tails = new FutureEvent[this.levels][];
+		this.occupied = new long[this.levels][];
+		this.shifts = new int[this.levels + 1];
+		this.masks = new int[this.levels];
+
+		for (int i = 0; i < this.levels; i++) {
+			int size = (i < sizes.length) ? sizes[i] : 2;
+			int levelBits = 32 - Integer.numberOfLeadingZeros(Math.max(2, Math.min(size, 1 << 20)) - 1);
+			levelBits = Math.min(levelBits, WheelFEL.MAX_BITS - this.shifts[i]);
+
+			this.heads[i] = new FutureEvent[1 << levelBits];
+			this.tails[i] = new FutureEvent[1 << levelBits];
+			this.occupied[i] = new long[((1 << levelBits) + 63) / 64];
+			this.masks[i] = (1 << levelBits) - 1;
+			this.shifts[i + 1] = this.shifts[i] + levelBits;
+		}
+
+		this.bits = this.shifts[this.levels];
+	}
+
+//----------------------------------------------------------------------------------
+	public void addEvent(FutureEvent event) {
+		this.insert(event);
+		this.size++;
+	}
+
+//----------------------------------------------------------------------------------
+	public int size() {
+		return this.size;
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent pollFirst() {
+		if (this.size == 0)
+			return null;
+
+		while (this.current.isEmpty()) {
+			int slot = this.nextSlot(0, this.cursor(0));
+			if (slot < 0) {
+				this.cascade();
+				continue;
+			}
+
+			this.now = (this.now & ~((long)this.masks[0])) | slot;
+
+			FutureEvent event = this.heads[0][slot];
+			this.heads[0][slot] = null;
+			this.tails[0][slot] = null;
+			this.occupied[0][slot >>> 6] &= ~(1L << slot);
+
+			while (event != null) {
+				FutureEvent next = event.next;
+				event.next = null;
+				this.current.add(event);
+				event = next;
+			}
+		}
+
+		this.size--;
+
+		return this.current.poll();
+	}
+
+//----------------------------------------------------------------------------------
+	protected FutureEvent peekFirst() {
+		if (this.size == 0)
+			return null;
+
+		if (!this.current.isEmpty())
+			return this.current.peek();
+
+		// the clock of the wheel is not moved here, since events before the smallest time may still be added
+		for (int i = 0; i < this.levels; i++) {
+			int slot = this.nextSlot(i, this.cursor(i));
+			if (slot < 0)
+				continue;
+
+			FutureEvent min = this.heads[i][slot];
+			for (FutureEvent event = min.next; event != null; event = event.next) {
+				if (event.compareTo(min) < 0)
+					min = event;
+			}
+
+			return min;
+		}
+
+		return this.overflow.peek();
+	}
+
+//----------------------------------------------------------------------------------
+	protected void removeDeletedEvents() {
+		for (int i = 0; i < this.levels; i++) {
+			for (int slot = 0; slot <= this.masks[i]; slot++) {
+				FutureEvent event = this.heads[i][slot];
+				FutureEvent last = null;
+				this.heads[i][slot] = null;
+
+				while (event != null) {
+					FutureEvent next = event.next;
+					event.next = null;
+
+					if (event.deleted) {
+						this.size--;
+					} else {
+						if (last == null)
+							this.heads[i][slot] = event;
+						else
+							last.next = event;
+						last = event;
+					}
+
+					event = next;
+				}
+
+				this.tails[i][slot] = last;
+				if (last == null)
+					this.occupied[i][slot >>> 6] &= ~(1L << slot);
+			}
+		}
+
+		this.overflow = new PriorityQueue<FutureEvent>(this.removeDeletedEvents(this.overflow));
+		this.current = this.createCurrent(this.removeDeletedEvents(this.current));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the events of a queue that are not deleted, in the order of the queue.
+	 */
+	private Vector<FutureEvent> removeDeletedEvents(Queue<FutureEvent> queue) {
+		Vector<FutureEvent> events = new Vector<FutureEvent>(queue.size());
+		for (FutureEvent event : queue) {
+			if (!event.deleted)
+				events.add(event);
+		}
+
+		this.size -= queue.size() - events.size();
+
+		return events;
+	}
+
+//----------------------------------------------------------------------------------
+	private Queue<FutureEvent> createCurrent(Vector<FutureEvent> events) {
+		if (this.canonical)
+			return new PriorityQueue<FutureEvent>(events);
+
+		return new ArrayDeque<FutureEvent>(events);
+	}
+
+//----------------------------------------------------------------------------------
+	protected Vector<FutureEvent> getEvents() {
+		Vector<FutureEvent> events = new Vector<FutureEvent>(this.size);
+
+		for (int i = 0; i < this.levels; i++) {
+			for (int slot = 0; slot <= this.masks[i]; slot++) {
+				for (FutureEvent event = this.heads[i][slot]; event != null; event = event.next)
+					events.add(event);
+			}
+		}
+
+		events.addAll(this.overflow);
+		events.addAll(this.current);
+
+		return events;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Puts an event in the lowest level whose slots tell its time apart from the clock, or in the
+	 * heap if it is in a later turn of the wheel. The events of the current time go to the heap of
+	 * the current time.
+	 */
+	private void insert(FutureEvent event) {
+		long key = (event.time > this.now) ? event.time : this.now;
+		long diff = key ^ this.now;
+
+		if (diff == 0) {
+			event.next = null;
+			this.current.add(event);
+			return;
+		}
+
+		if ((diff >>> this.bits) != 0) {
+			this.overflow.add(event);
+			return;
+		}
+
+		int i = 0;
+		while ((diff >>> this.shifts[i + 1]) != 0)
+			i++;
+
+		int slot = (int)(key >>> this.shifts[i]) & this.masks[i];
+		event.next = null;
+		if (this.heads[i][slot] == null) {
+			this.heads[i][slot] = event;
+			this.occupied[i][slot >>> 6] |= (1L << slot);
+		} else {
+			this.tails[i][slot].next = event;
+		}
+		this.tails[i][slot] = event;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Moves the clock to the start of the first non-empty slot above the lowest level, and spreads
+	 * the events of that slot over the lower levels. If the wheel is empty, the clock is moved to the
+	 * smallest time in the heap, and the events of its turn are moved to the wheel.
+	 */
+	private void cascade() {
+		for (int i = 1; i < this.levels; i++) {
+			int slot = this.nextSlot(i, this.cursor(i));
+			if (slot < 0)
+				continue;
+
+			long lowBits = (1L << this.shifts[i + 1]) - 1;
+			this.now = (this.now & ~lowBits) | ((long)slot << this.shifts[i]);
+
+			FutureEvent event = this.heads[i][slot];
+			this.heads[i][slot] = null;
+			this.tails[i][slot] = null;
+			this.occupied[i][slot >>> 6] &= ~(1L << slot);
+
+			while (event != null) {
+				FutureEvent next = event.next;
+				this.insert(event);
+				event = next;
+			}
+
+			return;
+		}
+
+		this.now = this.overflow.peek().time;
+		long turn = this.now >>> this.bits;
+		while (!this.overflow.isEmpty() && (this.overflow.peek().time >>> this.bits) == turn)
+			this.insert(this.overflow.poll());
+	}
+
+//----------------------------------------------------------------------------------
+	private int cursor(int level) {
+		return (int)(this.now >>> this.shifts[level]) & this.masks[level];
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the first non-empty slot of a level, starting from 'from'.
+	 * @return The slot, or -1 if there is no non-empty slot after 'from'.
+	 */
+	private int nextSlot(int level, int from) {
+		long[] words = this.occupied[level];
+		int w = from >>> 6;
+		long word = words[w] & (-1L << from);
+
+		while (word == 0) {
+			if (++w == words.length)
+				return -1;
+			word = words[w];
+		}
+
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+}
@@ -19,13 +19,31 @@
 package sicsim.main;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.core.scheduler.SicSim;
 
+/**
+ * Runs the simulation configured in sicsim.conf, or with the arguments 'sweep &lt;sweep file&gt; [&lt;threads&gt;]'
+ * runs a parameter sweep over it.
+ * @see SweepRunner
+ */
 public class Main {
 
 	public static void main(String[] args) {
-		SicsimConfig.loadConfig();
-		SicSim sim = new SicSim();
-		sim.runTill(SicsimConfig.SIM_TIME);
+		try {
+			if (args.length > 1 && args[0].equalsIgnoreCase("sweep")) {
+				int numOfThreads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+				new SweepRunner(args[1], numOfThreads).run();
+				return;
+			}
+
+			SicsimConfig config = new SicsimConfig();
+			config.loadConfig();
+			SicSim sim = new SicSim(new SimulationContext(config));
+			sim.runTill(config.SIM_TIME);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
 	}
 }
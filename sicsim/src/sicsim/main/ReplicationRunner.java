@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.main;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationInputs;
+
+/**
+ * Runs several replications of the simulation configured in sicsim.conf concurrently in one JVM.
+ * The i-th replication uses the seed SicsimConfig.SEED + i, and all of them share the scenario and
+ * the latency table, which do not depend on the seed. The output files of a replication, e.g.
+ * SicsimConfig.NET_SIZE_FILE and the snapshots of the monitor, and what its peers print, are
+ * written to the directory 'seed-<seed>'. At the end, the mean, the standard deviation and the
+ * 95% confidence interval of the final network size, the final overlay size and the running time
+ * of the replications are printed.
+ * <p>
+ * Usage: java sicsim.main.ReplicationRunner &lt;replications&gt; [&lt;threads&gt;]
+ * <p>
+ * The replications are the unit of parallelism, so each of them runs with the sequential engine.
+ */
+public class ReplicationRunner {
+	private static String DIR_PREFIX = new String("seed-");
+	private static double CONFIDENCE = 1.96;
+
+	private int numOfReplications;
+	private int numOfThreads;
+	private long firstSeed;
+	private SimulationInputs inputs;
+	private RunOutput output;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the runner.
+	 * @param numOfReplications The number of replications.
+	 * @param numOfThreads The number of replications that run at the same time.
+	 */
+	public ReplicationRunner(int numOfReplications, int numOfThreads) {
+		this.numOfReplications = numOfReplications;
+		this.numOfThreads = numOfThreads;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs all the replications and prints their results and the summary statistics.
+	 */
+	public void run() {
+		SicsimConfig config = new SicsimConfig();
+		config.loadConfig();
+		this.firstSeed = config.SEED;
+		this.inputs = new SimulationInputs(config);
+
+		if (!config.ENGINE.equalsIgnoreCase("sequential") && config.LOG_SIM && config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+			System.out.println("SICSSIM => The replications run with the sequential engine instead of " + config.ENGINE);
+
+		Vector<Run> results = new Vector<Run>();
+		Vector<Future<Run>> futures = new Vector<Future<Run>>();
+		ExecutorService pool = Executors.newFixedThreadPool(this.numOfThreads);
+		PrintStream out = System.out;
+		this.output = new RunOutput(out);
+		System.setOut(new PrintStream(this.output));
+
+		try {
+			for (int i = 0; i < this.numOfReplications; i++) {
+				final long seed = this.firstSeed + i;
+				futures.add(pool.submit(new Callable<Run>() {
+					public Run call() throws IOException {
+						return runReplication(seed);
+					}
+				}));
+			}
+
+			for (Future<Run> future : futures)
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			System.out.flush();
+			System.setOut(out);
+		}
+
+		this.printResults(results);
+	}
+
+//----------------------------------------------------------------------------------
+	private Run runReplication(long seed) throws IOException {
+		SicsimConfig config = new SicsimConfig();
+		config.loadConfig();
+		config.setSeed(seed);
+		config.ENGINE = new String("sequential");
+
+		Run run = new Run(ReplicationRunner.DIR_PREFIX + seed, ReplicationRunner.DIR_PREFIX + seed, config, this.inputs);
+		run.execute(this.output);
+
+		return run;
+	}
+
+//----------------------------------------------------------------------------------
+	private void printResults(Vector<Run> results) {
+		double[] networkSizes = new double[results.size()];
+		double[] overlaySizes = new double[results.size()];
+		double[] times = new double[results.size()];
+
+		for (int i = 0; i < results.size(); i++) {
+			Run run = results.elementAt(i);
+			System.out.println(run);
+			networkSizes[i] = run.getNetworkSize();
+			overlaySizes[i] = run.getOverlaySize();
+			times[i] = run.getTime();
+		}
+
+		System.out.println("-------------------------------");
+		System.out.println(ReplicationRunner.summary("network size", networkSizes));
+		System.out.println(ReplicationRunner.summary("overlay size", overlaySizes));
+		System.out.println(ReplicationRunner.summary("time (ms)", times));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the mean, the standard deviation and the confidence interval of a set of values. The
+	 * interval uses the normal approximation, which fits the usual number of replications (30 or more).
+	 * @param name The name of the values.
+	 * @param values The values.
+	 * @return The summary of the values.
+	 */
+	static String summary(String name, double[] values) {
+		double mean = 0;
+		double var = 0;
+
+		for (int i = 0; i < values.length; i++)
+			mean += values[i];
+		mean /= values.length;
+
+		for (int i = 0; i < values.length; i++)
+			var += (values[i] - mean) * (values[i] - mean);
+		if (values.length > 1)
+			var /= (values.length - 1);
+
+		double sd = Math.sqrt(var);
+		double delta = ReplicationRunner.CONFIDENCE * sd / Math.sqrt(values.length);
+
+		return (name + ": mean: " + mean + ", sd: " + sd + ", 95% ci: [" + (mean - delta) + ", " + (mean + delta) + "]");
+	}
+
+//----------------------------------------------------------------------------------
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("usage: java sicsim.main.ReplicationRunner <replications> [<threads>]");
+			System.exit(1);
+		}
+
+		int numOfReplications = Integer.parseInt(args[0]);
+		int numOfThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		try {
+			new ReplicationRunner(numOfReplications, numOfThreads).run();
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
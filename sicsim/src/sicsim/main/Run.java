@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.main;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
+import sicsim.config.SimulationInputs;
+import sicsim.core.scheduler.SicSim;
+
+/**
+ * One simulation run of ReplicationRunner or SweepRunner. The output files of the run, e.g.
+ * SicsimConfig.NET_SIZE_FILE and the snapshots of the monitor, and what its peers print, are
+ * written to its own directory.
+ */
+class Run {
+	private static String OUTPUT_FILE = new String("output");
+
+	private String name;
+	private String dir;
+	private SicsimConfig config;
+	private SimulationInputs inputs;
+	private int networkSize;
+	private int overlaySize;
+	private long time;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates a run.
+	 * @param name The name of the run.
+	 * @param dir The directory of the output of the run.
+	 * @param config The configuration of the run.
+	 * @param inputs The inputs of the run, which may be shared with the runs that differ only in the seed.
+	 */
+	Run(String name, String dir, SicsimConfig config, SimulationInputs inputs) {
+		this.name = name;
+		this.dir = dir;
+		this.config = config;
+		this.inputs = inputs;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs the simulation on the current thread.
+	 * @param output The output stream installed as System.out, which passes the output of the current thread to the run.
+	 * @throws IOException Thrown if the output of the run can not be written.
+	 */
+	void execute(RunOutput output) throws IOException {
+		SimulationContext context = new SimulationContext(this.config, this.dir, this.inputs);
+		// the network size is appended to its file, so the file of an earlier run is removed
+		new File(context.getPath(this.config.NET_SIZE_FILE)).delete();
+
+		OutputStream file = new BufferedOutputStream(new FileOutputStream(context.getPath(Run.OUTPUT_FILE)));
+		output.setOutput(file);
+		try {
+			long start = System.currentTimeMillis();
+			SicSim sim = new SicSim(context);
+			sim.runTill(this.config.SIM_TIME);
+
+			this.networkSize = sim.getNetworkSize();
+			this.overlaySize = sim.getOverlaySize();
+			this.time = System.currentTimeMillis() - start;
+		} finally {
+			output.setOutput(null);
+			file.close();
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	String getName() {
+		return this.name;
+	}
+
+//----------------------------------------------------------------------------------
+	int getNetworkSize() {
+		return this.networkSize;
+	}
+
+//----------------------------------------------------------------------------------
+	int getOverlaySize() {
+		return this.overlaySize;
+	}
+
+//----------------------------------------------------------------------------------
+	long getTime() {
+		return this.time;
+	}
+
+//----------------------------------------------------------------------------------
+	public String toString() {
+		return (this.name + ", network size: " + this.networkSize + ", overlay size: " + this.overlaySize + ", time: " + this.time + " ms");
+	}
+}
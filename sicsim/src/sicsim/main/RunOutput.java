@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Output stream that passes what a thread prints to the output of the run that the thread is
+ * executing, and the output of the other threads to the real output stream. It lets several
+ * simulations print at the same time in one JVM without mixing their output.
+ * @see ReplicationRunner
+ */
+class RunOutput extends OutputStream {
+	private PrintStream out;
+	private ThreadLocal<OutputStream> runOutput = new ThreadLocal<OutputStream>();
+
+//----------------------------------------------------------------------------------
+	RunOutput(PrintStream out) {
+		this.out = out;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Sets the output of the run that the current thread executes.
+	 * @param output The output of the run, or null when the thread has finished the run.
+	 */
+	void setOutput(OutputStream output) {
+		if (output == null)
+			this.runOutput.remove();
+		else
+			this.runOutput.set(output);
+	}
+
+//----------------------------------------------------------------------------------
+	public void write(int b) throws IOException {
+		this.write(new byte[] {(byte)b}, 0, 1);
+	}
+
+//----------------------------------------------------------------------------------
+	public void write(byte[] b, int off, int len) throws IOException {
+		OutputStream output = this.runOutput.get();
+
+		if (output != null)
+			output.write(b, off, len);
+		else
+			this.out.write(b, off, len);
+	}
+
+//----------------------------------------------------------------------------------
+	public void flush() throws IOException {
+		OutputStream output = this.runOutput.get();
+
+		if (output != null)
+			output.flush();
+		else
+			this.out.flush();
+	}
+}
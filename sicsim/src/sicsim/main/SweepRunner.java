@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationInputs;
+import sicsim.utils.FileIO;
+import sicsim.utils.PatternMatching;
+
+/**
+ * Runs a parameter sweep: the simulation configured in sicsim.conf is run once for each
+ * combination of the values given in a sweep file. Each line of the sweep file gives a key and
+ * its values, e.g. 'MAX_NODE: 1000, 2000, 4000'. The keys in upper case are settings of
+ * sicsim.conf. The keys in lower case are fields of the scenario events, e.g. 'join: 2, 4' sets
+ * the join ratio of all the lottery events and 'join.2: 2, 4' only the one of the second event.
+ * <p>
+ * The runs are executed on a pool of threads, and a run is only started if the used heap is
+ * below MEMORY_LIMIT of the maximum heap, or if no other run is executing. The output of each
+ * run is written to its own directory inside the directory '&lt;sweep file&gt;.runs'. Each
+ * completed run is appended to the file 'completed' of that directory, and the runs in that
+ * file are skipped when the sweep is started again, so an interrupted sweep continues where it
+ * stopped. The runs with the same values, except SEED, share their inputs.
+ * <p>
+ * The runs are the unit of parallelism, so each of them runs with the sequential engine.
+ * @see Main
+ */
+public class SweepRunner {
+	private static String DIR_SUFFIX = new String(".runs");
+	private static String COMPLETED_FILE = new String("completed");
+	private static double MEMORY_LIMIT = 0.75;
+
+	private String sweepFile;
+	private String sweepDir;
+	private int numOfThreads;
+	private Vector<String> keys = new Vector<String>();
+	private Vector<String[]> values = new Vector<String[]>();
+	private String rawConfig;
+	private HashSet<String> completed = new HashSet<String>();
+	private HashMap<String, SimulationInputs> inputs = new HashMap<String, SimulationInputs>();
+	private RunOutput output;
+	private int running = 0;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the sweep runner.
+	 * @param sweepFile The name of the sweep file.
+	 * @param numOfThreads The maximum number of runs that execute at the same time.
+	 */
+	public SweepRunner(String sweepFile, int numOfThreads) {
+		this.sweepFile = sweepFile;
+		this.sweepDir = sweepFile + SweepRunner.DIR_SUFFIX;
+		this.numOfThreads = numOfThreads;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Runs all the combinations of the sweep that have not been completed before.
+	 */
+	public void run() {
+		this.loadSweep();
+		this.loadCompleted();
+		this.rawConfig = FileIO.read(SicsimConfig.CONF_FILE);
+
+		int numOfRuns = 1;
+		for (int i = 0; i < this.values.size(); i++)
+			numOfRuns *= this.values.elementAt(i).length;
+
+		Vector<Future<Run>> futures = new Vector<Future<Run>>();
+		ExecutorService pool = Executors.newFixedThreadPool(this.numOfThreads);
+		PrintStream out = System.out;
+		this.output = new RunOutput(out);
+		System.setOut(new PrintStream(this.output));
+
+		try {
+			for (int i = 0; i < numOfRuns; i++) {
+				final String[] assignment = this.getAssignment(i);
+				futures.add(pool.submit(new Callable<Run>() {
+					public Run call() throws IOException, InterruptedException {
+						return execute(assignment);
+					}
+				}));
+			}
+
+			for (Future<Run> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			System.out.flush();
+			System.setOut(out);
+		}
+
+		System.out.println("-------------------------------");
+		System.out.println(this.completed.size() + " of " + numOfRuns + " runs are completed, see " + new File(this.sweepDir, SweepRunner.COMPLETED_FILE));
+	}
+
+//----------------------------------------------------------------------------------
+	private Run execute(String[] assignment) throws IOException, InterruptedException {
+		String name = this.getName(assignment, false);
+
+		synchronized (this) {
+			if (this.completed.contains(name))
+				return null;
+		}
+
+		this.admit();
+		try {
+			SicsimConfig config = new SicsimConfig();
+			config.parseConfig(this.applyConfig(assignment));
+			if (!config.ENGINE.equalsIgnoreCase("sequential") && config.LOG_SIM && config.LOG_LEVEL >= SicsimConfig.LOG_WARNING)
+				System.out.println("SICSSIM => The sweep runs with the sequential engine instead of " + config.ENGINE);
+			config.ENGINE = new String("sequential");
+
+			Run run = new Run(name, new File(this.sweepDir, name).getPath(), config, this.getInputs(assignment, config));
+			run.execute(this.output);
+			this.complete(name, run);
+
+			return run;
+		} catch (IllegalArgumentException e) {
+			// the run is not recorded as completed, so it is executed again when the sweep is resumed
+			System.err.println("run " + name + " failed: " + e.getMessage());
+			return null;
+		} finally {
+			this.release();
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Waits until the run can be started without running out of memory.
+	 */
+	private synchronized void admit() throws InterruptedException {
+		while (this.running > 0 && this.isMemoryLow())
+			this.wait();
+
+		this.running++;
+	}
+
+//----------------------------------------------------------------------------------
+	private synchronized void release() {
+		this.running--;
+		this.notifyAll();
+	}
+
+//----------------------------------------------------------------------------------
+	private boolean isMemoryLow() {
+		Runtime runtime = Runtime.getRuntime();
+
+		if (runtime.totalMemory() - runtime.freeMemory() <= SweepRunner.MEMORY_LIMIT * runtime.maxMemory())
+			return false;
+
+		// the memory of the completed runs may not be collected yet
+		System.gc();
+
+		return (runtime.totalMemory() - runtime.freeMemory() > SweepRunner.MEMORY_LIMIT * runtime.maxMemory());
+	}
+
+//----------------------------------------------------------------------------------
+	private synchronized void complete(String name, Run run) {
+		this.completed.add(name);
+		FileIO.append(run.toString() + "\n", new File(this.sweepDir, SweepRunner.COMPLETED_FILE).getPath());
+		System.out.println(run);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the inputs of a run, which are shared by the runs that differ only in the seed.
+	 */
+	private synchronized SimulationInputs getInputs(String[] assignment, SicsimConfig config) {
+		String key = this.getName(assignment, true);
+		SimulationInputs runInputs = this.inputs.get(key);
+
+		if (runInputs == null) {
+			runInputs = new SimulationInputs(config, this.applyScenario(assignment, FileIO.read(config.SCENARIO_FILE)));
+			this.inputs.put(key, runInputs);
+		}
+
+		return runInputs;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the values of the i-th combination of the sweep.
+	 */
+	private String[] getAssignment(int index) {
+		String[] assignment = new String[this.keys.size()];
+
+		for (int i = this.keys.size() - 1; i >= 0; i--) {
+			String[] keyValues = this.values.elementAt(i);
+			assignment[i] = keyValues[index % keyValues.length];
+			index /= keyValues.length;
+		}
+
+		return assignment;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the name of a combination, e.g. 'MAX_NODE-1000_join.2-4', which is also the directory of its run.
+	 */
+	private String getName(String[] assignment, boolean withoutSeed) {
+		String name = new String();
+
+		for (int i = 0; i < this.keys.size(); i++) {
+			if (withoutSeed && this.keys.elementAt(i).equals("SEED"))
+				continue;
+			if (name.length() > 0)
+				name += "_";
+			name += this.keys.elementAt(i) + "-" + assignment[i].replaceAll("[^\\w.\\-]", "-");
+		}
+
+		return (name.length() > 0) ? name : new String("default");
+	}
+
+//----------------------------------------------------------------------------------
+	private String applyConfig(String[] assignment) {
+		String str = this.rawConfig;
+
+		for (int i = 0; i < this.keys.size(); i++) {
+			String key = this.keys.elementAt(i);
+			if (!SweepRunner.isConfigKey(key))
+				continue;
+
+			Matcher matcher = Pattern.compile("^" + Pattern.quote(key) + ":.*$", Pattern.MULTILINE).matcher(str);
+			if (matcher.find())
+				str = matcher.replaceAll(Matcher.quoteReplacement(key + ": " + assignment[i]));
+			else
+				str += "\n" + key + ": " + assignment[i] + "\n";
+		}
+
+		return str;
+	}
+
+//----------------------------------------------------------------------------------
+	private String applyScenario(String[] assignment, String rawScenario) {
+		String[] parts = rawScenario.split(PatternMatching.scenarioSplitter, -1);
+
+		for (int i = 0; i < this.keys.size(); i++) {
+			String key = this.keys.elementAt(i);
+			if (SweepRunner.isConfigKey(key))
+				continue;
+
+			String field = key;
+			int event = -1;
+			if (key.indexOf('.') != -1) {
+				field = key.substring(0, key.indexOf('.'));
+				event = Integer.parseInt(key.substring(key.indexOf('.') + 1)) - 1;
+			}
+
+			Pattern pattern = Pattern.compile("^" + Pattern.quote(field) + ":.*$", Pattern.MULTILINE);
+			for (int j = 0; j < parts.length; j++) {
+				if (event == -1 || event == j)
+					parts[j] = pattern.matcher(parts[j]).replaceAll(Matcher.quoteReplacement(field + ": " + assignment[i]));
+			}
+		}
+
+		String str = parts[0];
+		for (int j = 1; j < parts.length; j++)
+			str += PatternMatching.scenarioSplitter + parts[j];
+
+		return str;
+	}
+
+//----------------------------------------------------------------------------------
+	private static boolean isConfigKey(String key) {
+		return key.equals(key.toUpperCase());
+	}
+
+//----------------------------------------------------------------------------------
+	private void loadSweep() {
+		try {
+			String str = PatternMatching.removeComments(FileIO.read(this.sweepFile));
+			String[] lines = str.split("\n");
+
+			for (int i = 0; i < lines.length; i++) {
+				if (lines[i].trim().length() == 0)
+					continue;
+
+				String key = lines[i].substring(0, lines[i].indexOf(':')).trim();
+				String[] keyValues = lines[i].substring(lines[i].indexOf(':') + 1).trim().split("[,\\s]+");
+				if (key.length() == 0 || keyValues[0].length() == 0)
+					throw new IllegalArgumentException(lines[i]);
+
+				this.keys.addElement(key);
+				this.values.addElement(keyValues);
+			}
+		} catch (Exception e) {
+			throw new IllegalArgumentException("error on opening/parsing " + this.sweepFile + " file.", e);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	private void loadCompleted() {
+		File file = new File(this.sweepDir, SweepRunner.COMPLETED_FILE);
+
+		new File(this.sweepDir).mkdirs();
+		if (!file.exists())
+			return;
+
+		String[] lines = FileIO.read(file.getPath()).split("\n");
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].indexOf(',') != -1)
+				this.completed.add(lines[i].substring(0, lines[i].indexOf(',')));
+		}
+	}
+}
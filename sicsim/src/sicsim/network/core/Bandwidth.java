@@ -15,26 +15,61 @@
  * along with this program; if not, write to the Free Software
  * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
  */
-
 package sicsim.network.core;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.Vector;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.types.LinkRate;
 import sicsim.types.NodeId;
 import sicsim.utils.FileIO;
+import sicsim.utils.IndexedSet;
 import sicsim.utils.PatternMatching;
 
 /**
  * This class maintains the structure to store the information of upload/download bandwidth of peers and provides
- * the methods to work with this structure.  
+ * the methods to work with this structure.
+ * The rates are kept on links between two peers. A link belongs to one peer, its owner, and keeps the upload rate
+ * from the owner to the other peer and the download rate of the owner from the other peer. The links are stored
+ * in parallel primitive arrays, and each peer keeps the list of links it owns and the list of links to it, so
+ * removing a peer only touches its own links. The total upload and download rates of each peer are updated
+ * whenever the rates of its links change, so they are read in O(1).
  */
 public class Bandwidth {
+	private static int INITIAL_CAPACITY = 16;
+	private static int NONE = -1;
+
+	private SimulationContext context;
+	private SicsimConfig config;
+
+	// the peers that have a link, with the first link they own, the first link to them and the total rates
+	// of the links they own at the same position
+	private IndexedSet nodes = new IndexedSet();
+	private int[] firstOut = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] firstIn = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] totalUploadRate = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] totalDownloadRate = new int[Bandwidth.INITIAL_CAPACITY];
+
+	// the links, where a link is an index of the arrays
+	private long[] owner = new long[Bandwidth.INITIAL_CAPACITY];
+	private long[] partner = new long[Bandwidth.INITIAL_CAPACITY];
+	private int[] uploadRate = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] downloadRate = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] nextOut = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] prevOut = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] nextIn = new int[Bandwidth.INITIAL_CAPACITY];
+	private int[] prevIn = new int[Bandwidth.INITIAL_CAPACITY];
+	private int numOfLinks = 0;
+	// the removed links are reused, and chained by nextOut
+	private int freeLink = Bandwidth.NONE;
 
-	private HashMap<String, HashMap<String, LinkRate>> bandwidth = new HashMap<String, HashMap<String, LinkRate>>();
+//----------------------------------------------------------------------------------
+	public Bandwidth(SimulationContext context) {
+		this.context = context;
+		this.config = context.getConfig();
+	}
 	
 //----------------------------------------------------------------------------------
 	/**
@@ -43,25 +78,10 @@ public class Bandwidth {
 	 * @param destId Specifies the node id of the destination peer.
 	 * @param rate Specifies the rate.
  	 */
-	public void useUploadBandwidth(NodeId srcId, NodeId destId, int rate) {
-		HashMap<String, LinkRate> nodeList;
-		LinkRate newRate;
-
-		if (this.bandwidth.containsKey(srcId.toString())) {
-			nodeList = this.bandwidth.get(srcId.toString());
-			if (nodeList.containsKey(destId.toString()))
-				newRate = nodeList.get(destId.toString());
-			else
-				newRate = new LinkRate();
-		}
-		else {
-			nodeList = new HashMap<String, LinkRate>();
-			newRate = new LinkRate();
-		}
-
-		newRate.uploadBandwidth += rate;
-		nodeList.put(destId.toString(), newRate);
-		this.bandwidth.put(srcId.toString(), nodeList);
+	public synchronized void useUploadBandwidth(NodeId srcId, NodeId destId, int rate) {
+		int link = this.getLink(srcId.toLong(), destId.toLong());
+		this.uploadRate[link] += rate;
+		this.totalUploadRate[this.nodes.indexOf(srcId.toLong())] += rate;
 	}
 
 //----------------------------------------------------------------------------------
@@ -71,25 +91,10 @@ public class Bandwidth {
 	 * @param destId Specifies the node id of the destination peer.
 	 * @param rate Specifies the rate.
  	 */
-	public void useDownloadBandwidth(NodeId srcId, NodeId destId, int rate) {
-		HashMap<String, LinkRate> nodeList;
-		LinkRate newRate;
-
-		if (this.bandwidth.containsKey(destId.toString())) {
-			nodeList = this.bandwidth.get(destId.toString());
-			if (nodeList.containsKey(srcId.toString()))
-				newRate = nodeList.get(srcId.toString());
-			else
-				newRate = new LinkRate();
-		}
-		else {
-			nodeList = new HashMap<String, LinkRate>();
-			newRate = new LinkRate();
-		}
-		
-		newRate.downloadBandwidth += rate;
-		nodeList.put(srcId.toString(), newRate);
-		this.bandwidth.put(destId.toString(), nodeList);
+	public synchronized void useDownloadBandwidth(NodeId srcId, NodeId destId, int rate) {
+		int link = this.getLink(destId.toLong(), srcId.toLong());
+		this.downloadRate[link] += rate;
+		this.totalDownloadRate[this.nodes.indexOf(destId.toLong())] += rate;
 	}
 
 //----------------------------------------------------------------------------------
@@ -99,29 +104,17 @@ public class Bandwidth {
 	 * @param destId Specifies the node id of the destination peer.
 	 * @param rate Specifies the rate.
  	 */
-	public boolean releaseUploadBandwidth(NodeId srcId, NodeId destId, int rate) {
-		HashMap<String, LinkRate> nodeList;
-		LinkRate currentRate;
-
-		if (this.bandwidth.containsKey(srcId.toString())) {
-			nodeList = this.bandwidth.get(srcId.toString());
-			if (nodeList.containsKey(destId.toString()))
-				currentRate = nodeList.get(destId.toString());
-			else
-				return false;
-		}
-		else 
+	public synchronized boolean releaseUploadBandwidth(NodeId srcId, NodeId destId, int rate) {
+		int link = this.findLink(srcId.toLong(), destId.toLong());
+		if (link == Bandwidth.NONE)
 			return false;
 
-		currentRate.uploadBandwidth -= rate;
+		this.uploadRate[link] -= rate;
+		this.totalUploadRate[this.nodes.indexOf(srcId.toLong())] -= rate;
 
-		if (currentRate.downloadBandwidth == 0 && currentRate.uploadBandwidth == 0)
-			nodeList.remove(destId.toString());
-		else
-			nodeList.put(destId.toString(), currentRate);
+		if (this.downloadRate[link] == 0 && this.uploadRate[link] == 0)
+			this.removeLink(link);
 
-		this.bandwidth.put(srcId.toString(), nodeList);
-		
 		return true;
 	}
 
@@ -132,30 +125,17 @@ public class Bandwidth {
 	 * @param destId Specifies the node id of the destination peer.
 	 * @param rate Specifies the rate.
  	 */
-	public boolean releaseDownloadBandwidth(NodeId srcId, NodeId destId, int rate) {
-		HashMap<String, LinkRate> nodeList;
-		LinkRate currentRate;
-
-		// Set the destination node rate		
-		if (this.bandwidth.containsKey(destId.toString())) {
-			nodeList = this.bandwidth.get(destId.toString());
-			if (nodeList.containsKey(srcId.toString()))
-				currentRate = nodeList.get(srcId.toString());
-			else
-				return false;
-		}
-		else 
+	public synchronized boolean releaseDownloadBandwidth(NodeId srcId, NodeId destId, int rate) {
+		int link = this.findLink(destId.toLong(), srcId.toLong());
+		if (link == Bandwidth.NONE)
 			return false;
 
-		currentRate.downloadBandwidth -= rate;
+		this.downloadRate[link] -= rate;
+		this.totalDownloadRate[this.nodes.indexOf(destId.toLong())] -= rate;
 
-		if (currentRate.uploadBandwidth == 0 && currentRate.downloadBandwidth == 0) 
-			nodeList.remove(srcId.toString());
-		else
-			nodeList.put(srcId.toString(), currentRate);
+		if (this.uploadRate[link] == 0 && this.downloadRate[link] == 0)
+			this.removeLink(link);
 
-			this.bandwidth.put(destId.toString(), nodeList);
-		
 		return true;
 	}
 
@@ -165,18 +145,10 @@ public class Bandwidth {
 	 * @param nodeId Specifies the node id of the peer.
 	 * @return The total download rate of peer with node id 'nodeId'.
  	 */
-	public int getTotalDownloadBandwidth(NodeId nodeId) {
-		HashMap<String, LinkRate> nodeList;
-		int downloadRate = 0;
-		
-		if ((nodeList = this.bandwidth.get(nodeId.toString())) == null)
-			return 0;
-		
-		Iterator<String> nodeListIter = nodeList.keySet().iterator();
-		while (nodeListIter.hasNext())
-			downloadRate += nodeList.get(nodeListIter.next()).downloadBandwidth;
+	public synchronized int getTotalDownloadBandwidth(NodeId nodeId) {
+		int node = this.nodes.indexOf(nodeId.toLong());
 
-		return downloadRate;
+		return ((node != Bandwidth.NONE) ? this.totalDownloadRate[node] : 0);
 	}
 	
 //----------------------------------------------------------------------------------
@@ -185,18 +157,10 @@ public class Bandwidth {
 	 * @param nodeId Specifies the node id of the peer.
 	 * @return The total upload rate of peer with node id 'nodeId'.
  	 */
-	public int getTotalUploadBandwidth(NodeId nodeId) {
-		HashMap<String, LinkRate> nodeList;
-		int uploadRate = 0;
-		
-		if ((nodeList = this.bandwidth.get(nodeId.toString())) == null)
-			return 0;
-
-		Iterator<String> nodeListIter = nodeList.keySet().iterator();
-		while (nodeListIter.hasNext())
-			uploadRate += nodeList.get(nodeListIter.next()).uploadBandwidth;
+	public synchronized int getTotalUploadBandwidth(NodeId nodeId) {
+		int node = this.nodes.indexOf(nodeId.toLong());
 
-		return uploadRate;
+		return ((node != Bandwidth.NONE) ? this.totalUploadRate[node] : 0);
 	}
 
 
@@ -206,38 +170,29 @@ public class Bandwidth {
 	 * @param srcId Specifies the node id of the source peer.
 	 * @param destId Specifies the node id of the destination peer.
  	 */
-	public int getCurrentUploadRate(NodeId srcId, NodeId destId) {
-		try {
-			return this.bandwidth.get(srcId.toString()).get(destId.toString()).uploadBandwidth;
-		}
-		catch(Exception e) {
-			return 0;
-		}
+	public synchronized int getCurrentUploadRate(NodeId srcId, NodeId destId) {
+		int link = this.findLink(srcId.toLong(), destId.toLong());
+
+		return ((link != Bandwidth.NONE) ? this.uploadRate[link] : 0);
 	}
 
 //----------------------------------------------------------------------------------
 	/**
-	 * Removes the information of on peer from bandwidth structure.
+	 * Removes the information of on peer from bandwidth structure. Only the links of the peer are visited.
 	 * @param nodeId Specifies the node id of the peer.
  	 */
 
-	public void remove(NodeId nodeId) {
-		String node;
-		HashMap<String, LinkRate> nodeList = new HashMap<String, LinkRate>();
-		
-		if (this.bandwidth.containsKey(nodeId.toString()))
-			this.bandwidth.remove(nodeId.toString());
-
-		Iterator<String> bandwidthIter = this.bandwidth.keySet().iterator();
-		while (bandwidthIter.hasNext()) {
-			node = bandwidthIter.next();
-			nodeList = this.bandwidth.get(node);
-			if (nodeList.containsKey(nodeId.toString())) {
-				nodeList.remove(nodeId.toString());
-				this.bandwidth.put(node, nodeList);
-			}
+	public synchronized void remove(NodeId nodeId) {
+		long id = nodeId.toLong();
+		int node;
+
+		// the position of the peer is looked up again, since removing a link may move the peers
+		while ((node = this.nodes.indexOf(id)) != Bandwidth.NONE) {
+			if (this.firstOut[node] != Bandwidth.NONE)
+				this.removeLink(this.firstOut[node]);
+			else
+				this.removeLink(this.firstIn[node]);
 		}
-					
 	}
 	
 //----------------------------------------------------------------------------------
@@ -246,18 +201,15 @@ public class Bandwidth {
 	 * @param nodeId Specifies the node id of the peer.
 	 * @return List of peers that the peer with node id 'nodeId' is uploading to them.		
  	 */
-	public Vector<String> getListOfUploads(NodeId nodeId) {
-		if (!this.bandwidth.containsKey(nodeId.toString()) || this.bandwidth.get(nodeId.toString()).size() == 0)
+	public synchronized Vector<NodeId> getListOfUploads(NodeId nodeId) {
+		int node = this.nodes.indexOf(nodeId.toLong());
+		if (node == Bandwidth.NONE)
 			return null;
 		
-		String node;
-		Vector<String> listOfUploads = new Vector<String>();
-		HashMap<String, LinkRate> nodeList = this.bandwidth.get(nodeId.toString());
-		Iterator<String> nodeListIter = nodeList.keySet().iterator();
-		while (nodeListIter.hasNext()) {
-			node = nodeListIter.next();
-			if (nodeList.get(node).uploadBandwidth > 0)
-				listOfUploads.add(node);
+		Vector<NodeId> listOfUploads = new Vector<NodeId>();
+		for (int link = this.firstOut[node]; link != Bandwidth.NONE; link = this.nextOut[link]) {
+			if (this.uploadRate[link] > 0)
+				listOfUploads.add(NodeId.valueOf(this.partner[link]));
 		}
 		
 		return ((listOfUploads.size() != 0) ? listOfUploads : null);
@@ -269,38 +221,178 @@ public class Bandwidth {
 	 * @param nodeId Specifies the node id of the peer.
 	 * @return List of peers that the peer with node id 'nodeId' are downloading from them.		
  	 */
-	public Vector<String> getListOfDownloads(NodeId nodeId) {
-		if (!this.bandwidth.containsKey(nodeId.toString()) || this.bandwidth.get(nodeId.toString()).size() == 0)
+	public synchronized Vector<NodeId> getListOfDownloads(NodeId nodeId) {
+		int node = this.nodes.indexOf(nodeId.toLong());
+		if (node == Bandwidth.NONE)
 			return null;
 		
-		String node;
-		Vector<String> listOfDownloads = new Vector<String>();
-		HashMap<String, LinkRate> nodeList = this.bandwidth.get(nodeId.toString());
-		Iterator<String> nodeListIter = nodeList.keySet().iterator();
-		while (nodeListIter.hasNext()) {
-			node = nodeListIter.next();
-			if (nodeList.get(node).downloadBandwidth > 0)
-				listOfDownloads.add(node);
+		Vector<NodeId> listOfDownloads = new Vector<NodeId>();
+		for (int link = this.firstOut[node]; link != Bandwidth.NONE; link = this.nextOut[link]) {
+			if (this.downloadRate[link] > 0)
+				listOfDownloads.add(NodeId.valueOf(this.partner[link]));
 		}
 		
 		return ((listOfDownloads.size() != 0) ? listOfDownloads : null);
 	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the link from 'ownerId' to 'partnerId', or a new link with no rate if there is no such link.
+	 */
+	private int getLink(long ownerId, long partnerId) {
+		int link = this.findLink(ownerId, partnerId);
+		if (link != Bandwidth.NONE)
+			return link;
+
+		if (this.freeLink != Bandwidth.NONE) {
+			link = this.freeLink;
+			this.freeLink = this.nextOut[link];
+		} else {
+			if (this.numOfLinks == this.owner.length)
+				this.growLinks();
+			link = this.numOfLinks++;
+		}
+
+		int ownerNode = this.addNode(ownerId);
+		int partnerNode = this.addNode(partnerId);
+
+		this.owner[link] = ownerId;
+		this.partner[link] = partnerId;
+		this.uploadRate[link] = 0;
+		this.downloadRate[link] = 0;
+
+		this.prevOut[link] = Bandwidth.NONE;
+		this.nextOut[link] = this.firstOut[ownerNode];
+		if (this.firstOut[ownerNode] != Bandwidth.NONE)
+			this.prevOut[this.firstOut[ownerNode]] = link;
+		this.firstOut[ownerNode] = link;
+
+		this.prevIn[link] = Bandwidth.NONE;
+		this.nextIn[link] = this.firstIn[partnerNode];
+		if (this.firstIn[partnerNode] != Bandwidth.NONE)
+			this.prevIn[this.firstIn[partnerNode]] = link;
+		this.firstIn[partnerNode] = link;
+
+		return link;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the link from 'ownerId' to 'partnerId', or NONE if there is no such link.
+	 */
+	private int findLink(long ownerId, long partnerId) {
+		int node = this.nodes.indexOf(ownerId);
+		if (node == Bandwidth.NONE)
+			return Bandwidth.NONE;
+
+		for (int link = this.firstOut[node]; link != Bandwidth.NONE; link = this.nextOut[link]) {
+			if (this.partner[link] == partnerId)
+				return link;
+		}
+
+		return Bandwidth.NONE;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Unlinks a link from the lists of its two peers, and removes the peers that have no link left.
+	 */
+	private void removeLink(int link) {
+		int ownerNode = this.nodes.indexOf(this.owner[link]);
+		this.totalUploadRate[ownerNode] -= this.uploadRate[link];
+		this.totalDownloadRate[ownerNode] -= this.downloadRate[link];
+		if (this.prevOut[link] == Bandwidth.NONE)
+			this.firstOut[ownerNode] = this.nextOut[link];
+		else
+			this.nextOut[this.prevOut[link]] = this.nextOut[link];
+		if (this.nextOut[link] != Bandwidth.NONE)
+			this.prevOut[this.nextOut[link]] = this.prevOut[link];
+
+		int partnerNode = this.nodes.indexOf(this.partner[link]);
+		if (this.prevIn[link] == Bandwidth.NONE)
+			this.firstIn[partnerNode] = this.nextIn[link];
+		else
+			this.nextIn[this.prevIn[link]] = this.nextIn[link];
+		if (this.nextIn[link] != Bandwidth.NONE)
+			this.prevIn[this.nextIn[link]] = this.prevIn[link];
+
+		this.nextOut[link] = this.freeLink;
+		this.freeLink = link;
+
+		this.removeNodeIfUnlinked(this.owner[link]);
+		this.removeNodeIfUnlinked(this.partner[link]);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the position of a peer, and adds the peer with no link if it is not there.
+	 */
+	private int addNode(long nodeId) {
+		int node = this.nodes.indexOf(nodeId);
+		if (node != Bandwidth.NONE)
+			return node;
+
+		node = this.nodes.size();
+		this.nodes.add(nodeId);
+
+		if (node == this.firstOut.length) {
+			this.firstOut = Arrays.copyOf(this.firstOut, 2 * node);
+			this.firstIn = Arrays.copyOf(this.firstIn, 2 * node);
+			this.totalUploadRate = Arrays.copyOf(this.totalUploadRate, 2 * node);
+			this.totalDownloadRate = Arrays.copyOf(this.totalDownloadRate, 2 * node);
+		}
+
+		this.firstOut[node] = Bandwidth.NONE;
+		this.firstIn[node] = Bandwidth.NONE;
+		this.totalUploadRate[node] = 0;
+		this.totalDownloadRate[node] = 0;
+
+		return node;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes a peer that has no link. The last peer takes the position of the removed peer.
+	 */
+	private void removeNodeIfUnlinked(long nodeId) {
+		int node = this.nodes.indexOf(nodeId);
+		if (node == Bandwidth.NONE || this.firstOut[node] != Bandwidth.NONE || this.firstIn[node] != Bandwidth.NONE)
+			return;
+
+		int last = this.nodes.size() - 1;
+		this.nodes.remove(nodeId);
+		this.firstOut[node] = this.firstOut[last];
+		this.firstIn[node] = this.firstIn[last];
+		this.totalUploadRate[node] = this.totalUploadRate[last];
+		this.totalDownloadRate[node] = this.totalDownloadRate[last];
+	}
+
+//----------------------------------------------------------------------------------
+	private void growLinks() {
+		int capacity = 2 * this.owner.length;
+
+		this.owner = Arrays.copyOf(this.owner, capacity);
+		this.partner = Arrays.copyOf(this.partner, capacity);
+		this.uploadRate = Arrays.copyOf(this.uploadRate, capacity);
+		this.downloadRate = Arrays.copyOf(this.downloadRate, capacity);
+		this.nextOut = Arrays.copyOf(this.nextOut, capacity);
+		this.prevOut = Arrays.copyOf(this.prevOut, capacity);
+		this.nextIn = Arrays.copyOf(this.nextIn, capacity);
+		this.prevIn = Arrays.copyOf(this.prevIn, capacity);
+	}
 	
 //----------------------------------------------------------------------------------
-	public String toString() {
-		String baseNode, node;
+	public synchronized String toString() {
 		String str = new String();
-		HashMap<String, LinkRate> nodeList = new HashMap<String, LinkRate>();
 		
-		Iterator<String> bandwidthIter = this.bandwidth.keySet().iterator();
-		while (bandwidthIter.hasNext()) {
-			baseNode = bandwidthIter.next();
-			str += (PatternMatching.subSplitter + "base_node: " + baseNode + "\n");			
-			nodeList = this.bandwidth.get(baseNode);
-			Iterator<String> nodeListIter = nodeList.keySet().iterator();
-			while (nodeListIter.hasNext()) {
-				node = nodeListIter.next();
-				str += (PatternMatching.subSplitter + "node: " + node + " => BW: (" + nodeList.get(node).toString() + ")\n");
+		for (int node = 0; node < this.nodes.size(); node++) {
+			if (this.firstOut[node] == Bandwidth.NONE)
+				continue;
+
+			str += (PatternMatching.subSplitter + "base_node: " + NodeId.valueOf(this.nodes.get(node)) + "\n");			
+			for (int link = this.firstOut[node]; link != Bandwidth.NONE; link = this.nextOut[link]) {
+				LinkRate rate = new LinkRate(this.downloadRate[link], this.uploadRate[link]);
+				str += (PatternMatching.subSplitter + "node: " + NodeId.valueOf(this.partner[link]) + " => BW: (" + rate.toString() + ")\n");
 			}
 			
 			str += (PatternMatching.splitter + "\n");
@@ -314,8 +406,8 @@ public class Bandwidth {
 	 * Save the state of the bandwidth of peers in a file. The file name is specified in SicsSimConfig.BW_FILE.
 	 * @see SicsimConfig
  	 */
-	public void saveState(long currentTime) {
-		FileIO.write(this.toString(), SicsimConfig.BW_FILE);
+	public synchronized void saveState(long currentTime) {
+		FileIO.write(this.toString(), this.context.getPath(this.config.BW_FILE));
 	}
 
 //----------------------------------------------------------------------------------
@@ -323,31 +415,36 @@ public class Bandwidth {
 	 * Load the state of the bandwidth of peers from a file. The file name is specified in SicsSimConfig.BW_FILE.
 	 * @see SicsimConfig
  	 */
-	public void loadState() {
-		String node;
-		String baseNode = null;
-		LinkRate rate = new LinkRate();
+	public synchronized void loadState() {
+		NodeId node;
+		NodeId baseNode;
+		LinkRate rate;
 			
-		String str = FileIO.read(SicsimConfig.BW_FILE);
+		String str = FileIO.read(this.context.getPath(this.config.BW_FILE));
 		String[] parts = str.split(PatternMatching.splitter);
 
 		for (int i = 0; i < parts.length - 1; i++) {
-			HashMap<String , LinkRate> linkRate = new HashMap<String, LinkRate>();
 			String[] subParts = parts[i].split(PatternMatching.subSplitter);
 			
-			baseNode = PatternMatching.getNodeValue(parts[i], "base_node:").toString();
+			baseNode = PatternMatching.getNodeValue(parts[i], "base_node:");
 
 			for (int j = 2; j < subParts.length; j++) {
-				node = PatternMatching.getNodeValue(subParts[j], "node:").toString();
+				node = PatternMatching.getNodeValue(subParts[j], "node:");
 				rate = LinkRate.restore(PatternMatching.getStrValue(subParts[j], "BW:"));
-				linkRate.put(node, rate);
-			   }
-			    
-			this.bandwidth.put(baseNode, linkRate);
+				if (rate.uploadBandwidth == 0 && rate.downloadBandwidth == 0)
+					continue;
+
+				int link = this.getLink(baseNode.toLong(), node.toLong());
+				int ownerNode = this.nodes.indexOf(baseNode.toLong());
+				this.totalUploadRate[ownerNode] += rate.uploadBandwidth - this.uploadRate[link];
+				this.totalDownloadRate[ownerNode] += rate.downloadBandwidth - this.downloadRate[link];
+				this.uploadRate[link] = rate.uploadBandwidth;
+				this.downloadRate[link] = rate.downloadBandwidth;
+			}
 		}
 
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
-			System.out.println("BANDWIDTH => " + this.bandwidth);
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
+			System.out.println("BANDWIDTH => " + this.toString());
 
 	}
 }
@@ -19,6 +19,8 @@
 package sicsim.network.core;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
+import sicsim.config.SimulationInputs;
 import sicsim.types.NodeId;
 import sicsim.utils.Distribution;
 
@@ -26,6 +28,16 @@ import sicsim.utils.Distribution;
  * This class represents the core network in the system. This class creates latency in transferring messages between peers.
  */
 public class CoreNet {
+	private SicsimConfig config;
+	private SimulationInputs inputs;
+	private Distribution distribution;
+
+//----------------------------------------------------------------------------------
+	public CoreNet(SimulationContext context) {
+		this.config = context.getConfig();
+		this.inputs = context.getInputs();
+		this.distribution = context.getDistribution();
+	}
 	
 //----------------------------------------------------------------------------------
 	/**
@@ -34,7 +46,18 @@ public class CoreNet {
 	 * @param destId The node id of second peer.
 	 * @return The latency between 'srcId' and 'destId' in network.
  	 */
-	public static int getNetLatency(NodeId srcId, NodeId destId) {
-		return (Distribution.normal(SicsimConfig.NETWORK_LATENCY, 0.5, srcId.id + destId.id) + Distribution.uniform(SicsimConfig.NETWORK_LATENCY_DRIFT) + 1);
+	public int getNetLatency(NodeId srcId, NodeId destId) {
+		return (this.inputs.getNetLatency(srcId.id + destId.id) + this.distribution.uniform(this.config.NETWORK_LATENCY_DRIFT) + 1);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Return the smallest latency that getNetLatency can return for any two peers. The drift part
+	 * of the latency is at least 0.
+	 * @return The minimum latency between two peers in network.
+	 * @see SimulationInputs
+ 	 */
+	public int getMinNetLatency() {
+		return this.inputs.getMinNetLatency() + 1;
 	}
 }
@@ -18,31 +18,46 @@
 
 package sicsim.network.core;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Vector;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.core.scheduler.SicSim;
-import sicsim.types.Message;
 import sicsim.types.NodeId;
 import sicsim.utils.FileIO;
+import sicsim.utils.IndexedSet;
 import sicsim.utils.PatternMatching;
 
 /**
  * This class prepare a failure detector that helps peer to detect the failure of other peers in the overlay.
+ * The registrations are kept in both directions, as the peers registered for each peer and the peers each
+ * peer is registered for, in sets of packed node ids. Registering and unregistering are O(1), and removing
+ * a peer only visits its own registrations.
  */
 public class FailureDetector {
+	private static int INITIAL_CAPACITY = 16;
+	private static int NONE = -1;
+
 	private Network network;
 	private SicSim sim;
-	private HashMap<String, Vector<String>> registerdList = new HashMap<String, Vector<String>>();
-	private Random failureRandomTime = new Random(SicsimConfig.FAILURE_DETECTION_SEED);
+	private SimulationContext context;
+	private SicsimConfig config;
+	// the peers with a registration, with the peers registered for them and the peers they are registered
+	// for at the same position, where an empty set is null
+	private IndexedSet nodes = new IndexedSet();
+	private IndexedSet[] watchers = new IndexedSet[FailureDetector.INITIAL_CAPACITY];
+	private IndexedSet[] watched = new IndexedSet[FailureDetector.INITIAL_CAPACITY];
+	private Random failureRandomTime;
 
 //----------------------------------------------------------------------------------
 	public FailureDetector(SicSim sim, Network network) {
 		this.sim = sim;
 		this.network = network;
+		this.context = sim.getContext();
+		this.config = this.context.getConfig();
+		this.failureRandomTime = new Random(this.config.FAILURE_DETECTION_SEED);
 	}
 	
 //----------------------------------------------------------------------------------
@@ -51,22 +66,21 @@ public class FailureDetector {
 	 * @param nodeId The node id of peer of interest.
 	 * @param requesterId The node id of peer who wants to register for the peer of interest.
  	 */
-	public void register(NodeId nodeId, NodeId requesterId) {
-		Vector<String> currentList;
-		
-		if (!this.network.contains(nodeId)) {
-			this.sim.addEvent(SicsimConfig.FAILURE_DETECTOR_LATENCY + this.failureRandomTime.nextInt(SicsimConfig.FAILURE_DETECTOR_LATENCY), new NodeId(SicsimConfig.SICSSIM_NODE), requesterId, new String("FAILURE_DETECTION"), new Message(new String("NULL"), nodeId.toString()));
-		} else {
-			if (!this.registerdList.containsKey(nodeId.toString())) {
-				currentList = new Vector<String>();
-				currentList.addElement(requesterId.toString());
-			} else {
-				currentList = this.registerdList.get(nodeId.toString());
-				if (!currentList.contains(requesterId.toString()))
-					currentList.addElement(requesterId.toString());			
+	public void register(final NodeId nodeId, final NodeId requesterId) {
+		this.sim.runShared(new Runnable() {
+			public void run() {
+				registerNode(nodeId, requesterId);
 			}
-		
-			this.registerdList.put(nodeId.toString(), currentList);
+		});
+	}
+
+//----------------------------------------------------------------------------------
+	private void registerNode(NodeId nodeId, NodeId requesterId) {
+		if (!this.network.contains(nodeId)) {
+			this.sim.addFailureDetection(this.config.FAILURE_DETECTOR_LATENCY + this.failureRandomTime.nextInt(this.config.FAILURE_DETECTOR_LATENCY), requesterId, nodeId);
+		} else if (this.network.contains(requesterId)) {
+			// a requester that has already left would never be cleaned up, so it is not registered
+			this.watch(nodeId.toLong(), requesterId.toLong());
 		}
 	}
 	
@@ -76,18 +90,41 @@ public class FailureDetector {
 	 * @param nodeId The node id of peer of interest.
 	 * @param requesterId The node id of peer who wants to register for the peer of interest.
  	 */
-	public void unregister(NodeId nodeId, NodeId requesterId) {
-		Vector<String> currentList;
-		
-		if (this.registerdList.containsKey(nodeId.toString())) {
-			currentList = this.registerdList.get(nodeId.toString());
-			currentList.removeElement(requesterId.toString());
-			
-			if (currentList.size() > 0)			
-				this.registerdList.put(nodeId.toString(), currentList);
-			else
-				this.registerdList.remove(nodeId.toString());
-		}
+	public void unregister(final NodeId nodeId, final NodeId requesterId) {
+		this.sim.runShared(new Runnable() {
+			public void run() {
+				unregisterNode(nodeId, requesterId);
+			}
+		});
+	}
+
+//----------------------------------------------------------------------------------
+	private void unregisterNode(NodeId nodeId, NodeId requesterId) {
+		this.unwatch(nodeId.toLong(), requesterId.toLong());
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes the registrations of a peer that has left or failed, both for the peers it is registered for
+	 * and of the peers that are registered for it. Only the registrations of the peer are visited.
+	 * @param nodeId The node id of the peer.
+ 	 */
+	public void remove(NodeId nodeId) {
+		long id = nodeId.toLong();
+		int node = this.nodes.indexOf(id);
+		if (node == FailureDetector.NONE)
+			return;
+
+		IndexedSet watchers = this.watchers[node];
+		IndexedSet watched = this.watched[node];
+		this.watchers[node] = null;
+		this.watched[node] = null;
+		this.removeNodeIfUnused(id);
+
+		for (int i = 0; watchers != null && i < watchers.size(); i++)
+			this.unwatch(id, watchers.get(i));
+		for (int i = 0; watched != null && i < watched.size(); i++)
+			this.unwatch(watched.get(i), id);
 	}
 
 //----------------------------------------------------------------------------------
@@ -96,29 +133,117 @@ public class FailureDetector {
 	 * @param nodeId The node id of registered peer.
 	 * @return List of peers who are registered for 'nodeId'.
  	 */
-	public Vector<String> gerRegisterdNodes(NodeId nodeId) {			
-		if (this.registerdList.containsKey(nodeId.toString()))
-			return this.registerdList.get(nodeId.toString());
+	public Vector<NodeId> gerRegisterdNodes(NodeId nodeId) {			
+		int node = this.nodes.indexOf(nodeId.toLong());
+		if (node == FailureDetector.NONE || this.watchers[node] == null)
+			return null;
+
+		Vector<NodeId> registeredNodes = new Vector<NodeId>();
+		for (int i = 0; i < this.watchers[node].size(); i++)
+			registeredNodes.addElement(NodeId.valueOf(this.watchers[node].get(i)));
 			
-		return null;
+		return registeredNodes;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the packed node ids of the peers who registerd for one peer.
+	 * @param nodeId The node id of registered peer.
+	 * @return The packed node ids of the peers who are registered for 'nodeId', or null if there is no one.
+	 * @see NodeId#toLong()
+ 	 */
+	public long[] getRegisteredNodeIds(NodeId nodeId) {
+		int node = this.nodes.indexOf(nodeId.toLong());
+		if (node == FailureDetector.NONE || this.watchers[node] == null)
+			return null;
+
+		return this.watchers[node].toArray();
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Registers 'requesterId' for 'nodeId' in both directions.
+	 */
+	private void watch(long nodeId, long requesterId) {
+		int node = this.addNode(nodeId);
+		if (this.watchers[node] == null)
+			this.watchers[node] = new IndexedSet();
+		this.watchers[node].add(requesterId);
+
+		int requester = this.addNode(requesterId);
+		if (this.watched[requester] == null)
+			this.watched[requester] = new IndexedSet();
+		this.watched[requester].add(nodeId);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Unregisters 'requesterId' for 'nodeId' in both directions, and removes the peers that have no registration left.
+	 */
+	private void unwatch(long nodeId, long requesterId) {
+		int node = this.nodes.indexOf(nodeId);
+		if (node != FailureDetector.NONE && this.watchers[node] != null && this.watchers[node].remove(requesterId)) {
+			if (this.watchers[node].size() == 0)
+				this.watchers[node] = null;
+			this.removeNodeIfUnused(nodeId);
+		}
+
+		int requester = this.nodes.indexOf(requesterId);
+		if (requester != FailureDetector.NONE && this.watched[requester] != null && this.watched[requester].remove(nodeId)) {
+			if (this.watched[requester].size() == 0)
+				this.watched[requester] = null;
+			this.removeNodeIfUnused(requesterId);
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the position of a peer, and adds the peer with no registration if it is not there.
+	 */
+	private int addNode(long nodeId) {
+		int node = this.nodes.indexOf(nodeId);
+		if (node != FailureDetector.NONE)
+			return node;
+
+		node = this.nodes.size();
+		this.nodes.add(nodeId);
+
+		if (node == this.watchers.length) {
+			this.watchers = Arrays.copyOf(this.watchers, 2 * node);
+			this.watched = Arrays.copyOf(this.watched, 2 * node);
+		}
+
+		return node;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes a peer that has no registration. The last peer takes the position of the removed peer.
+	 */
+	private void removeNodeIfUnused(long nodeId) {
+		int node = this.nodes.indexOf(nodeId);
+		if (node == FailureDetector.NONE || this.watchers[node] != null || this.watched[node] != null)
+			return;
+
+		int last = this.nodes.size() - 1;
+		this.nodes.remove(nodeId);
+		this.watchers[node] = this.watchers[last];
+		this.watched[node] = this.watched[last];
+		this.watchers[last] = null;
+		this.watched[last] = null;
 	}
 	
 //----------------------------------------------------------------------------------
 	public String toString() {
-		String baseNode, node;
 		String str = new String();
-		Vector<String> registeredNodeList;
 		
-		Iterator<String> nodeIter = this.registerdList.keySet().iterator();
-		while (nodeIter.hasNext()) {
-			baseNode = nodeIter.next();
-			str += (PatternMatching.subSplitter + "base_node: " + baseNode + "\n");			
-			registeredNodeList = this.registerdList.get(baseNode);
-			Iterator<String> nodeListIter = registeredNodeList.iterator();
-			while (nodeListIter.hasNext()) {
-				node = nodeListIter.next();
-				str += (PatternMatching.subSplitter + "node: " + node + "\n");
-			}
+		for (int node = 0; node < this.nodes.size(); node++) {
+			if (this.watchers[node] == null)
+				continue;
+
+			str += (PatternMatching.subSplitter + "base_node: " + NodeId.valueOf(this.nodes.get(node)) + "\n");			
+			for (int i = 0; i < this.watchers[node].size(); i++)
+				str += (PatternMatching.subSplitter + "node: " + NodeId.valueOf(this.watchers[node].get(i)) + "\n");
 			
 			str += (PatternMatching.splitter + "\n");
 		}
@@ -132,7 +257,7 @@ public class FailureDetector {
 	 * @see SicsimConfig
  	 */
 	public void saveState(long currentTime) {
-		FileIO.write(this.toString(), SicsimConfig.FAILURE_DETECTOR_FILE);
+		FileIO.write(this.toString(), this.context.getPath(this.config.FAILURE_DETECTOR_FILE));
 	}
 
 //----------------------------------------------------------------------------------
@@ -141,28 +266,25 @@ public class FailureDetector {
 	 * @see SicsimConfig
  	 */
 	public void loadState() {
-		String node;
-		String baseNode = null;
+		NodeId node;
+		NodeId baseNode;
 			
-		String str = FileIO.read(SicsimConfig.FAILURE_DETECTOR_FILE);
+		String str = FileIO.read(this.context.getPath(this.config.FAILURE_DETECTOR_FILE));
 		String[] parts = str.split(PatternMatching.splitter);
 
 		for (int i = 0; i < parts.length - 1; i++) {
-			Vector<String> registeredNodeList = new Vector<String>();
 			String[] subParts = parts[i].split(PatternMatching.subSplitter);
 			
-			baseNode = PatternMatching.getNodeValue(parts[i], "base_node:").toString();
+			baseNode = PatternMatching.getNodeValue(parts[i], "base_node:");
 
 			for (int j = 2; j < subParts.length; j++) {
-				node = PatternMatching.getNodeValue(subParts[j], "node:").toString();
-				registeredNodeList.addElement(node);
+				node = PatternMatching.getNodeValue(subParts[j], "node:");
+				this.watch(baseNode.toLong(), node.toLong());
 			   }
-			    
-			this.registerdList.put(baseNode, registeredNodeList);
 		}
 
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
-			System.out.println("BANDWIDTH => " + this.registerdList);
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
+			System.out.println("FAILURE_DETECTOR => " + this.toString());
 
 	}
 
@@ -19,11 +19,17 @@
 package sicsim.network.core;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 
 /**
  * This is an abstract class that provides a global view to the whole peers in system.
  */
 public abstract class Monitor {
+	/**
+	 * The context of the simulation. The files written by the monitor should be placed by 'context.getPath'.
+	 */
+	protected SimulationContext context;
+
 	/**
 	 * Monitor access to all peers in the system through 'network'. The peers in 'network' may not be a member of overlay network.
 	 */
@@ -43,7 +49,8 @@ public abstract class Monitor {
 	/**
 	 * Initialize the monitor
 	 */
-	public void init(Network network, OverlayNetwork overlay, Bandwidth bandwidth) {
+	public void init(SimulationContext context, Network network, OverlayNetwork overlay, Bandwidth bandwidth) {
+		this.context = context;
 		this.network = network;
 		this.overlay = overlay;
 		this.bandwidth = bandwidth;
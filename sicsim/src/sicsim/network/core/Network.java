@@ -18,12 +18,12 @@
 
 package sicsim.network.core;
 
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.Random;
 import java.util.Vector;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.core.scheduler.SicSim;
 import sicsim.network.links.AbstractLink;
 import sicsim.network.peers.AbstractPeer;
@@ -36,29 +36,38 @@ import sicsim.utils.*;
  */
 public class Network {
 	private SicSim sim;
+	private SimulationContext context;
+	private SicsimConfig config;
 	private CoreNet coreNet;
 	private Bandwidth bandwidth;
-	private Hashtable<Integer, Integer> idIpList = new Hashtable<Integer, Integer>();
-	private Hashtable<String, AbstractPeer> network = new Hashtable<String, AbstractPeer>();
+	// the peers are keyed by their id, which is unique in the network
+	private IntHashMap<AbstractPeer> network = new IntHashMap<AbstractPeer>();
+	// the ids of the peers in a dense array, for drawing a random peer in O(1)
+	private IndexedSet ids = new IndexedSet();
 	
 	// Random number generator
-	private RandomSet randomSet = new RandomSet(0, SicsimConfig.MAX_NODE, SicsimConfig.NETWORK_SEED);
+	private RandomSet randomSet;
 	private RandomSet[] skewedRandomSet;
 	
 	// Random IP generator
-	private Random randomIp = new Random(7 * SicsimConfig.NETWORK_SEED);	
-	private Random networkRand = new Random(SicsimConfig.NETWORK_SEED);
+	private Random randomIp;
+	private Random networkRand;
 	
 //----------------------------------------------------------------------------------
 	public Network(SicSim sim, Bandwidth bandwidth, CoreNet coreNet) {
 		this.sim = sim;
 		this.bandwidth = bandwidth;
 		this.coreNet = coreNet;
+		this.context = sim.getContext();
+		this.config = this.context.getConfig();
+		this.randomSet = new RandomSet(0, this.config.MAX_NODE, this.config.NETWORK_SEED);
+		this.randomIp = new Random(7 * this.config.NETWORK_SEED);
+		this.networkRand = new Random(this.config.NETWORK_SEED);
 		
-		if (SicsimConfig.SKEWED) {
-			this.skewedRandomSet = new RandomSet[2 * SicsimConfig.NUM_OF_CLUSTER];
-			for (int i = 0; i < 2 * SicsimConfig.NUM_OF_CLUSTER; i++) {
-				this.skewedRandomSet[i] = new RandomSet(i * (SicsimConfig.MAX_NODE / (2 * SicsimConfig.NUM_OF_CLUSTER)), (i + 1) * (SicsimConfig.MAX_NODE / (2 * SicsimConfig.NUM_OF_CLUSTER)), SicsimConfig.NETWORK_SEED);
+		if (this.config.SKEWED) {
+			this.skewedRandomSet = new RandomSet[2 * this.config.NUM_OF_CLUSTER];
+			for (int i = 0; i < 2 * this.config.NUM_OF_CLUSTER; i++) {
+				this.skewedRandomSet[i] = new RandomSet(i * (this.config.MAX_NODE / (2 * this.config.NUM_OF_CLUSTER)), (i + 1) * (this.config.MAX_NODE / (2 * this.config.NUM_OF_CLUSTER)), this.config.NETWORK_SEED);
 			}
 		}
 	}
@@ -70,8 +79,8 @@ public class Network {
 	 * @param node An instance of AbstractPeer that specifies the peer's properties.
  	 */
 	public void add(NodeId nodeId, AbstractPeer node) {
-		this.network.put(nodeId.toString(), node);
-		this.idIpList.put(new Integer(nodeId.id), new Integer(nodeId.ip));
+		this.network.put(nodeId.id, node);
+		this.ids.add(nodeId.id);
 	}
 	
 //----------------------------------------------------------------------------------
@@ -80,8 +89,10 @@ public class Network {
 	 * @param nodeId Specifies the node id of the peer.
  	 */
 	public void remove(NodeId nodeId) {
-		this.network.remove(nodeId.toString());
-		this.idIpList.remove(new Integer(nodeId.id));
+		if (this.getNode(nodeId) != null) {
+			this.network.remove(nodeId.id);
+			this.ids.remove(nodeId.id);
+		}
 		this.bandwidth.remove(nodeId);
 	}
 	
@@ -95,7 +106,26 @@ public class Network {
 		if (nodeId == null)
 			return null;
 		
-		return this.network.get(nodeId.toString());
+		AbstractPeer node = this.network.get(nodeId.id);
+		if (node == null || node.getId().ip != nodeId.ip)
+			return null;
+
+		return node;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the peer whose packed node id is 'packedNodeId'.
+	 * @param packedNodeId Specifies the packed node id of the peer.
+	 * @return The peer, or if the peer is not exist returns null.		
+	 * @see NodeId#toLong()
+ 	 */
+	public AbstractPeer getNode(long packedNodeId) {
+		AbstractPeer node = this.network.get((int)(packedNodeId >> 32));
+		if (node == null || node.getId().ip != (int)packedNodeId)
+			return null;
+
+		return node;
 	}
 
 //----------------------------------------------------------------------------------
@@ -114,7 +144,7 @@ public class Network {
 	 * @return 'true' if the peer with node id of 'nodeId' is available in the network or 'false' if it is not.		
  	 */
 	public boolean contains(NodeId nodeId) {
-		return this.network.containsKey(nodeId.toString());
+		return (this.getNode(nodeId) != null);
 	}
 
 //----------------------------------------------------------------------------------
@@ -124,7 +154,7 @@ public class Network {
 	 * @return 'true' if the peer with id of 'id' is available in the network or 'false' if it is not.		
  	 */
 	private boolean contains(int id) {
-		return this.idIpList.containsKey(new Integer(id));
+		return this.network.containsKey(id);
 	}
 
 //----------------------------------------------------------------------------------
@@ -134,9 +164,9 @@ public class Network {
  	 */
 	public NodeId generateUniqeNodeId() {
 		int id;
-		int ip = this.randomIp.nextInt(SicsimConfig.MAX_NODE);
+		int ip = this.randomIp.nextInt(this.config.MAX_NODE);
 		
-		if (!SicsimConfig.SKEWED) {
+		if (!this.config.SKEWED) {
 			id = this.randomSet.addInt();
 		
 			while (this.contains(id)) {
@@ -144,7 +174,7 @@ public class Network {
 				id = this.randomSet.addInt();
 			}
 		} else {
-			int cluster = Distribution.cluster(SicsimConfig.NUM_OF_CLUSTER, SicsimConfig.PROB_OF_CLUSTER);
+			int cluster = this.context.getDistribution().cluster(this.config.NUM_OF_CLUSTER, this.config.PROB_OF_CLUSTER);
 			id = this.skewedRandomSet[cluster].addInt();
 			
 			while (this.contains(id)) {
@@ -154,7 +184,7 @@ public class Network {
 		}
 		
 		
-		return new NodeId(id, ip);		
+		return NodeId.valueOf(id, ip);		
 	}
 	
 //----------------------------------------------------------------------------------
@@ -163,16 +193,9 @@ public class Network {
 	 * @return A random nodeId from the network.		
  	 */
     public NodeId getRandomNodeIdFromNetwork() {
-		int count = 0;
-		int randomIndex = this.networkRand.nextInt(this.network.size());
-		Enumeration<String> netEnum = this.network.keys();
-
-		while (netEnum.hasMoreElements() && count < randomIndex) {
-			netEnum.nextElement();
-			count++;
-		}
+		int randomIndex = this.networkRand.nextInt(this.ids.size());
 		
-		return this.network.get(netEnum.nextElement()).getId();
+		return this.network.get((int)this.ids.get(randomIndex)).getId();
     }
 
 //----------------------------------------------------------------------------------
@@ -182,38 +205,42 @@ public class Network {
  	 */
 	public Vector<NodeId> getNodes() {
 
-		Vector<NodeId> nodeList = new Vector<NodeId>();
-		Integer id;
-		Integer ip;
+		Vector<NodeId> nodeList = new Vector<NodeId>(this.network.size());
 		
-		Enumeration<Integer> idipListEnum = this.idIpList.keys();
-		while(idipListEnum.hasMoreElements()) {
-			id = idipListEnum.nextElement();
-			ip = idIpList.get(id);
-			nodeList.add(new NodeId(id, ip));
-		}
+		Iterator<AbstractPeer> netIter = this.network.values();
+		while (netIter.hasNext())
+			nodeList.add(netIter.next().getId());
 
 		return nodeList;
 	}
 	
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the peers of the network.
+	 * @return An iterator over the peers of the network, which must not be used after the network is changed.
+	 */
+	public Iterator<AbstractPeer> getPeers() {
+		return this.network.values();
+	}
+
 //----------------------------------------------------------------------------------
 	/**
 	 * This method is periodically called by simulator in each time unit if SicsSimConfig.SYNC_UPDATE is 'true'.
 	 * @param currentTime Current time of simulator.
  	 */
 	public void updateNetwork(long currentTime) {
-		Enumeration<String> netEnum = this.network.keys();
-		while (netEnum.hasMoreElements())
-			this.network.get(netEnum.nextElement()).syncMethod(currentTime);
+		Iterator<AbstractPeer> netIter = this.network.values();
+		while (netIter.hasNext())
+			netIter.next().syncMethod(currentTime);
 	}
 
 //----------------------------------------------------------------------------------
 	public String toString() {
 		String str = new String("Network: ");
 		
-		Enumeration<String> netEnum = this.network.keys();
-		while (netEnum.hasMoreElements())
-			str += (netEnum.nextElement() + " ");
+		Iterator<AbstractPeer> netIter = this.network.values();
+		while (netIter.hasNext())
+			str += (netIter.next().getId() + " ");
 		
 		return str;
 	}
@@ -226,13 +253,13 @@ public class Network {
 	public void saveState(long currentTime) {
 		String str = new String();
 		
-		Enumeration<String> netEnum = this.network.keys();
-		while (netEnum.hasMoreElements()) {
-			str += this.network.get(netEnum.nextElement()).toString();
+		Iterator<AbstractPeer> netIter = this.network.values();
+		while (netIter.hasNext()) {
+			str += netIter.next().toString();
 			str += PatternMatching.peerSplitter + "\n";
 		}
 		
-		FileIO.append(str, SicsimConfig.NETWORK_FILE);
+		FileIO.append(str, this.context.getPath(this.config.NETWORK_FILE));
 	}
 	
 //----------------------------------------------------------------------------------
@@ -249,7 +276,7 @@ public class Network {
 		int downloadBw;
 		String peerLocalInfo = new String();
 		
-		String str = FileIO.read(SicsimConfig.NETWORK_FILE);
+		String str = FileIO.read(this.context.getPath(this.config.NETWORK_FILE));
 		String[] parts = str.split(PatternMatching.peerSplitter);
 		try {
 			for (int i = 0; i < parts.length - 1; i++) {
@@ -265,10 +292,10 @@ public class Network {
 				if (node instanceof BandwidthPeer) {
 					uploadBw = PatternMatching.getIntValue(parts[i], "upload:");
 					downloadBw = PatternMatching.getIntValue(parts[i], "download:");
-					((BandwidthPeer)node).init(nodeId, link, this.bandwidth, failureDetector, overlay, monitor, uploadBw, downloadBw);
+					((BandwidthPeer)node).init(this.context, nodeId, link, this.bandwidth, failureDetector, overlay, monitor, uploadBw, downloadBw);
 					
 				} else
-					node.init(nodeId, link, this.bandwidth, failureDetector, overlay, monitor);
+					node.init(this.context, nodeId, link, this.bandwidth, failureDetector, overlay, monitor);
 				
 				link.init(nodeId, linkLatency, this.sim, this, this.coreNet);
 	
@@ -18,26 +18,39 @@
 
 package sicsim.network.core;
 
-import java.util.Iterator;
+import java.util.AbstractList;
+import java.util.List;
 import java.util.Random;
-import java.util.Vector;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
+import sicsim.core.scheduler.SicSim;
 import sicsim.types.NodeId;
+import sicsim.utils.Distribution;
 import sicsim.utils.FileIO;
+import sicsim.utils.IndexedSet;
 import sicsim.utils.PatternMatching;
 
 /**
  * This class provides a platform that contains all the peers have joined the overlay network.
+ * The members are kept by their packed node ids in an indexed set, so adding, removing and
+ * finding a peer, and drawing a random peer, are O(1).
  */
 public class OverlayNetwork {
+	private SicSim sim;
+	private SimulationContext context;
+	private SicsimConfig config;
 	private Network network;
-	private Vector<String> overlay = new Vector<String>();
-	private Random networkRand = new Random(SicsimConfig.NETWORK_SEED);
+	private IndexedSet overlay = new IndexedSet();
+	private Random networkRand;
 	
 //----------------------------------------------------------------------------------
-	public OverlayNetwork(Network network) {
+	public OverlayNetwork(SicSim sim, Network network) {
+		this.sim = sim;
 		this.network = network;
+		this.context = sim.getContext();
+		this.config = this.context.getConfig();
+		this.networkRand = new Random(this.config.NETWORK_SEED);
 	}	
 
 //----------------------------------------------------------------------------------
@@ -45,9 +58,12 @@ public class OverlayNetwork {
 	 * Adds the peer with specified node id into the overlay network.
 	 * @param nodeId Specifies the node id of the peer.
  	 */
-	public void add(NodeId nodeId) {
-		if (!this.overlay.contains(nodeId.toString()))
-			this.overlay.addElement(nodeId.toString());
+	public void add(final NodeId nodeId) {
+		this.sim.runShared(new Runnable() {
+			public void run() {
+				overlay.add(nodeId.toLong());
+			}
+		});
 	}
 
 //----------------------------------------------------------------------------------
@@ -55,9 +71,12 @@ public class OverlayNetwork {
 	 * Removes the peer with specified node id from the overlay network.
 	 * @param nodeId Specifies the node id of the peer.
  	 */
-	public void remove(NodeId nodeId) {
-		if (this.overlay.contains(nodeId.toString()))
-			this.overlay.removeElement(nodeId.toString());
+	public void remove(final NodeId nodeId) {
+		this.sim.runShared(new Runnable() {
+			public void run() {
+				removeNode(nodeId.toLong());
+			}
+		});
 	}
 	
 //----------------------------------------------------------------------------------
@@ -66,17 +85,34 @@ public class OverlayNetwork {
 	 * @param nodeId Specifies the node id of the peer.
 	 * @return 'true' if the peer with node id of 'nodeId' is available in the overlay network or 'false' if it is not.		
  	 */
-	public boolean contains(NodeId nodeId) {
-		return this.overlay.contains(nodeId.toString());
+	public synchronized boolean contains(NodeId nodeId) {
+		return this.overlay.contains(nodeId.toLong());
+	}
+
+//----------------------------------------------------------------------------------
+	private synchronized void removeNode(long packedNodeId) {
+		this.overlay.remove(packedNodeId);
 	}
 
 //----------------------------------------------------------------------------------
 	/**
-	 * Returns the list of node ids of pees in the overlay network.
+	 * Returns the list of node ids of pees in the overlay network. The list is a read-only snapshot:
+	 * it keeps the packed node ids of the peers at the time of the call and creates the node ids
+	 * when they are read, so it does not change when peers join or leave the overlay afterwards.
 	 * @return List of peers' node id in the network.		
  	 */
-	public Vector<String> getNodes() {
-		return this.overlay;
+	public synchronized List<NodeId> getNodes() {
+		final long[] nodes = this.overlay.toArray();
+
+		return new AbstractList<NodeId>() {
+			public NodeId get(int index) {
+				return NodeId.valueOf(nodes[index]);
+			}
+
+			public int size() {
+				return nodes.length;
+			}
+		};
 	}
 
 //----------------------------------------------------------------------------------
@@ -93,36 +129,8 @@ public class OverlayNetwork {
 	 * Returns a random node id from the existing peers in the overlay network whose node id is different from 'nodeId'.
 	 * @return A random nodeId from the overlay network whose node id is different frm 'nodeId'.
  	 */
-    public NodeId getRandomNodeIdFromNetwork(NodeId nodeId) {
-		int count = 0;
-		String randomNode = new String();
-		Iterator<String> netIter;
-		
-		if (this.overlay.size() <= 1)
-			return null;
-
-		netIter = this.overlay.iterator();
-		while (netIter.hasNext()) {
-			randomNode = netIter.next();
-			if (!this.network.contains(new NodeId(randomNode)))
-				this.overlay.removeElement(randomNode);
-		}
-
-		while (true) {
-			count = 0;
-			netIter = this.overlay.iterator();
-			int randomIndex = this.networkRand.nextInt(this.overlay.size());
-			while (netIter.hasNext() && count <= randomIndex) {
-				randomNode = netIter.next();
-				count++;
-			}
-			
-			if (!nodeId.equals(randomNode))
-				break;
-		}
-		
-		return new NodeId(randomNode);
-
+    public synchronized NodeId getRandomNodeIdFromNetwork(NodeId nodeId) {
+		return this.getRandomNode(nodeId);
     }
 
 //----------------------------------------------------------------------------------
@@ -130,42 +138,52 @@ public class OverlayNetwork {
 	 * Returns a random node id from the existing peers in the overlay network.
 	 * @return A random nodeId from the overlay network.
  	 */
-    public NodeId getRandomNodeIdFromNetwork() {
-		int count = 0;
-		String randomNode = new String();
-		Iterator<String> netIter;
-		
-		if (this.overlay.size() < 1)
-			return null;
-
-		netIter = this.overlay.iterator();
-		while (netIter.hasNext()) {
-			randomNode = netIter.next();
-			if (!this.network.contains(new NodeId(randomNode)))
-				this.overlay.removeElement(randomNode);
-		}
+    public synchronized NodeId getRandomNodeIdFromNetwork() {
+		return this.getRandomNode(null);
+    }
 
-		netIter = this.overlay.iterator();
-		int randomIndex = this.networkRand.nextInt(this.overlay.size());
-		while (netIter.hasNext() && count <= randomIndex) {
-			randomNode = netIter.next();
-			count++;
-		}
-			
-		return new NodeId(randomNode);
+//----------------------------------------------------------------------------------
+	/**
+	 * Draws a random peer of the overlay network other than 'excluded' in O(1). If 'excluded' is in
+	 * the overlay, a position is drawn among all the others but the last one, and the last peer takes
+	 * the place of 'excluded' if it is drawn. The peers that are not in the network anymore are removed
+	 * from the overlay when they are drawn, and the draw is repeated.
+	 */
+	private NodeId getRandomNode(NodeId excluded) {
+		while (true) {
+			int size = this.overlay.size();
+			long excludedId = 0;
+			int last = size;
+
+			if (excluded != null) {
+				if (size <= 1)
+					return null;
+
+				excludedId = excluded.toLong();
+				if (this.overlay.contains(excludedId))
+					last = size - 1;
+			} else if (size < 1) {
+				return null;
+			}
 
-    }
+			long randomNode = this.overlay.get(Distribution.getRandom(this.networkRand).nextInt(last));
+			if (excluded != null && randomNode == excludedId)
+				randomNode = this.overlay.get(last);
+
+			NodeId randomId = NodeId.valueOf(randomNode);
+			if (this.network.contains(randomId))
+				return randomId;
+
+			this.removeNode(randomNode);
+		}
+	}
     
   //----------------------------------------------------------------------------------
 	public String toString() {
-		String node;
 		String str = new String();
 		
-		Iterator<String> nodeIter = this.overlay.iterator();
-		while (nodeIter.hasNext()) {
-			node = nodeIter.next();
-			str += (PatternMatching.subSplitter + "node: " + node + "\n");
-		}
+		for (int i = 0; i < this.overlay.size(); i++)
+			str += (PatternMatching.subSplitter + "node: " + NodeId.valueOf(this.overlay.get(i)) + "\n");
 
 		return str;
 		
@@ -177,7 +195,7 @@ public class OverlayNetwork {
 	 * @see SicsimConfig
  	 */
 	public void saveState(long currentTime) {
-		FileIO.write(this.toString(), SicsimConfig.OVERLAY_FILE);		
+		FileIO.write(this.toString(), this.context.getPath(this.config.OVERLAY_FILE));		
 	}
 	
 //----------------------------------------------------------------------------------
@@ -186,18 +204,18 @@ public class OverlayNetwork {
 	 * @see SicsimConfig
  	 */
 	public void loadState() {
-		String node;
+		NodeId nodeId;
 			
-		String str = FileIO.read(SicsimConfig.OVERLAY_FILE);
+		String str = FileIO.read(this.context.getPath(this.config.OVERLAY_FILE));
 		String[] parts = str.split(PatternMatching.subSplitter);
 			
 		for (int i = 1; i < parts.length; i++) {
-			node = PatternMatching.getNodeValue(parts[i], "node:").toString();
-			this.overlay.add(node);
+			nodeId = PatternMatching.getNodeValue(parts[i], "node:");
+			this.overlay.add(nodeId.toLong());
 		}
 
-		if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
-			System.out.println("OVERLAY => " + this.overlay);
+		if (this.config.LOG_SIM && this.config.LOG_LEVEL >= SicsimConfig.LOG_DEBUG)
+			System.out.println("OVERLAY => " + this.getNodes());
 
 	}
 }
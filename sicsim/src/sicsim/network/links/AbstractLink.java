@@ -19,6 +19,9 @@
 package sicsim.network.links;
 
 import sicsim.config.SicsimConfig;
+import sicsim.core.scheduler.EventHandle;
+import sicsim.core.scheduler.EventType;
+import sicsim.core.scheduler.PeriodicTimer;
 import sicsim.core.scheduler.SicSim;
 import sicsim.network.core.CoreNet;
 import sicsim.network.core.Network;
@@ -60,9 +63,47 @@ public abstract class AbstractLink {
 	 * Send a message to itself.
 	 * @param msg The message to be sent to the destination peer.
 	 * @param time The delay that this message will be received by the peer.
+	 * @return The handle of the message, which can be given to cancelLoopback.
 	 */
-	public void loopback(Message msg, long time) {
-		this.sim.addEvent(time, this.nodeId, this.nodeId, new String("MSG"), msg);
+	public EventHandle loopback(Message msg, long time) {
+		return this.sim.addCancellableEvent(time, this.nodeId, this.nodeId, EventType.MSG, msg);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels a message that the peer has sent to itself.
+	 * @param handle The handle of the message, which is returned by loopback.
+	 * @return 'true' if the message is cancelled, or 'false' if it is already received or cancelled, or it is not sent to this peer.
+	 */
+	public boolean cancelLoopback(EventHandle handle) {
+		if (!this.nodeId.equals(handle.getDestId()))
+			return false;
+
+		return this.sim.cancelEvent(handle);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Starts a periodic timer that sends the same message to the peer every 'period' time units.
+	 * @param period The period of the timer.
+	 * @param msg The message to be sent to the peer at every tick.
+	 * @return The timer, which can be given to cancelPeriodic.
+	 */
+	public PeriodicTimer schedulePeriodic(long period, Message msg) {
+		return this.sim.schedulePeriodic(this.nodeId, period, msg);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Stops a periodic timer of the peer.
+	 * @param timer The timer, which is returned by schedulePeriodic.
+	 * @return 'true' if the timer is stopped, or 'false' if it is already stopped or it is not a timer of this peer.
+	 */
+	public boolean cancelPeriodic(PeriodicTimer timer) {
+		if (!this.nodeId.equals(timer.getNodeId()))
+			return false;
+
+		return this.sim.cancelPeriodic(timer);
 	}
 
 //----------------------------------------------------------------------------------
@@ -71,7 +112,7 @@ public abstract class AbstractLink {
 	 * @param msg The message to be sent to the destination peer.
 	 */
 	public void sendSim(Message msg) {
-		this.sim.addEvent(0, this.nodeId, new NodeId(SicsimConfig.SICSSIM_NODE), new String("SIM_MSG"), msg);
+		this.sim.addEvent(0, this.nodeId, SicsimConfig.SICSSIM_NODE_ID, EventType.SIM_MSG, msg);
 	}
 
 //----------------------------------------------------------------------------------	
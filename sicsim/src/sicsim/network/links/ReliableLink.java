@@ -18,8 +18,8 @@
 
 package sicsim.network.links;
 
-import sicsim.config.SicsimConfig;
-import sicsim.network.core.CoreNet;
+import sicsim.core.scheduler.EventType;
+import sicsim.network.peers.AbstractPeer;
 import sicsim.types.Message;
 import sicsim.types.NodeId;
 /**
@@ -35,20 +35,23 @@ public class ReliableLink extends AbstractLink {
 	 * @param msg The message to be sent to the destination peer.
 	 */
 	public void send(NodeId destId, Message msg) {
-		this.sim.addEvent(this.totalLatency(destId), this.nodeId, destId, new String("MSG"), msg);				
+		AbstractPeer destNode = this.network.getNode(destId);
+
+		// a message to a peer that is not in the network would only be dropped when it is delivered
+		if (destNode == null) {
+			this.sim.dropEvent(this.nodeId, destId, msg);
+			return;
+		}
+
+		this.sim.addEvent(this.totalLatency(destNode), this.nodeId, destId, EventType.MSG, msg);				
 	}
 	
 //----------------------------------------------------------------------------------	
-	private int totalLatency(NodeId destId) {
+	private int totalLatency(AbstractPeer destNode) {
 		int srcLinkLatency = this.linkLatency;
-
-		if (this.network.getNode(destId) != null) {
-			int destLinkLatency = this.network.getNode(destId).getLinkLatency();
-			int netLatency = CoreNet.getNetLatency(nodeId, destId);
+		int destLinkLatency = destNode.getLinkLatency();
+		int netLatency = this.coreNet.getNetLatency(this.nodeId, destNode.getId());
 			
-			return (srcLinkLatency + destLinkLatency + netLatency);
-		}
-		else 
-			return SicsimConfig.FAILURE_DETECTOR_MAX_TIME;
+		return (srcLinkLatency + destLinkLatency + netLatency);
 	}
 }
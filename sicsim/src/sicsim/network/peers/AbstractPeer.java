@@ -18,10 +18,15 @@
 
 package sicsim.network.peers;
 
+import java.lang.invoke.MethodHandle;
 import java.util.HashMap;
 import java.util.Iterator;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
+import sicsim.core.scheduler.EventHandle;
+import sicsim.core.scheduler.PeerStream;
+import sicsim.core.scheduler.PeriodicTimer;
 import sicsim.network.core.Bandwidth;
 import sicsim.network.core.Monitor;
 import sicsim.network.core.OverlayNetwork;
@@ -35,6 +40,11 @@ import sicsim.utils.PatternMatching;
  * Peers simulated in the system have to implement this abstract class
  */
 public abstract class AbstractPeer {
+	/**
+	 * The context of the simulation that the peer belongs to. The peer can get the configuration and the distributions of the simulation through 'context'.
+	 */
+	protected SimulationContext context;
+
 	/**
 	 * The node id of the peer.
 	 */
@@ -66,15 +76,28 @@ public abstract class AbstractPeer {
 	protected Monitor monitor;
 	
 	/**
-	 * 	An array for listening to all event types that peer can listen to
+	 * 	An array for listening to all event types that peer can listen to. It is created by the first
+	 * 	addEventListener, since most peers only use the handlers declared by MessageHandler. The subclasses
+	 * 	use it through addEventListener, removeEventListener and getEventListener.
+	 */
+	private HashMap<String, PeerEventListener> listeners;
+
+	/**
+	 * The handlers of the class of the peer, which are declared by MessageHandler and shared by all the peers of the class.
+	 */
+	private HandlerTable handlerTable;
+
+	/**
+	 * The streams of the peer, which are kept by the simulator.
 	 */
-	protected HashMap<String, PeerEventListener> listeners = new HashMap<String, PeerEventListener>();
+	private final PeerStream stream = new PeerStream();
 
 //----------------------------------------------------------------------------------
 	/**
 	 * Initialize the peer.
 	 */
-	public void init(NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor) {
+	public void init(SimulationContext context, NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor) {
+		this.context = context;
 		this.nodeId = nodeId;
 		this.link = link;
 		this.bandwidth = bandwidth;
@@ -82,6 +105,7 @@ public abstract class AbstractPeer {
 		this.overlay = overlay;
 		this.monitor = monitor;
 	
+		this.handlerTable = HandlerTable.of(this.getClass());
 		this.registerEvents();
 	}
 
@@ -118,12 +142,68 @@ public abstract class AbstractPeer {
 //----------------------------------------------------------------------------------
 	/**
 	 * Receive a message from another peer. Called by the simulator when a message is received
-	 * for this peer. This is an abstract method.
+	 * for this peer. By default it dispatches the message to its handler.
+	 * @param srcId Node id of message source.
+	 * @param msg The message that source has sent.
+	 * @param currentTime The current time of the system.
+	 */
+	public void receive(NodeId srcId, Message msg, long currentTime) {
+		if (!this.dispatch(srcId, msg) && this.context.getConfig().LOG_SIM && this.context.getConfig().LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+			System.out.println("PEER => " + this.nodeId + " has no handler for " + msg.type);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Calls the handler of a message. The handlers declared by MessageHandler in the class of the peer
+	 * are found by the code of the message, or by its type if it has no code, in a table that is shared
+	 * by all the peers of the class. The listeners added by addEventListener are used for the other types.
 	 * @param srcId Node id of message source.
 	 * @param msg The message that source has sent.
+	 * @return 'true' if the message has a handler, otherwise returns 'false'.
+	 * @see MessageHandler
+	 */
+	protected boolean dispatch(NodeId srcId, Message msg) {
+		MethodHandle handler = this.handlerTable.get(msg);
+
+		if (handler != null) {
+			try {
+				handler.invokeExact(this, srcId, msg);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+
+			return true;
+		}
+
+		PeerEventListener listener = this.getEventListener(msg.type);
+		if (listener == null)
+			return false;
+
+		listener.receivedEvent(srcId, msg);
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Receives the messages that have arrived for this peer at the same time. It is called instead of
+	 * receive by the 'batched' engine, and by default it calls receive for each message in order.
+	 * A peer can override it to handle the messages of a time together. The arrays are reused by
+	 * the simulator after the call, so they must not be kept.
+	 * @param srcIds Node ids of the sources of the messages.
+	 * @param msgs The messages, in the order they have arrived.
+	 * @param count The number of messages, which are at the beginning of the arrays.
 	 * @param currentTime The current time of the system.
+	 * @see SicsimConfig
 	 */
-	public abstract void receive(NodeId srcId, Message msg, long currentTime);
+	public void receiveBatch(NodeId[] srcIds, Message[] msgs, int count, long currentTime) {
+		for (int i = 0; i < count; i++)
+			this.receive(srcIds[i], msgs[i], currentTime);
+	}
 
 //----------------------------------------------------------------------------------
 	/**
@@ -157,9 +237,11 @@ public abstract class AbstractPeer {
 
 //----------------------------------------------------------------------------------
 	/**
-	 * Registers the handler for receiving messages. This is an abstract method.
+	 * Registers the listeners for receiving messages. It is called when the peer is initialized, and
+	 * by default it does nothing, since the handlers can also be declared by MessageHandler.
 	 */
-    protected abstract void registerEvents();	
+    protected void registerEvents() {
+    }
 	
 //----------------------------------------------------------------------------------
 	/**
@@ -168,6 +250,8 @@ public abstract class AbstractPeer {
      * @param listener The listener for event.
 	 */
     protected void addEventListener(String eventType, PeerEventListener listener) {     
+    	if (this.listeners == null)
+    		this.listeners = new HashMap<String, PeerEventListener>();
     	this.listeners.put(eventType, listener);
     }
 
@@ -177,7 +261,21 @@ public abstract class AbstractPeer {
      * @param eventType event to unsubscribe from.
      */
     protected void removeEventListener(String eventType) {     
-    	this.listeners.remove(eventType);
+    	if (this.listeners != null)
+    		this.listeners.remove(eventType);
+    }
+
+//----------------------------------------------------------------------------------
+    /**
+     * Returns the listener of an event.
+     * @param eventType The event.
+     * @return The listener that is added for the event, or null if there is no listener.
+     */
+    protected PeerEventListener getEventListener(String eventType) {     
+    	if (this.listeners == null)
+    		return null;
+
+    	return this.listeners.get(eventType);
     }
     
 //----------------------------------------------------------------------------------
@@ -195,9 +293,44 @@ public abstract class AbstractPeer {
 	 * A peer can send a message to itself by calling this method.
 	 * @param msg The message that peer sends to itself.
 	 * @param time The delay that this message will be received by the peer.
+	 * @return The handle of the message, which can be given to cancelTimer.
+	 */
+    protected EventHandle loopback(Message msg, long time) {
+		return this.link.loopback(msg, time);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Cancels a message that the peer has sent to itself by loopback, e.g. a timeout that is not needed anymore.
+	 * @param handle The handle that is returned by loopback.
+	 * @return 'true' if the message is cancelled, or 'false' if it is already received or cancelled.
+	 */
+    protected boolean cancelTimer(EventHandle handle) {
+		return this.link.cancelLoopback(handle);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Starts a periodic timer, e.g. for the periodic stabilization of the overlay. The peer receives
+	 * a message of type 'type' from itself every 'period' time units, starting 'period' time units
+	 * from now, until the timer is stopped or the peer leaves or fails. The same message object is
+	 * delivered at every tick.
+	 * @param period The period of the timer.
+	 * @param type The type of the message that is received at every tick.
+	 * @return The timer, which can be given to cancelPeriodic.
+	 */
+    protected PeriodicTimer schedulePeriodic(long period, String type) {
+		return this.link.schedulePeriodic(period, new Message(type, null));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Stops a periodic timer of the peer.
+	 * @param timer The timer that is returned by schedulePeriodic.
+	 * @return 'true' if the timer is stopped, or 'false' if it is already stopped.
 	 */
-    protected void loopback(Message msg, long time) {
-		this.link.loopback(msg, time);
+    protected boolean cancelPeriodic(PeriodicTimer timer) {
+		return this.link.cancelPeriodic(timer);
 	}
 
 //----------------------------------------------------------------------------------
@@ -208,9 +341,9 @@ public abstract class AbstractPeer {
 	 */
     protected void broadcast(Message msg) {
     	NodeId node;
-		Iterator<String> nodeIter = this.overlay.getNodes().iterator();
+		Iterator<NodeId> nodeIter = this.overlay.getNodes().iterator();
 		while (nodeIter.hasNext()) {
-			node = new NodeId(nodeIter.next());
+			node = nodeIter.next();
 			if (!node.equals(this.nodeId))
 				this.link.send(node, msg);			
 		}	
@@ -234,6 +367,16 @@ public abstract class AbstractPeer {
 		return this.nodeId;
 	}	
 
+//----------------------------------------------------------------------------------
+	/**
+	 * Get the streams of this peer. They are used by the simulator, which orders the events of the peer and
+	 * gives it its own random generator through them.
+	 * @return The streams of the peer.
+	 */
+	public final PeerStream getStream() {
+		return this.stream;
+	}
+
 //----------------------------------------------------------------------------------
 	/**
 	 * Get the link latency of this peer.
@@ -19,6 +19,7 @@
 package sicsim.network.peers;
 
 import sicsim.config.SicsimConfig;
+import sicsim.config.SimulationContext;
 import sicsim.network.core.Monitor;
 import sicsim.network.core.OverlayNetwork;
 import sicsim.network.core.Bandwidth;
@@ -26,7 +27,6 @@ import sicsim.network.core.FailureDetector;
 import sicsim.network.links.AbstractLink;
 import sicsim.types.Message;
 import sicsim.types.NodeId;
-import sicsim.utils.Distribution;
 import sicsim.utils.PatternMatching;
 
 /**
@@ -48,18 +48,18 @@ public abstract class BandwidthPeer extends AbstractPeer {
 	/**
 	 * Initialize the peer.
 	 */
-	public void init(NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor) {
-		super.init(nodeId, link, bandwidth, failureDetector, overlay, monitor);
-		this.uploadBandwidth = Distribution.sripanidkulachi();
-		this.downloadBandwidth = SicsimConfig.NUM_OF_STRIPES * SicsimConfig.STRIPE_RATE;
+	public void init(SimulationContext context, NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor) {
+		super.init(context, nodeId, link, bandwidth, failureDetector, overlay, monitor);
+		this.uploadBandwidth = context.getDistribution().sripanidkulachi();
+		this.downloadBandwidth = this.context.getConfig().NUM_OF_STRIPES * this.context.getConfig().STRIPE_RATE;
 	}
 
 //----------------------------------------------------------------------------------
 	/**
 	 * Initialize the peer with specific bandwidth
 	 */
-	public void init(NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor, int uploadBandwidth, int downloadBandwidth) {
-		super.init(nodeId, link, bandwidth, failureDetector, overlay, monitor);
+	public void init(SimulationContext context, NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor, int uploadBandwidth, int downloadBandwidth) {
+		super.init(context, nodeId, link, bandwidth, failureDetector, overlay, monitor);
 		this.uploadBandwidth = uploadBandwidth;
 		this.downloadBandwidth = downloadBandwidth;
 	}
@@ -137,16 +137,15 @@ public abstract class BandwidthPeer extends AbstractPeer {
 	 * sends data, otherwise returns 'false'.
 	 */
     protected boolean startSendData(NodeId destId, String msg) {
-		Message controlData = new Message();
+		Message controlData = new Message(Message.START_RECV_DATA);
 		controlData.data = msg;
-		controlData.type = new String("START_RECV_DATA");
 				
-		if (this.bandwidth.getTotalUploadBandwidth(this.nodeId) + SicsimConfig.STRIPE_RATE <= this.uploadBandwidth) {
+		if (this.bandwidth.getTotalUploadBandwidth(this.nodeId) + this.context.getConfig().STRIPE_RATE <= this.uploadBandwidth) {
 			this.link.send(destId, controlData);
 			return true;
 		}
 		else {
-			if (SicsimConfig.LOG_SIM && SicsimConfig.LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
+			if (this.context.getConfig().LOG_SIM && this.context.getConfig().LOG_LEVEL >= SicsimConfig.LOG_NOTICE)
 				System.out.println("BW_PEER => " + this.nodeId + " does not have upload bw for " + destId);			
 			return false;			
 		}
@@ -159,9 +158,8 @@ public abstract class BandwidthPeer extends AbstractPeer {
 	 * @param msg The message to the destination peer.
 	 */
     protected void stopSendData(NodeId destId, String msg) {
-		Message controlData = new Message();
+		Message controlData = new Message(Message.STOP_RECV_DATA);
 		controlData.data = new String(msg);
-		controlData.type = new String("STOP_RECV_DATA");
 
 		this.link.send(destId, controlData);
 	}
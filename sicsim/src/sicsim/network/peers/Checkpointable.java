@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.network.peers;
+
+/**
+ * Interface of the peers that can be executed by the time warp engine. Before the engine executes
+ * an event of a peer optimistically, it takes a checkpoint of the peer, and if the event has to be
+ * undone later, it gives the checkpoint back to the peer. The checkpoint must be a copy of all the
+ * local state of the peer that can be changed by its events, or a record that is enough to rebuild
+ * that state incrementally.
+ * @see sicsim.core.scheduler.TimeWarpEngine
+ */
+public interface Checkpointable {
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns a checkpoint of the local state of the peer. Later changes of the peer must not change the checkpoint.
+	 * @return The checkpoint.
+	 */
+	public Object checkpoint();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Restores the local state of the peer from a checkpoint that is taken by 'checkpoint'. The
+	 * checkpoint is not used by the engine anymore after this call.
+	 * @param checkpoint The checkpoint.
+	 */
+	public void rollback(Object checkpoint);
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.network.peers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import sicsim.types.Message;
+import sicsim.types.NodeId;
+
+/**
+ * The message handlers of a peer class, which are shared by all the peers of the class. The handlers
+ * are kept in an array indexed by the code of the message type, and in a map by the type name for the
+ * messages without code. Each handler is adapted to take the peer, the node id of the source and the
+ * message, whatever parameters the method declares.
+ * @see MessageHandler
+ */
+class HandlerTable {
+	private static HashMap<Class<?>, HandlerTable> tables = new HashMap<Class<?>, HandlerTable>();
+	private static MethodType HANDLER_TYPE = MethodType.methodType(void.class, AbstractPeer.class, NodeId.class, Message.class);
+
+	private MethodHandle[] handlers = new MethodHandle[0];
+	private HashMap<String, MethodHandle> handlersByType = new HashMap<String, MethodHandle>();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the table of a peer class, and finds its handlers if it is the first call for the class.
+	 * @param peerClass The class of the peer.
+	 * @return The table of the class.
+	 */
+	static synchronized HandlerTable of(Class<?> peerClass) {
+		HandlerTable table = HandlerTable.tables.get(peerClass);
+
+		if (table == null) {
+			table = new HandlerTable(peerClass);
+			HandlerTable.tables.put(peerClass, table);
+		}
+
+		return table;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Finds the handlers of a class and of its super classes. A handler of a class hides the handler
+	 * of the same type in its super classes.
+	 */
+	private HandlerTable(Class<?> peerClass) {
+		for (Class<?> c = peerClass; c != null && c != Object.class; c = c.getSuperclass()) {
+			HashMap<String, MethodHandle> declared = new HashMap<String, MethodHandle>();
+			Method[] methods = c.getDeclaredMethods();
+
+			for (int i = 0; i < methods.length; i++) {
+				MessageHandler annotation = methods[i].getAnnotation(MessageHandler.class);
+				if (annotation == null)
+					continue;
+
+				if (declared.put(annotation.value(), HandlerTable.adapt(methods[i])) != null)
+					throw new IllegalArgumentException("Class " + c.getName() + " has more than one handler for " + annotation.value());
+			}
+
+			Iterator<String> typeIter = declared.keySet().iterator();
+			while (typeIter.hasNext()) {
+				String type = typeIter.next();
+				if (!this.handlersByType.containsKey(type))
+					this.add(type, declared.get(type));
+			}
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the handler of a message.
+	 * @param msg The message.
+	 * @return The handler, or null if the class has no handler for the type of the message.
+	 */
+	MethodHandle get(Message msg) {
+		if (msg.code != Message.NO_CODE)
+			return ((msg.code < this.handlers.length) ? this.handlers[msg.code] : null);
+
+		return this.handlersByType.get(msg.type);
+	}
+
+//----------------------------------------------------------------------------------
+	private void add(String type, MethodHandle handler) {
+		int code = Message.register(type);
+
+		if (code >= this.handlers.length)
+			this.handlers = Arrays.copyOf(this.handlers, code + 1);
+
+		this.handlers[code] = handler;
+		this.handlersByType.put(type, handler);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Adapts a handler method to the type (AbstractPeer, NodeId, Message)void.
+	 */
+	private static MethodHandle adapt(Method method) {
+		Class<?>[] params = method.getParameterTypes();
+		Class<?>[] all = { NodeId.class, Message.class };
+
+		if (Modifier.isStatic(method.getModifiers()))
+			throw new IllegalArgumentException("Handler " + method + " must not be static");
+		if (params.length > all.length || !Arrays.equals(params, Arrays.copyOf(all, params.length)))
+			throw new IllegalArgumentException("Handler " + method + " must take no parameter, (NodeId) or (NodeId, Message)");
+
+		try {
+			method.setAccessible(true);
+			MethodHandle handler = MethodHandles.lookup().unreflect(method);
+			handler = MethodHandles.dropArguments(handler, 1 + params.length, Arrays.copyOfRange(all, params.length, all.length));
+
+			return handler.asType(HandlerTable.HANDLER_TYPE);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Handler " + method + " is not accessible", e);
+		}
+	}
+}
@@ -42,7 +42,7 @@ public class OverlayMonitor extends Monitor {
 
 		Iterator<NodeId> nodeIter = this.network.getNodes().iterator();
 		while (nodeIter.hasNext()) {
-			node = new NodeId(nodeIter.next());
+			node = nodeIter.next();
 			peer = (Peer)this.network.getNode(node);
 			System.out.println(peer.getId() + ", friends: " + peer.getFriends() + ", failed_friends: " + peer.getFailedFriends());
 		}
@@ -58,11 +58,11 @@ public class OverlayMonitor extends Monitor {
 		str += "time: " + currentTime + "\n\n";
 		Iterator<NodeId> nodeIter = this.network.getNodes().iterator();
 		while (nodeIter.hasNext()) {
-			node = new NodeId(nodeIter.next());
+			node = nodeIter.next();
 			peer = (Peer)this.network.getNode(node);
 			str += (peer.getId() + ", friends: " + peer.getFriends() + ", failed_friends: " + peer.getFailedFriends() + "\n");
 		}
 		
-		FileIO.write(str, fileName);
+		FileIO.write(str, this.context.getPath(fileName));
 	}
 }
@@ -21,6 +21,7 @@ package sicsim.samples.helloworld;
 import java.util.Iterator;
 import java.util.Vector;
 
+import sicsim.config.SimulationContext;
 import sicsim.network.core.Bandwidth;
 import sicsim.network.core.Monitor;
 import sicsim.network.core.OverlayNetwork;
@@ -28,26 +29,31 @@ import sicsim.network.core.FailureDetector;
 import sicsim.network.links.AbstractLink;
 import sicsim.network.links.ReliableLink;
 import sicsim.network.peers.AbstractPeer;
-import sicsim.network.peers.PeerEventListener;
+import sicsim.network.peers.Checkpointable;
+import sicsim.network.peers.MessageHandler;
 import sicsim.types.Message;
 import sicsim.types.NodeId;
 import sicsim.utils.PatternMatching;
 
-public class Peer extends AbstractPeer {
+public class Peer extends AbstractPeer implements Checkpointable {
 	private static int PERIOD_INTERVAL = 100;
+	private static int PERIODIC = Message.register("PERIODIC");
+	private static int HELLO = Message.register("HELLO");
+	private static int SIGNAL = Message.register("SIGNAL");
+	private static int LEAVE = Message.register("LEAVE");
 	Vector<String> friends = new Vector<String>();
 	Vector<String> failedFriends = new Vector<String>();
 
 //----------------------------------------------------------------------------------
-	public void init(NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor) {
-		super.init(nodeId, link, bandwidth, failureDetector, overlay, monitor);
+	public void init(SimulationContext context, NodeId nodeId, AbstractLink link, Bandwidth bandwidth, FailureDetector failureDetector, OverlayNetwork overlay, Monitor monitor) {
+		super.init(context, nodeId, link, bandwidth, failureDetector, overlay, monitor);
 	}
 
 //----------------------------------------------------------------------------------
 	public void create(long currentTime) {
 		System.out.println(this.nodeId + " is created!");
 		this.overlay.add(this.nodeId);
-		this.loopback(new Message("PERIODIC", null), Peer.PERIOD_INTERVAL);
+		this.loopback(new Message(Peer.PERIODIC), Peer.PERIOD_INTERVAL);
 	}
 	
 //----------------------------------------------------------------------------------
@@ -56,17 +62,17 @@ public class Peer extends AbstractPeer {
 		NodeId randomNode = this.overlay.getRandomNodeIdFromNetwork();
 
 		if (randomNode != null)
-			this.sendMsg(randomNode, new Message("HELLO", "Hello from " + this.nodeId.toString()));
+			this.sendMsg(randomNode, new Message(Peer.HELLO, this.nodeId));
 		
-		this.loopback(new Message("PERIODIC", null), Peer.PERIOD_INTERVAL);
+		this.loopback(new Message(Peer.PERIODIC), Peer.PERIOD_INTERVAL);
 		this.overlay.add(this.nodeId);
 	}	
 	
 //----------------------------------------------------------------------------------
 	public void leave(long currentTime) {
 		System.out.println(this.nodeId + " wants to leave the system.");
-		this.broadcast(new Message("LEAVE", null));
-		this.sendSim(new Message("LEAVE_GRANTED", null));
+		this.broadcast(new Message(Peer.LEAVE));
+		this.sendSim(new Message(Message.LEAVE_GRANTED));
 	}
 
 //----------------------------------------------------------------------------------
@@ -78,9 +84,7 @@ public class Peer extends AbstractPeer {
 	
 //----------------------------------------------------------------------------------
 	public void receive(NodeId srcId, Message data, long currentTime) {
-		if (this.listeners.containsKey(data.type))
-			this.listeners.get(data.type).receivedEvent(srcId, data);
-		else
+		if (!this.dispatch(srcId, data))
 			System.out.println("PEER: I'm node " + this.nodeId + " and event " + data.type + " is not registered!");
 	}
 	
@@ -95,10 +99,10 @@ public class Peer extends AbstractPeer {
 		
 		switch (signal) {
 		case 1:
-			this.sendMsg(randomNode, new Message("SIGNAL", data1));
+			this.sendMsg(randomNode, new Message(Peer.SIGNAL, data1));
 			break;
 		case 2:
-			this.sendMsg(randomNode, new Message("SIGNAL", data2));
+			this.sendMsg(randomNode, new Message(Peer.SIGNAL, data2));
 			break;
 		default:
 			System.out.println("unknown signal number");				
@@ -106,16 +110,18 @@ public class Peer extends AbstractPeer {
 	}
 
 //----------------------------------------------------------------------------------
+	@MessageHandler("PERIODIC")
 	private void handlePeriodicEvent() {
 		NodeId randomNode = this.overlay.getRandomNodeIdFromNetwork(this.nodeId);	
 		if (randomNode != null)
-			this.sendMsg(randomNode, new Message("HELLO", "Hello from " + this.nodeId.toString()));
-		this.loopback(new Message("PERIODIC", null), Peer.PERIOD_INTERVAL);
+			this.sendMsg(randomNode, new Message(Peer.HELLO, this.nodeId));
+		this.loopback(new Message(Peer.PERIODIC), Peer.PERIOD_INTERVAL);
 	}
 
 //----------------------------------------------------------------------------------
+	@MessageHandler("HELLO")
 	private void handleHelloEvent(NodeId srcId, Message msg) {
-		System.out.println(this.nodeId + " receives message: " + msg.data);
+		System.out.println(this.nodeId + " receives message: Hello from " + msg.getData());
 		if (!this.friends.contains(srcId.toString())) {
 			this.friends.addElement(srcId.toString());
 			this.failureDetector.register(srcId, this.nodeId);
@@ -123,11 +129,13 @@ public class Peer extends AbstractPeer {
 	}
 
 //----------------------------------------------------------------------------------
+	@MessageHandler("SIGNAL")
 	private void handleSignalEvent(NodeId srcId, Message msg) {
-		System.out.println(this.nodeId + " receives signal: " + msg.data);
+		System.out.println(this.nodeId + " receives signal: " + msg.getData());
 	}
 
 //----------------------------------------------------------------------------------
+	@MessageHandler("LEAVE")
 	private void handleLeaveEvent(NodeId srcId) {
 		if (this.friends.contains(srcId.toString())) {
 			this.friends.removeElement(srcId.toString());
@@ -137,34 +145,6 @@ public class Peer extends AbstractPeer {
 	}
 	
 
-//----------------------------------------------------------------------------------
-	public void registerEvents() {
-		this.addEventListener("PERIODIC", new PeerEventListener() {
-			public void receivedEvent(NodeId srcId, Message msg) {
-				handlePeriodicEvent();
-			}
-		});
-		
-		this.addEventListener("HELLO", new PeerEventListener() {
-			public void receivedEvent(NodeId srcId, Message msg) {
-				handleHelloEvent(srcId, msg);
-			}
-		});
-
-		this.addEventListener("SIGNAL", new PeerEventListener() {
-			public void receivedEvent(NodeId srcId, Message msg) {
-				handleSignalEvent(srcId, msg);
-			}
-		});
-
-		this.addEventListener("LEAVE", new PeerEventListener() {
-			public void receivedEvent(NodeId srcId, Message msg) {
-				handleLeaveEvent(srcId);
-			}
-		});
-
-	}
-
 //----------------------------------------------------------------------------------
 	public void syncMethod(long currentTime) {
 	}
@@ -201,6 +181,19 @@ public class Peer extends AbstractPeer {
 			this.failedFriends.addElement(failedParts[i]);
 	}
 
+//----------------------------------------------------------------------------------
+	public Object checkpoint() {
+		return new Object[] {new Vector<String>(this.friends), new Vector<String>(this.failedFriends)};
+	}
+
+//----------------------------------------------------------------------------------
+	@SuppressWarnings("unchecked")
+	public void rollback(Object checkpoint) {
+		Object[] state = (Object[])checkpoint;
+		this.friends = (Vector<String>)state[0];
+		this.failedFriends = (Vector<String>)state[1];
+	}
+
 //----------------------------------------------------------------------------------
 	public Vector<String> getFriends() {
 		return this.friends;
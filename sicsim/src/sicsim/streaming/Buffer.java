@@ -27,7 +27,7 @@ import sicsim.types.NodeId;
 import sicsim.utils.PatternMatching;
 
 public class Buffer {
-
+	private SicsimConfig config;
 	private long playback = SicsimConfig.STOP;
 	private long playbackLastUpdate = 0;
 	private long pauseDuration = 0;
@@ -36,6 +36,10 @@ public class Buffer {
 	
 	private HashMap<String, Stripe> buffer = new HashMap<String, Stripe>(); // <strip_name, stripe_information>
 
+//----------------------------------------------------------------------------------
+	public Buffer(SicsimConfig config) {
+		this.config = config;
+	}
 	
 //----------------------------------------------------------------------------------
 	public long getPlayback() {
@@ -44,7 +48,7 @@ public class Buffer {
 	
 //----------------------------------------------------------------------------------
 	public void addBuffer(NodeId provider, String stripe, long segment, long currentTime) {
-		Stripe stripeInfo = new Stripe(provider, currentTime, segment);
+		Stripe stripeInfo = new Stripe(this.config, provider, currentTime, segment);
 		
 		if (this.buffer.get(stripe) == null)
 			this.buffer.put(stripe, stripeInfo);
@@ -351,7 +355,7 @@ public class Buffer {
 //----------------------------------------------------------------------------------
 	public void showAllBuffer(NodeId nodeId) {
 		String stripe;
-		for (int i = 0; i < SicsimConfig.NUM_OF_STRIPES; i++) {
+		for (int i = 0; i < this.config.NUM_OF_STRIPES; i++) {
 			stripe = new String("stripe" + i);
 			if (this.containsStripe(stripe))
 				System.out.println(nodeId + " " + stripe + " --> " + this.buffer.get(stripe).toString());
@@ -383,7 +387,7 @@ public class Buffer {
 //----------------------------------------------------------------------------------
 	public void restore(String str) {
 		String stripeName = new String();
-		Stripe stripe = new Stripe(); 
+		Stripe stripe = new Stripe(this.config); 
 		
 		this.playback = PatternMatching.getLongValue(str, "playback:");
 		this.playbackLastUpdate = PatternMatching.getLongValue(str, "lastUpdate:");
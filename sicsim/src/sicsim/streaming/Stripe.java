@@ -30,17 +30,20 @@ import sicsim.types.NodeId;
 import sicsim.utils.PatternMatching;
 
 public class Stripe {
+	private SicsimConfig config;
 	private NodeId provider;
 	private long lastRecvSegment;
 	private SortedMap<Long, Long> buffer = new TreeMap<Long, Long>(); // <segmentNumber, time>
 
 //----------------------------------------------------------------------------------
-	public Stripe() {
+	public Stripe(SicsimConfig config) {
+		this.config = config;
 	}
 	
 //----------------------------------------------------------------------------------
-	public Stripe(NodeId provider, long lastUpdateTime, long segmentNumber) {
-		this.provider = new NodeId(provider);
+	public Stripe(SicsimConfig config, NodeId provider, long lastUpdateTime, long segmentNumber) {
+		this.config = config;
+		this.provider = provider;
 		this.lastRecvSegment = segmentNumber;
 		this.buffer.put(segmentNumber, lastUpdateTime);		
 	}
@@ -143,7 +146,7 @@ public class Stripe {
 		// add segment to the buffer if it does not exist, or update its associated time to an earlier time if neccessary
 		if (!this.containsSegment(segment) || this.getSegmentUpdateTime(segment) > updateTime ) { 
 			this.buffer.put(segment, new Long(updateTime));
-			this.provider = new NodeId(provider);
+			this.provider = provider;
 			this.lastRecvSegment = segment;
 		}
 		
@@ -153,13 +156,13 @@ public class Stripe {
 	public void putStream(Map<Long, Long> stream, long updateTime) {
 		int newSize = this.buffer.size() + stream.size();
 		
-		if (newSize > SicsimConfig.BUFFER_SIZE) {
+		if (newSize > this.config.BUFFER_SIZE) {
 			Long key = new Long(0);
 			SortedMap<Long, Long> temp = new TreeMap<Long, Long>();
 			temp.putAll(this.buffer);
 			temp.putAll(stream);
 			Iterator<Long> iter = temp.keySet().iterator();
-			for (int i = 0; i < newSize - SicsimConfig.BUFFER_SIZE; i++)
+			for (int i = 0; i < newSize - this.config.BUFFER_SIZE; i++)
 				key = iter.next();
 			this.buffer.clear();
 			this.buffer.putAll(temp.tailMap(key));
@@ -184,13 +187,13 @@ public class Stripe {
 		
 		int newSize = this.buffer.size() + stream.size();
 		
-		if (newSize > SicsimConfig.BUFFER_SIZE) {
+		if (newSize > this.config.BUFFER_SIZE) {
 			Long key = new Long(0);
 			SortedMap<Long, Long> temp = new TreeMap<Long, Long>();
 			temp.putAll(this.buffer);
 			temp.putAll(stream);
 			Iterator<Long> iter = temp.keySet().iterator();
-			for (int i = 0; i < newSize - SicsimConfig.BUFFER_SIZE; i++)
+			for (int i = 0; i < newSize - this.config.BUFFER_SIZE; i++)
 				key = iter.next();
 			this.buffer.clear();
 			this.buffer.putAll(temp.tailMap(key));
@@ -209,7 +212,7 @@ public class Stripe {
 
 //----------------------------------------------------------------------------------
 	public void updateProvider(NodeId provider) {
-		this.provider = new NodeId(provider);
+		this.provider = provider;
 	}
 
 //----------------------------------------------------------------------------------
@@ -15,14 +15,62 @@
  * along with this program; if not, write to the Free Software
  * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
  */
-
 package sicsim.types;
 
-import sicsim.utils.PatternMatching;
+import java.util.Arrays;
+import java.util.HashMap;
 
+/**
+ * A message between peers, or between a peer and the simulator. A message is typed either by a string,
+ * with its data as a string, or by an int code, with an object payload and two primitive arguments, so
+ * a protocol does not have to format and parse its data at each hop. The codes are registered by name,
+ * and a typed message also has the name of its code as its type, so the code that handles messages by
+ * their type works with both kinds. The string form of a typed message is only made when it is logged
+ * or saved.
+ */
 public class Message {
+	/**
+	 * The code of a message that is only typed by its string.
+	 */
+	public static final int NO_CODE = -1;
+
+	private static HashMap<String, Integer> codes = new HashMap<String, Integer>();
+	// the names of the codes, replaced by a longer copy when a code is registered, so it is read without locking
+	private static volatile String[] names = new String[0];
+
+	/**
+	 * The control message that starts receiving data, which uses download bandwidth of the receiver.
+	 */
+	public static final int START_RECV_DATA = Message.register("START_RECV_DATA");
+
+	/**
+	 * The control message that stops receiving data, which releases download bandwidth of the receiver.
+	 */
+	public static final int STOP_RECV_DATA = Message.register("STOP_RECV_DATA");
+
+	/**
+	 * The message from a leaving peer to the simulator, which removes the peer.
+	 */
+	public static final int LEAVE_GRANTED = Message.register("LEAVE_GRANTED");
+
 	public String data;
 	public String type;
+
+	/**
+	 * The code of a typed message, or NO_CODE.
+	 */
+	public int code = Message.NO_CODE;
+
+	/**
+	 * The payload of a typed message, which is saved as the data of the message.
+	 */
+	public Object payload;
+
+	/**
+	 * The primitive arguments of a typed message, e.g. packed node ids or the bounds of a range.
+	 */
+	public long arg1;
+	public long arg2;
 	
 //----------------------------------------------------------------------------------
 	public Message() {
@@ -34,19 +82,184 @@ public class Message {
 		this.type = type;
 	}
 	
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates a typed message.
+	 * @param code The code of the message, which is returned by register.
+	 */
+	public Message(int code) {
+		this.code = code;
+		this.type = Message.nameOf(code);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates a typed message with a payload.
+	 * @param code The code of the message, which is returned by register.
+	 * @param payload The payload.
+	 */
+	public Message(int code, Object payload) {
+		this(code);
+		this.payload = payload;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates a typed message with two primitive arguments.
+	 * @param code The code of the message, which is returned by register.
+	 * @param arg1 The first argument.
+	 * @param arg2 The second argument.
+	 */
+	public Message(int code, long arg1, long arg2) {
+		this(code);
+		this.arg1 = arg1;
+		this.arg2 = arg2;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the code of a type, and registers the type if it has no code. A protocol registers its
+	 * types once, e.g. in static fields, and the codes are the same for all simulations in a process.
+	 * @param type The name of the type.
+	 * @return The code of the type.
+	 */
+	public static synchronized int register(String type) {
+		Integer code = Message.codes.get(type);
+
+		if (code == null) {
+			code = Message.names.length;
+			String[] names = Arrays.copyOf(Message.names, code + 1);
+			names[code] = type;
+			Message.names = names;
+			Message.codes.put(type, code);
+		}
+
+		return code;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the name of a code.
+	 * @param code The code.
+	 * @return The name of the code, or null if it is not registered.
+	 */
+	public static String nameOf(int code) {
+		String[] names = Message.names;
+
+		return ((code >= 0 && code < names.length) ? names[code] : null);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if the message has a type, either by its code or, for a message without code, by its string
+	 * ignoring the case.
+	 * @param code The code of the type.
+	 * @return 'true' if the message has the type.
+	 */
+	public boolean is(int code) {
+		if (this.code != Message.NO_CODE)
+			return (this.code == code);
+
+		return (this.type != null && this.type.equalsIgnoreCase(Message.nameOf(code)));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the data of the message as a string. For a typed message without data it is made from the payload.
+	 * @return The data of the message.
+	 */
+	public String getData() {
+		if (this.data != null)
+			return this.data;
+
+		return ((this.payload != null) ? this.payload.toString() : null);
+	}
+
 //----------------------------------------------------------------------------------
 	public String toString() {
-		return new String(">msg_type: " + this.type + " >msg_data: " + ((this.data != null) ? this.data : ""));
+		String data = this.getData();
+		String str = new String(">msg_type: " + this.type + " >msg_data: " + ((data != null) ? data : ""));
 
+		if (this.code != Message.NO_CODE)
+			str += " >msg_args: " + this.arg1 + " " + this.arg2;
+
+		return str;
 	}
 
 //----------------------------------------------------------------------------------
+	/**
+	 * Restores a message from its string form. A message is restored as typed only if its string form
+	 * ends with the 'msg_args:' marker and two numbers, otherwise it is restored as untyped, so the data
+	 * of an untyped message may contain '>'. A typed message gets its code and arguments back, and the
+	 * string form of its payload as its data and as its payload, since the payload object itself is not
+	 * saved. So the payload of a restored message is a String, and the handlers that may receive restored
+	 * messages should read it by getData instead of casting the payload.
+	 * @param str The string form of the message.
+	 * @return The message.
+	 */
 	public static Message restore(String str) {
 		Message data = new Message();
 		
-		String[] parts = str.split(">");
-		data.type = PatternMatching.getStrValue(parts[1], "msg_type:");
-		data.data = PatternMatching.getStrValue(parts[2], "msg_data:");
+		int dataStart = str.indexOf(">msg_data:");
+		int argsStart = str.lastIndexOf(">msg_args:");
+		data.type = Message.getValue(str.substring(0, dataStart), "msg_type:");
+
+		long[] args = null;
+		if (data.type != null && argsStart > dataStart)
+			args = Message.getArgs(Message.getValue(str.substring(argsStart), "msg_args:"));
+
+		if (args == null) {
+			data.data = Message.getValue(str.substring(dataStart), "msg_data:");
+		} else {
+			data.data = Message.getValue(str.substring(dataStart, argsStart), "msg_data:");
+			data.code = Message.register(data.type);
+			data.payload = data.data;
+			data.arg1 = args[0];
+			data.arg2 = args[1];
+		}
+
 		return data;
 	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the two arguments of a typed message, or null if the value is not two numbers.
+	 */
+	private static long[] getArgs(String value) {
+		if (value == null)
+			return null;
+
+		String[] parts = value.split(" ");
+		if (parts.length != 2)
+			return null;
+
+		try {
+			return new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the value after a key, up to the end of the line, or null if the key is not followed by a space.
+	 */
+	private static String getValue(String str, String key) {
+		int start = str.indexOf(key);
+		if (start < 0)
+			return null;
+
+		start += key.length();
+		if (start == str.length() || !Character.isWhitespace(str.charAt(start)))
+			return null;
+
+		while (start < str.length() && Character.isWhitespace(str.charAt(start)))
+			start++;
+
+		int end = start;
+		while (end < str.length() && str.charAt(end) != '\n' && str.charAt(end) != '\r')
+			end++;
+
+		return str.substring(start, end).trim();
+	}
 }
@@ -20,30 +20,143 @@ package sicsim.types;
 
 /**
  * This class represents a node in the system. It essentially contains
- * the node identifier and the ip address of the node. 
+ * the node identifier and the ip address of the node. A node id is immutable,
+ * so the same instance can be shared by all the parts of the simulator, and
+ * valueOf returns one canonical instance per node. 
  */
-public class NodeId {
-	public int id;
-	public int ip;
+public final class NodeId {
+	private static int INITIAL_CAPACITY = 1024;
+
+	private static volatile NodeId[] canonical = new NodeId[NodeId.INITIAL_CAPACITY];
+	private static int numOfCanonical = 0;
+
+	public final int id;
+	public final int ip;
+	private String str;
 
 //----------------------------------------------------------------------------------
-	public NodeId(int id, int ip) {
-		this.id = id;
-		this.ip = ip;
+	/**
+	 * Creates a node id from its packed form. The node ids are only created by valueOf, so there is one instance per node.
+	 * @param packedNodeId The node id packed by toLong.
+	 */
+	private NodeId(long packedNodeId) {
+		this.id = (int)(packedNodeId >> 32);
+		this.ip = (int)packedNodeId;
 	}
 	
 //----------------------------------------------------------------------------------
-	public NodeId(NodeId nodeId) {
-		this.id = nodeId.id;
-		this.ip = nodeId.ip;
+	/**
+	 * Returns the canonical instance of a node id. The lookup does not lock, and only the
+	 * first request for a node id creates it.
+	 * @param id The node identifier.
+	 * @param ip The ip address of the node.
+	 * @return The canonical node id.
+ 	 */
+	public static NodeId valueOf(int id, int ip) {
+		return NodeId.valueOf((((long)id) << 32) | (ip & 0xffffffffL));
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the canonical instance of a node id from its packed form.
+	 * @param packedNodeId The node id packed by toLong.
+	 * @return The canonical node id.
+ 	 */
+	public static NodeId valueOf(long packedNodeId) {
+		NodeId nodeId = NodeId.find(NodeId.canonical, packedNodeId);
+		if (nodeId != null)
+			return nodeId;
+		
+		return NodeId.intern(packedNodeId);
 	}
 
 //----------------------------------------------------------------------------------
-	public NodeId(String strNodeId) {
-		this.id = Integer.parseInt(strNodeId.substring(0, strNodeId.indexOf("@")));
-		this.ip = Integer.parseInt(strNodeId.substring(strNodeId.indexOf("@") + 1, strNodeId.length()));
+	/**
+	 * Returns the canonical instance of a node id.
+	 * @param nodeId The node id.
+	 * @return The canonical node id, which is equal to the input node id.
+ 	 */
+	public static NodeId valueOf(NodeId nodeId) {
+		return NodeId.valueOf(nodeId.toLong());
 	}
-	
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the canonical instance of a node id from its string form, 'id@ip'.
+	 * @param strNodeId The node id in string format.
+	 * @return The canonical node id.
+	 * @throws IllegalArgumentException If the string is not in the form 'id@ip'.
+ 	 */
+	public static NodeId valueOf(String strNodeId) {
+		int at = strNodeId.indexOf('@');
+		if (at < 0)
+			throw new IllegalArgumentException("malformed node id '" + strNodeId + "', expected 'id@ip'");
+
+		int id = Integer.parseInt(strNodeId, 0, at, 10);
+		int ip = Integer.parseInt(strNodeId, at + 1, strNodeId.length(), 10);
+
+		return NodeId.valueOf(id, ip);
+	}
+
+//----------------------------------------------------------------------------------
+	private static NodeId find(NodeId[] table, long packedNodeId) {
+		int mask = table.length - 1;
+		int i = NodeId.hash(packedNodeId) & mask;
+		NodeId nodeId;
+
+		while ((nodeId = table[i]) != null) {
+			if (nodeId.toLong() == packedNodeId)
+				return nodeId;
+			i = (i + 1) & mask;
+		}
+		
+		return null;
+	}
+
+//----------------------------------------------------------------------------------
+	private static synchronized NodeId intern(long packedNodeId) {
+		NodeId[] table = NodeId.canonical;
+		NodeId nodeId = NodeId.find(table, packedNodeId);
+		if (nodeId != null)
+			return nodeId;
+
+		// slots are only filled and never cleared, so a reader that misses a new node id
+		// comes here and finds it under the lock, and the fields of a node id are final
+		if (2 * (NodeId.numOfCanonical + 1) > table.length) {
+			NodeId[] newTable = new NodeId[2 * table.length];
+			for (int i = 0; i < table.length; i++) {
+				if (table[i] != null)
+					NodeId.insert(newTable, table[i]);
+			}
+			table = newTable;
+		}
+
+		nodeId = new NodeId(packedNodeId);
+		NodeId.insert(table, nodeId);
+		NodeId.numOfCanonical++;
+		NodeId.canonical = table;
+
+		return nodeId;
+	}
+
+//----------------------------------------------------------------------------------
+	private static void insert(NodeId[] table, NodeId nodeId) {
+		int mask = table.length - 1;
+		int i = NodeId.hash(nodeId.toLong()) & mask;
+
+		while (table[i] != null)
+			i = (i + 1) & mask;
+		
+		table[i] = nodeId;
+	}
+
+//----------------------------------------------------------------------------------
+	private static int hash(long packedNodeId) {
+		long h = (packedNodeId ^ (packedNodeId >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return (int)(h ^ (h >>> 33));
+	}
+
 //----------------------------------------------------------------------------------
 	/**
 	 * Compares two NodeIDs. 
@@ -51,21 +164,38 @@ public class NodeId {
 	 * @return 'true' if two node IDs are equal, otherwise return 'false'.
  	 */
 	public boolean equals(NodeId nodeId) {
-		if (this.id == nodeId.id && this.ip == nodeId.ip)
+		if (nodeId != null && this.id == nodeId.id && this.ip == nodeId.ip)
 			return true;
 		
 		return false;
 	}
 	
+//----------------------------------------------------------------------------------
+	public boolean equals(Object obj) {
+		if (obj instanceof NodeId)
+			return this.equals((NodeId)obj);
+		
+		return false;
+	}
+	
+//----------------------------------------------------------------------------------
+	public int hashCode() {
+		return NodeId.hash(this.toLong());
+	}
+
 //----------------------------------------------------------------------------------
 	/**
-	 * Compares two NodeIDs. 
+	 * Compares two NodeIDs. The string is parsed in place, without creating substrings.
 	 * @param strNodeId node ID in string format.
 	 * @return 'true' if two node IDs are equal, otherwise return 'false'.
  	 */
 	public boolean equals(String strNodeId) {
-		int id = Integer.parseInt(strNodeId.substring(0, strNodeId.indexOf("@")));
-		int ip = Integer.parseInt(strNodeId.substring(strNodeId.indexOf("@") + 1, strNodeId.length()));
+		int at = strNodeId.indexOf('@');
+		if (at < 0)
+			return false;
+
+		int id = Integer.parseInt(strNodeId, 0, at, 10);
+		int ip = Integer.parseInt(strNodeId, at + 1, strNodeId.length(), 10);
 
 		if (this.id == id && this.ip == ip)
 			return true;
@@ -75,10 +205,36 @@ public class NodeId {
 	
 //----------------------------------------------------------------------------------
 	/**
-	 * Generates the node if a peer in "id@ip" format. 
+	 * Packs the node id in a long, with the id in the high half and the ip in the low half, so
+	 * that two node ids are equal if and only if their packed forms are equal.
+	 * @return The packed node id.
+ 	 */
+	public long toLong() {
+		return (((long)this.id) << 32) | (this.ip & 0xffffffffL);
+	}
+	
+//----------------------------------------------------------------------------------
+	/**
+	 * Appends the node id in "id@ip" format to a buffer, without creating a string.
+	 * @param buffer The buffer.
+	 * @return The buffer.
+ 	 */
+	public StringBuilder appendTo(StringBuilder buffer) {
+		return buffer.append(this.id).append('@').append(this.ip);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Generates the node if a peer in "id@ip" format. The string is created once per instance.
 	 * @return "id@ip".
  	 */
 	public String toString() {
-		return id + "@" + ip;
+		String str = this.str;
+		if (str == null) {
+			str = this.id + "@" + this.ip;
+			this.str = str;
+		}
+		
+		return str;
 	}
 }
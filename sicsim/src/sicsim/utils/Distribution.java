@@ -23,17 +23,63 @@ import java.util.Random;
 import sicsim.config.SicsimConfig;
 
 /**
- * Class to generate different kind of distributions.
+ * Class to generate different kind of distributions. Each simulation has its own instance, whose
+ * random generators are seeded from the configuration of the simulation.
+ * @see sicsim.config.SimulationContext
  */
 public class Distribution {
-	private static Random poissonRandom = new Random(SicsimConfig.NETWORK_SEED * 2);
-	private static Random expRandom = new Random(SicsimConfig.NETWORK_SEED * 3);
-	private static Random paretoRandom = new Random(SicsimConfig.NETWORK_SEED * 4);
-	private static Random clusterRandom = new Random(SicsimConfig.NETWORK_SEED * 5);
-	private static Random triRandom = new Random(SicsimConfig.NETWORK_SEED * 6);
-	private static Random normalRandom = new Random(SicsimConfig.NETWORK_SEED * 7);
-	private static Random sripanidkulachiRandom = new Random(SicsimConfig.BANDWIDTH_SEED);
-	private static Random uniformRandom = new Random(SicsimConfig.LATENCY_SEED);
+	private Random poissonRandom;
+	private Random expRandom;
+	private Random paretoRandom;
+	private Random clusterRandom;
+	private Random triRandom;
+	private Random normalRandom;
+	private Random sripanidkulachiRandom;
+	private Random uniformRandom;
+	private static ThreadLocal<Random> threadRandom = new ThreadLocal<Random>();
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Creates the random generators of a simulation from the seeds of its configuration.
+	 * @param config The configuration of the simulation.
+ 	 */
+	public Distribution(SicsimConfig config) {
+		this.poissonRandom = new Random(config.NETWORK_SEED * 2);
+		this.expRandom = new Random(config.NETWORK_SEED * 3);
+		this.paretoRandom = new Random(config.NETWORK_SEED * 4);
+		this.clusterRandom = new Random(config.NETWORK_SEED * 5);
+		this.triRandom = new Random(config.NETWORK_SEED * 6);
+		this.normalRandom = new Random(config.NETWORK_SEED * 7);
+		this.sripanidkulachiRandom = new Random(config.BANDWIDTH_SEED);
+		this.uniformRandom = new Random(config.LATENCY_SEED);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Sets the random generator of the current thread. While it is set, all the random numbers
+	 * that are drawn on this thread, by this class and by the classes that call getRandom, come
+	 * from this generator instead of the shared ones. The parallel engines give each logical
+	 * process its own generator, so that the drawn numbers do not depend on the thread scheduling.
+	 * @param random The random generator of the current thread, or null to use the shared generators again.
+ 	 */
+	public static void setThreadRandom(Random random) {
+		if (random == null)
+			Distribution.threadRandom.remove();
+		else
+			Distribution.threadRandom.set(random);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the random generator of the current thread, or 'shared' if no generator is set for the current thread.
+	 * @param shared The shared random generator of the caller.
+	 * @return The random generator to draw from.
+ 	 */
+	public static Random getRandom(Random shared) {
+		Random random = Distribution.threadRandom.get();
+
+		return (random != null) ? random : shared;
+	}
 	
 //----------------------------------------------------------------------------------
 	/**
@@ -41,7 +87,7 @@ public class Distribution {
 	 * @param lambda Specifies the parameter of distribution.
 	 * @return Integer number generated by poisson distribution.
  	 */
-	public static int poisson(double lambda) {
+	public int poisson(double lambda) {
 		double L = 1 / Math.exp(lambda);
 		int k = 0;
 		double p = 1;
@@ -49,7 +95,7 @@ public class Distribution {
 		
 	    do {
 	         k = k + 1;
-	         u = Distribution.poissonRandom.nextDouble();
+	         u = Distribution.getRandom(this.poissonRandom).nextDouble();
 	         p = p * u;
 	    } while (p >= L);
 
@@ -65,7 +111,7 @@ public class Distribution {
 	 * @return Integer number generated by normal distribution.
  	 */
 	public static int normal(double mean, double var, int seed) {
-		double a = (new Random(seed)).nextGaussian();
+		double a = Distribution.gaussian(seed);
 		int result = (int)(Math.round((var * a) + mean));
 		
 		if (result < 0)
@@ -75,6 +121,37 @@ public class Distribution {
 		
 	}
 
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the first gaussian number of a java.util.Random seeded by 'seed', without
+	 * creating the Random object. It repeats the generator and the polar method of Random, so
+	 * it returns exactly the same number as (new Random(seed)).nextGaussian().
+	 * @param seed Specifies the seed of the generator.
+	 * @return The first gaussian number generated from 'seed'.
+ 	 */
+	private static double gaussian(long seed) {
+		long state = (seed ^ 0x5DEECE66DL) & ((1L << 48) - 1);
+		double v1, v2, s;
+
+		do {
+			state = (state * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+			long high = (int)(state >>> 22);
+			state = (state * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+			long low = (int)(state >>> 21);
+			v1 = 2 * (((high << 27) + low) * 0x1.0p-53) - 1;
+
+			state = (state * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+			high = (int)(state >>> 22);
+			state = (state * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+			low = (int)(state >>> 21);
+			v2 = 2 * (((high << 27) + low) * 0x1.0p-53) - 1;
+
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+
+		return v1 * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+	}
+
 //----------------------------------------------------------------------------------
 	/**
 	 * Generates normal random number with mean 'mean' and standard deviation 'var'.
@@ -82,8 +159,8 @@ public class Distribution {
 	 * @param var Specifies the standard deviation value in normal distribution.
 	 * @return Integer number generated by normal distribution.
  	 */
-	public static int normal(double mean, double var) {
-		double a = Distribution.normalRandom.nextGaussian();
+	public int normal(double mean, double var) {
+		double a = Distribution.getRandom(this.normalRandom).nextGaussian();
 		int result = (int)(Math.round((var * a) + mean));
 		
 		if (result < 0)
@@ -99,8 +176,8 @@ public class Distribution {
 	 * @param value Specifies the bound on the random number to be returned. It must be positive.
 	 * @return Integer number generated uniformly between 0 and value.
  	 */
-	public static int uniform(int value) {
-		return Distribution.uniformRandom.nextInt(value);
+	public int uniform(int value) {
+		return Distribution.getRandom(this.uniformRandom).nextInt(value);
 	}
 
 //----------------------------------------------------------------------------------
@@ -109,8 +186,8 @@ public class Distribution {
 	 * @param mean Specifies the mean value in exponential value. It is 1 over 'lambda' the parameter of exponential distribution.
 	 * @return Integer number generated by exponential distribution.
  	 */
-	public static int exp(double mean) {
-		return (int)(-mean * Math.log(1 - Distribution.expRandom.nextDouble()));
+	public int exp(double mean) {
+		return (int)(-mean * Math.log(1 - Distribution.getRandom(this.expRandom).nextDouble()));
 	}
 	
 //----------------------------------------------------------------------------------
@@ -121,9 +198,9 @@ public class Distribution {
 	 * @param c Specifies the upper limit on distribution parameter.
 	 * @return Integer number generated by triangular distribution.
  	 */
-	public static int traiangular(double a, double b, double c) {
+	public int traiangular(double a, double b, double c) {
 		int x;
-		float r = Distribution.triRandom.nextFloat();
+		float r = Distribution.getRandom(this.triRandom).nextFloat();
 		
 		if (r <= (b - a) / (c - a)) {
 			x = (int)(a + Math.sqrt(r * (c - a) * (b - a)));
@@ -134,20 +211,21 @@ public class Distribution {
 		return x;
 	}
 //----------------------------------------------------------------------------------
-    public static int sripanidkulachi() {
-        double randomNumber = sripanidkulachiRandom.nextDouble() * 100;
+    public int sripanidkulachi() {
+        Random random = Distribution.getRandom(this.sripanidkulachiRandom);
+        double randomNumber = random.nextDouble() * 100;
         int result = -1;
         int bitRate = 250;
         
         while (result < 0) {
             if (randomNumber <= 49.3)
-                result = 0 + sripanidkulachiRandom.nextInt(bitRate);
+                result = 0 + random.nextInt(bitRate);
             else if (randomNumber <= 68)
-                result = 1 * bitRate + sripanidkulachiRandom.nextInt(bitRate);
+                result = 1 * bitRate + random.nextInt(bitRate);
             else if (randomNumber <= 76.4)
-                result = 2 * bitRate + sripanidkulachiRandom.nextInt(bitRate);
+                result = 2 * bitRate + random.nextInt(bitRate);
             else if (randomNumber <= 81.6)
-                result = (3 + sripanidkulachiRandom.nextInt(16)) * bitRate + sripanidkulachiRandom.nextInt(bitRate);
+                result = (3 + random.nextInt(16)) * bitRate + random.nextInt(bitRate);
             else if (randomNumber <= 88.4)
                 result = 20 * bitRate;
             else
@@ -158,8 +236,8 @@ public class Distribution {
     }
 
 //----------------------------------------------------------------------------------
-    public static int pareto(long xm, double k) {
-        double uniformRandomNumber = paretoRandom.nextDouble();
+    public int pareto(long xm, double k) {
+        double uniformRandomNumber = Distribution.getRandom(this.paretoRandom).nextDouble();
         double paretoRandomNumber =  xm / (Math.pow(uniformRandomNumber, (1 / k)));
         return (int)paretoRandomNumber;
     }
@@ -171,9 +249,9 @@ public class Distribution {
 	 * @param d Specifies the percentage of peers in clusters.
 	 * @return Integer number generated by cluster distribution.
  	 */
-    public static int cluster(int m, double d) {
+    public int cluster(int m, double d) {
     	int result = 0;
-        double randNum = clusterRandom.nextDouble();
+        double randNum = Distribution.getRandom(this.clusterRandom).nextDouble();
         
         for (double i = 0; i < m; i++) {
         	if (randNum >= i / m && randNum < (d / m) + (i / m)) {
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of long keys that are kept in a dense array, together with an index from each key to its
+ * position in the array. Adding, removing and looking up a key, and reading the key at a position,
+ * are all O(1), so a uniformly random key can be drawn by drawing a random position. A removed key
+ * is replaced by the last key of the array, so the positions of the other keys may change when a
+ * key is removed. The set is not synchronized.
+ */
+public class IndexedSet {
+	private static int INITIAL_CAPACITY = 16;
+
+	private long[] elements = new long[IndexedSet.INITIAL_CAPACITY];
+	private int size = 0;
+
+	// open addressing table of 1 + position of the keys, where 0 marks an empty slot
+	private int[] table = new int[2 * IndexedSet.INITIAL_CAPACITY];
+	private int mask = 2 * IndexedSet.INITIAL_CAPACITY - 1;
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Adds a key to the set.
+	 * @param key The key.
+	 * @return 'true' if the key is added, or 'false' if it is already in the set.
+	 */
+	public boolean add(long key) {
+		int slot = this.slotOf(key);
+		if (this.table[slot] != 0)
+			return false;
+
+		if (this.size == this.elements.length) {
+			this.elements = Arrays.copyOf(this.elements, 2 * this.size);
+			this.rehash(4 * this.size);
+			slot = this.slotOf(key);
+		}
+
+		this.elements[this.size] = key;
+		this.table[slot] = ++this.size;
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes a key from the set. The last key of the array takes the position of the removed key.
+	 * @param key The key.
+	 * @return 'true' if the key is removed, or 'false' if it is not in the set.
+	 */
+	public boolean remove(long key) {
+		int slot = this.slotOf(key);
+		if (this.table[slot] == 0)
+			return false;
+
+		int position = this.table[slot] - 1;
+		this.deleteSlot(slot);
+
+		int last = --this.size;
+		if (position != last) {
+			long moved = this.elements[last];
+			this.elements[position] = moved;
+			this.table[this.slotOf(moved)] = position + 1;
+		}
+
+		return true;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if a key is in the set.
+	 * @param key The key.
+	 * @return 'true' if the key is in the set.
+	 */
+	public boolean contains(long key) {
+		return (this.table[this.slotOf(key)] != 0);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the position of a key in the array.
+	 * @param key The key.
+	 * @return The position, or -1 if the key is not in the set.
+	 */
+	public int indexOf(long key) {
+		return this.table[this.slotOf(key)] - 1;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the key at a position of the array.
+	 * @param index The position, from 0 to size() - 1.
+	 * @return The key.
+	 */
+	public long get(int index) {
+		if (index >= this.size)
+			throw new IndexOutOfBoundsException("Index " + index + " is not less than the size " + this.size);
+
+		return this.elements[index];
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns a copy of the keys of the set, in the order of their positions.
+	 * @return The keys.
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(this.elements, this.size);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the number of keys in the set.
+	 * @return The number of keys.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes all the keys from the set.
+	 */
+	public void clear() {
+		Arrays.fill(this.table, 0);
+		this.size = 0;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the slot of a key, or the empty slot where the key would be added.
+	 */
+	private int slotOf(long key) {
+		int slot = IndexedSet.hash(key) & this.mask;
+
+		while (this.table[slot] != 0 && this.elements[this.table[slot] - 1] != key)
+			slot = (slot + 1) & this.mask;
+
+		return slot;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Empties a slot, and moves back the following keys of its probe sequence, so that no key
+	 * becomes unreachable and no tombstone is needed.
+	 */
+	private void deleteSlot(int slot) {
+		int next = slot;
+
+		while (true) {
+			next = (next + 1) & this.mask;
+			if (this.table[next] == 0)
+				break;
+
+			// the key at 'next' can fill the hole if its home slot is not between the hole and 'next'
+			int home = IndexedSet.hash(this.elements[this.table[next] - 1]) & this.mask;
+			if (((next - home) & this.mask) >= ((next - slot) & this.mask)) {
+				this.table[slot] = this.table[next];
+				slot = next;
+			}
+		}
+
+		this.table[slot] = 0;
+	}
+
+//----------------------------------------------------------------------------------
+	private void rehash(int capacity) {
+		this.table = new int[capacity];
+		this.mask = capacity - 1;
+
+		for (int i = 0; i < this.size; i++) {
+			int slot = IndexedSet.hash(this.elements[i]) & this.mask;
+			while (this.table[slot] != 0)
+				slot = (slot + 1) & this.mask;
+			this.table[slot] = i + 1;
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	private static int hash(long key) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		return (int)(h ^ (h >>> 32));
+	}
+}
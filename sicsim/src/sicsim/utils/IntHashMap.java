@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Map from primitive int keys to objects, implemented by open addressing with linear probing. The
+ * keys and the values are kept in two parallel arrays, so a lookup neither boxes the key nor follows
+ * an entry object, and the map is not synchronized. Null values are not allowed, since an empty slot
+ * is marked by a null value. The values are iterated in the order of the slots, which only depends
+ * on the keys that are added and removed.
+ */
+public class IntHashMap<V> {
+	private static int INITIAL_CAPACITY = 16;
+
+	private int[] keys;
+	private Object[] values;
+	private int mask;
+	private int size = 0;
+
+//----------------------------------------------------------------------------------
+	public IntHashMap() {
+		this.keys = new int[IntHashMap.INITIAL_CAPACITY];
+		this.values = new Object[IntHashMap.INITIAL_CAPACITY];
+		this.mask = IntHashMap.INITIAL_CAPACITY - 1;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the value of a key.
+	 * @param key The key.
+	 * @return The value, or null if the key is not in the map.
+	 */
+	public V get(int key) {
+		int slot = IntHashMap.hash(key) & this.mask;
+		Object value;
+
+		while ((value = this.values[slot]) != null) {
+			if (this.keys[slot] == key)
+				return this.valueAt(slot);
+			slot = (slot + 1) & this.mask;
+		}
+
+		return null;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Tells if a key is in the map.
+	 * @param key The key.
+	 * @return 'true' if the key is in the map.
+	 */
+	public boolean containsKey(int key) {
+		return (this.get(key) != null);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Puts a value for a key, replacing the previous value of the key.
+	 * @param key The key.
+	 * @param value The value, which must not be null.
+	 * @return The previous value of the key, or null if the key was not in the map.
+	 */
+	public V put(int key, V value) {
+		if (value == null)
+			throw new NullPointerException();
+
+		int slot = IntHashMap.hash(key) & this.mask;
+		Object old;
+
+		while ((old = this.values[slot]) != null) {
+			if (this.keys[slot] == key) {
+				V previous = this.valueAt(slot);
+				this.values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		this.size++;
+
+		// the load factor is kept at most 1/2, so the probe sequences stay short
+		if (2 * this.size > this.values.length)
+			this.resize(2 * this.values.length);
+
+		return null;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes a key from the map.
+	 * @param key The key.
+	 * @return The value of the key, or null if the key was not in the map.
+	 */
+	public V remove(int key) {
+		int slot = IntHashMap.hash(key) & this.mask;
+		Object value;
+
+		while ((value = this.values[slot]) != null) {
+			if (this.keys[slot] == key) {
+				V previous = this.valueAt(slot);
+				this.deleteSlot(slot);
+				this.size--;
+				return previous;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+
+		return null;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the number of keys in the map.
+	 * @return The number of keys.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Removes all the keys from the map.
+	 */
+	public void clear() {
+		Arrays.fill(this.values, null);
+		this.size = 0;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns an iterator over the values of the map. The map must not be changed during the iteration.
+	 * @return The iterator.
+	 */
+	public Iterator<V> values() {
+		return new Iterator<V>() {
+			private int slot = this.nextSlot(0);
+
+			private int nextSlot(int from) {
+				while (from < values.length && values[from] == null)
+					from++;
+				return from;
+			}
+
+			public boolean hasNext() {
+				return (this.slot < values.length);
+			}
+
+			public V next() {
+				if (this.slot >= values.length)
+					throw new NoSuchElementException();
+
+				V value = valueAt(this.slot);
+				this.slot = this.nextSlot(this.slot + 1);
+				return value;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the value of a slot. Only values of type V are put in the map, so the cast is safe.
+	 */
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V)this.values[slot];
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Empties a slot, and moves back the following keys of its probe sequence, so that no key
+	 * becomes unreachable and no tombstone is needed.
+	 */
+	private void deleteSlot(int slot) {
+		int next = slot;
+
+		while (true) {
+			next = (next + 1) & this.mask;
+			if (this.values[next] == null)
+				break;
+
+			// the key at 'next' can fill the hole if its home slot is not between the hole and 'next'
+			int home = IntHashMap.hash(this.keys[next]) & this.mask;
+			if (((next - home) & this.mask) >= ((next - slot) & this.mask)) {
+				this.keys[slot] = this.keys[next];
+				this.values[slot] = this.values[next];
+				slot = next;
+			}
+		}
+
+		this.values[slot] = null;
+	}
+
+//----------------------------------------------------------------------------------
+	private void resize(int capacity) {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = IntHashMap.hash(oldKeys[i]) & this.mask;
+				while (this.values[slot] != null)
+					slot = (slot + 1) & this.mask;
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Spreads the keys over the slots, since the ids of the peers are often consecutive.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+}
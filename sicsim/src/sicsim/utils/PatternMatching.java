@@ -141,7 +141,7 @@ public class PatternMatching {
 		if (keyMatcher.find()) {
 			Matcher valueMatcher = valuePattern.matcher(keyMatcher.group());
 			if (valueMatcher.find())
-				nodeId = new NodeId(valueMatcher.group().trim());
+				nodeId = NodeId.valueOf(valueMatcher.group().trim());
 		}
 
 		return nodeId;
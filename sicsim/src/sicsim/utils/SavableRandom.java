@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2008
+ *  
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package sicsim.utils;
+
+import java.util.Random;
+
+/**
+ * Random generator whose state can be read and set again, so that the numbers that are drawn by
+ * undone events can be drawn again. It uses the same linear congruential generator as
+ * java.util.Random, but it does not keep the second gaussian number between calls.
+ */
+public class SavableRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private static long MULTIPLIER = 0x5DEECE66DL;
+	private static long MASK = (1L << 48) - 1;
+
+	private long state;
+
+//----------------------------------------------------------------------------------
+	public SavableRandom(long seed) {
+		super(seed);
+	}
+
+//----------------------------------------------------------------------------------
+	public void setSeed(long seed) {
+		this.state = (seed ^ SavableRandom.MULTIPLIER) & SavableRandom.MASK;
+	}
+
+//----------------------------------------------------------------------------------
+	protected int next(int bits) {
+		this.state = (this.state * SavableRandom.MULTIPLIER + 0xBL) & SavableRandom.MASK;
+
+		return (int)(this.state >>> (48 - bits));
+	}
+
+//----------------------------------------------------------------------------------
+	public double nextGaussian() {
+		double v1, v2, s;
+
+		do {
+			v1 = 2 * this.nextDouble() - 1;
+			v2 = 2 * this.nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+
+		return v1 * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Returns the current state of the generator.
+	 * @return The state of the generator.
+	 */
+	public long getState() {
+		return this.state;
+	}
+
+//----------------------------------------------------------------------------------
+	/**
+	 * Sets the state of the generator to a value that is returned by 'getState'.
+	 * @param state The state of the generator.
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+}